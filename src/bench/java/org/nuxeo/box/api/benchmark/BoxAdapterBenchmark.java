@@ -0,0 +1,100 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.benchmark;
+
+import org.nuxeo.box.api.file.adapter.BoxFileAdapter;
+import org.nuxeo.box.api.folder.adapter.BoxFolderAdapter;
+import org.nuxeo.box.api.marshalling.exceptions.BoxJSONException;
+import org.nuxeo.box.api.service.BoxService;
+import org.nuxeo.box.api.test.BoxServerInit;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.runtime.api.Framework;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction of the folder and file adapters, and their full rendering, against the test repository.
+ * <p>
+ * The repository is only available in the JVM of the test starting it, so this benchmark is run without fork by
+ * {@link BoxAdapterBenchmarkTest}.
+ *
+ * @since 9.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BoxAdapterBenchmark {
+
+    /**
+     * Set by the test running the benchmark
+     */
+    static volatile CoreSession session;
+
+    protected BoxService boxService;
+
+    protected DocumentModel folder;
+
+    protected DocumentModel file;
+
+    @Setup
+    public void setup() {
+        if (session == null) {
+            throw new IllegalStateException("Run by " + BoxAdapterBenchmarkTest.class.getName());
+        }
+        boxService = Framework.getLocalService(BoxService.class);
+        folder = BoxServerInit.getFolder(1, session);
+        file = BoxServerInit.getFile(1, session);
+    }
+
+    @Benchmark
+    public BoxFolderAdapter folderAdapter() {
+        return new BoxFolderAdapter(folder);
+    }
+
+    @Benchmark
+    public BoxFileAdapter fileAdapter() {
+        return new BoxFileAdapter(file);
+    }
+
+    /**
+     * The construction and the computation of all the lazy fields
+     */
+    @Benchmark
+    public String folderRendering() throws BoxJSONException {
+        return boxService.toJSONString(new BoxFolderAdapter(folder).getBoxItem());
+    }
+
+    @Benchmark
+    public String fileRendering() throws BoxJSONException {
+        return boxService.toJSONString(new BoxFileAdapter(file).getBoxItem());
+    }
+
+}
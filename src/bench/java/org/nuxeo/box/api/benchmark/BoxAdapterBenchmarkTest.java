@@ -0,0 +1,66 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.benchmark;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.box.api.test.BoxServerFeature;
+import org.nuxeo.box.api.test.BoxServerInit;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.test.annotations.Granularity;
+import org.nuxeo.ecm.core.test.annotations.RepositoryConfig;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.inject.Inject;
+
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Run the {@link BoxAdapterBenchmark} in the JVM of the test repository, the results being written as JSON to
+ * <code>target/jmh-adapters.json</code>.
+ *
+ * @since 9.1
+ */
+@RunWith(FeaturesRunner.class)
+@Features({ BoxServerFeature.class })
+@RepositoryConfig(cleanup = Granularity.METHOD, init = BoxServerInit.class)
+public class BoxAdapterBenchmarkTest {
+
+    @Inject
+    protected CoreSession session;
+
+    @Test
+    public void benchmarkAdapters() throws RunnerException {
+        BoxAdapterBenchmark.session = session;
+        try {
+            Options options = new OptionsBuilder().include(BoxAdapterBenchmark.class.getName()).forks(0).resultFormat(
+                    ResultFormatType.JSON).result("target/jmh-adapters.json").build();
+            assertFalse(new Runner(options).run().isEmpty());
+        } finally {
+            BoxAdapterBenchmark.session = null;
+        }
+    }
+
+}
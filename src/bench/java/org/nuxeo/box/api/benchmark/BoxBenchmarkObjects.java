@@ -0,0 +1,179 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.benchmark;
+
+import org.nuxeo.box.api.marshalling.dao.BoxCollaboration;
+import org.nuxeo.box.api.marshalling.dao.BoxCollection;
+import org.nuxeo.box.api.marshalling.dao.BoxComment;
+import org.nuxeo.box.api.marshalling.dao.BoxEvent;
+import org.nuxeo.box.api.marshalling.dao.BoxFile;
+import org.nuxeo.box.api.marshalling.dao.BoxFolder;
+import org.nuxeo.box.api.marshalling.dao.BoxItem;
+import org.nuxeo.box.api.marshalling.dao.BoxJob;
+import org.nuxeo.box.api.marshalling.dao.BoxTypedObject;
+import org.nuxeo.box.api.marshalling.dao.BoxUser;
+
+import java.util.ArrayList;
+
+/**
+ * The box objects measured by the benchmarks, shaped like the ones rendered by the API.
+ *
+ * @since 9.1
+ */
+public final class BoxBenchmarkObjects {
+
+    public static final String CREATED_AT = "2017-03-01T10:15:30.123+01:00";
+
+    private BoxBenchmarkObjects() {
+        // utility class
+    }
+
+    /**
+     * @param type the name of a box resource type
+     * @param entries the number of children, for the folders
+     */
+    public static BoxTypedObject newObject(String type, int entries) {
+        switch (type) {
+        case "user":
+            return newUser("jdoe");
+        case "file":
+            return newFile("file", 2);
+        case "folder":
+            return newFolder("folder", 2, entries);
+        case "comment":
+            return newComment();
+        case "collaboration":
+            return newCollaboration();
+        case "event":
+            return newEvent();
+        case "job":
+            return newJob();
+        default:
+            throw new IllegalArgumentException(type);
+        }
+    }
+
+    public static BoxUser newUser(String login) {
+        BoxUser user = new BoxUser();
+        user.put(BoxTypedObject.FIELD_ID, login);
+        user.put(BoxUser.FIELD_NAME, "John Doe");
+        user.put(BoxUser.FIELD_LOGIN, login);
+        return user;
+    }
+
+    public static BoxFile newFile(String id, int depth) {
+        BoxFile file = new BoxFile();
+        putItem(file, id, depth);
+        file.put(BoxFile.FIELD_SHA1, "85136c79cbf9fe36bb9d05d0639c70c265c18d37");
+        file.put(BoxFile.FIELD_VERSION_NUMBER, "1.0");
+        file.put(BoxFile.FIELD_COMMENT_COUNT, 0);
+        return file;
+    }
+
+    public static BoxFolder newFolder(String id, int depth, int entries) {
+        BoxFolder folder = new BoxFolder();
+        putItem(folder, id, depth);
+        ArrayList<BoxTypedObject> children = new ArrayList<>(entries);
+        for (int i = 0; i < entries; i++) {
+            children.add(newFile(id + "-" + i, depth + 1));
+        }
+        folder.put(BoxFolder.FIELD_ITEM_COLLECTION, newCollection(children));
+        folder.put(BoxFolder.FIELD_HAS_COLLABORATIONS, false);
+        return folder;
+    }
+
+    public static BoxComment newComment() {
+        BoxComment comment = new BoxComment();
+        comment.put(BoxTypedObject.FIELD_ID, "comment");
+        comment.put(BoxTypedObject.FIELD_CREATED_AT, CREATED_AT);
+        comment.put(BoxComment.FIELD_MESSAGE, "Looks good");
+        comment.put(BoxComment.FIELD_IS_REPLY_COMMENT, false);
+        comment.put(BoxComment.FIELD_CREATED_BY, newUser("jdoe"));
+        comment.put(BoxComment.FIELD_ITEM, newMiniFolder("file", "File"));
+        return comment;
+    }
+
+    public static BoxCollaboration newCollaboration() {
+        BoxCollaboration collaboration = new BoxCollaboration();
+        collaboration.put(BoxTypedObject.FIELD_ID, "collaboration");
+        collaboration.put(BoxTypedObject.FIELD_CREATED_AT, CREATED_AT);
+        collaboration.put(BoxCollaboration.FIELD_CREATED_BY, newUser("jdoe"));
+        collaboration.put(BoxCollaboration.FIELD_ACCESSIBLE_BY, newUser("jsmith"));
+        collaboration.put(BoxCollaboration.FIELD_STATUS, "accepted");
+        collaboration.put(BoxCollaboration.FIELD_ROLE, "editor");
+        collaboration.put(BoxCollaboration.FIELD_FOLDER, newMiniFolder("folder", "Folder"));
+        return collaboration;
+    }
+
+    public static BoxEvent newEvent() {
+        BoxEvent event = new BoxEvent();
+        event.put(BoxEvent.FIELD_EVENT_ID, "42");
+        event.put(BoxEvent.FIELD_EVENT_TYPE, BoxEvent.EVENT_TYPE_ITEM_UPLOAD);
+        event.put(BoxTypedObject.FIELD_CREATED_AT, CREATED_AT);
+        event.put(BoxItem.FIELD_CREATED_BY, newUser("jdoe"));
+        event.put(BoxEvent.FIELD_SOURCE, newFile("file", 2));
+        return event;
+    }
+
+    public static BoxJob newJob() {
+        BoxJob job = new BoxJob();
+        job.put(BoxTypedObject.FIELD_ID, "job");
+        job.put(BoxJob.FIELD_STATUS, BoxJob.STATUS_IN_PROGRESS);
+        job.put(BoxJob.FIELD_TOTAL_COUNT, 1000L);
+        job.put(BoxJob.FIELD_PROCESSED_COUNT, 500L);
+        return job;
+    }
+
+    protected static void putItem(BoxItem item, String id, int depth) {
+        item.put(BoxTypedObject.FIELD_ID, id);
+        item.put(BoxItem.FIELD_SEQUENCE_ID, "1");
+        item.put(BoxItem.FIELD_ETAG, "1");
+        item.put(BoxItem.FIELD_NAME, "Item " + id);
+        item.put(BoxItem.FIELD_DESCRIPTION, "Description of " + id);
+        item.put(BoxItem.FIELD_SIZE, 1024d);
+        item.put(BoxItem.FIELD_ITEM_STATUS, "project");
+        item.put(BoxTypedObject.FIELD_CREATED_AT, CREATED_AT);
+        item.put(BoxTypedObject.FIELD_MODIFIED_AT, CREATED_AT);
+        item.put(BoxItem.FIELD_CREATED_BY, newUser("jdoe"));
+        item.put(BoxItem.FIELD_MODIFIED_BY, newUser("jdoe"));
+        item.put(BoxItem.FIELD_OWNED_BY, newUser("jdoe"));
+        ArrayList<BoxTypedObject> ancestors = new ArrayList<>(depth);
+        for (int i = 0; i < depth; i++) {
+            ancestors.add(newMiniFolder("ancestor-" + i, "Ancestor " + i));
+        }
+        item.put(BoxItem.FIELD_PATH_COLLECTION, newCollection(ancestors));
+        item.put(BoxItem.FIELD_PARENT, depth > 0 ? ancestors.get(depth - 1) : null);
+        item.put(BoxItem.FIELD_TAGS, new String[] { "benchmark", "box" });
+    }
+
+    protected static BoxFolder newMiniFolder(String id, String name) {
+        BoxFolder folder = new BoxFolder();
+        folder.put(BoxTypedObject.FIELD_ID, id);
+        folder.put(BoxItem.FIELD_SEQUENCE_ID, "1");
+        folder.put(BoxItem.FIELD_NAME, name);
+        return folder;
+    }
+
+    protected static BoxCollection newCollection(ArrayList<BoxTypedObject> entries) {
+        BoxCollection collection = new BoxCollection();
+        collection.put(BoxCollection.FIELD_ENTRIES, entries);
+        collection.put(BoxCollection.FIELD_TOTAL_COUNT, entries.size());
+        return collection;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.jsontype.NamedType;
+
+import org.nuxeo.box.api.marshalling.dao.BoxTypedObject;
+import org.nuxeo.box.api.marshalling.exceptions.BoxJSONException;
+import org.nuxeo.box.api.marshalling.interfaces.IBoxType;
+import org.nuxeo.box.api.marshalling.jsonparsing.BoxFieldSerializerModifier;
+import org.nuxeo.box.api.marshalling.jsonparsing.BoxJSONParser;
+import org.nuxeo.box.api.marshalling.jsonparsing.BoxResourceHub;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of each box object type with the {@link BoxFieldSerializerModifier} of the {@link BoxJSONParser},
+ * against the same mapper calling the getters.
+ *
+ * @since 9.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoxFieldSerializerBenchmark {
+
+    @Param({ "user", "file", "folder", "comment", "collaboration", "event", "job" })
+    public String type;
+
+    protected BoxJSONParser parser;
+
+    protected ObjectWriter getters;
+
+    protected BoxTypedObject object;
+
+    @Setup
+    public void setup() throws BoxJSONException, JsonProcessingException {
+        BoxResourceHub hub = new BoxResourceHub();
+        parser = new BoxJSONParser(hub);
+        // Configured as the parser, without the modifier
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.setSerializationInclusion(Include.NON_NULL);
+        for (IBoxType boxType : hub.getAllTypes()) {
+            mapper.registerSubtypes(new NamedType(hub.getClass(boxType), boxType.toString()));
+        }
+        object = BoxBenchmarkObjects.newObject(type, 10);
+        getters = mapper.writerFor(object.getClass());
+        String expected = getters.writeValueAsString(object);
+        String actual = parser.convertBoxObjectToJSONString(object);
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException("Different serialization of " + type + ": " + actual + " instead of "
+                    + expected);
+        }
+    }
+
+    @Benchmark
+    public String fields() throws BoxJSONException {
+        return parser.convertBoxObjectToJSONString(object);
+    }
+
+    @Benchmark
+    public String getters() throws JsonProcessingException {
+        return getters.writeValueAsString(object);
+    }
+
+}
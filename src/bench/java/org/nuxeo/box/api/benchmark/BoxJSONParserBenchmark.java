@@ -0,0 +1,86 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.benchmark;
+
+import org.nuxeo.box.api.marshalling.dao.BoxTypedObject;
+import org.nuxeo.box.api.marshalling.exceptions.BoxJSONException;
+import org.nuxeo.box.api.marshalling.jsonparsing.BoxJSONParser;
+import org.nuxeo.box.api.marshalling.jsonparsing.BoxResourceHub;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization and parsing of each box object type by the {@link BoxJSONParser}.
+ *
+ * @since 9.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoxJSONParserBenchmark {
+
+    @Param({ "user", "file", "folder", "comment", "collaboration", "event", "job" })
+    public String type;
+
+    protected BoxJSONParser parser;
+
+    protected BoxTypedObject object;
+
+    protected String json;
+
+    @Setup
+    public void setup() throws BoxJSONException {
+        parser = new BoxJSONParser(new BoxResourceHub());
+        object = BoxBenchmarkObjects.newObject(type, 10);
+        json = parser.convertBoxObjectToJSONString(object);
+    }
+
+    @Benchmark
+    public String serialize() throws BoxJSONException {
+        return parser.convertBoxObjectToJSONString(object);
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream write() throws BoxJSONException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length());
+        parser.writeBoxObject(object, out);
+        return out;
+    }
+
+    @Benchmark
+    public Object parse() throws BoxJSONException {
+        return parser.parseIntoBoxObject(json, object.getClass());
+    }
+
+}
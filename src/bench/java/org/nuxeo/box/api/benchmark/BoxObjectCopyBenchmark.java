@@ -0,0 +1,91 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.benchmark;
+
+import org.nuxeo.box.api.marshalling.dao.BoxFolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deep copies of a folder holding a page of children, each with its users and path collection: by the copy constructor
+ * and by the map constructor, both going through the cloning of the nested objects and collections. An immutable map is
+ * adopted instead.
+ *
+ * @since 9.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoxObjectCopyBenchmark {
+
+    @Param({ "0", "10", "100", "1000" })
+    public int entries;
+
+    protected BoxFolder folder;
+
+    protected Map<String, Object> properties;
+
+    protected Map<String, Object> immutableProperties;
+
+    @Setup
+    public void setup() {
+        folder = BoxBenchmarkObjects.newFolder("folder", 3, entries);
+        properties = new HashMap<>();
+        for (String key : folder.getKeySet()) {
+            properties.put(key, folder.getValue(key));
+        }
+        immutableProperties = Collections.unmodifiableMap(new HashMap<>(properties));
+    }
+
+    @Benchmark
+    public BoxFolder copy() {
+        return new BoxFolder(folder);
+    }
+
+    @Benchmark
+    public BoxFolder cloneMap() {
+        return new BoxFolder(properties);
+    }
+
+    /**
+     * The map built by the adapters, adopted without any copy
+     */
+    @Benchmark
+    public BoxFolder adoptMap() {
+        return new BoxFolder(immutableProperties);
+    }
+
+}
@@ -91,6 +91,16 @@ public class Box extends ModuleRoot {
         return newObject("collaborations");
     }
 
+    @Path("/events")
+    public Object doGetEvents() {
+        return newObject("events");
+    }
+
+    @Path("/jobs")
+    public Object doGetJobs() {
+        return newObject("job");
+    }
+
     /**
      * Return a Box compat Exception Response in JSON
      */
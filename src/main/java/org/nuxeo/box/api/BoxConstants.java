@@ -33,4 +33,164 @@ public class BoxConstants {
 
     public static final String BOX_COLLAB_DELIM = "-BOX-";
 
+    /**
+     * Framework property enabling the gzip compression of the JSON responses for the clients accepting it
+     *
+     * @since 9.1
+     */
+    public static final String BOX_GZIP_PROPERTY = "org.nuxeo.box.api.json.gzip";
+
+    /**
+     * Framework property bounding the number of ancestors kept to build the path collections
+     *
+     * @since 9.1
+     */
+    public static final String BOX_ANCESTORS_CACHE_SIZE_PROPERTY = "org.nuxeo.box.api.ancestors.cache.size";
+
+    public static final String BOX_ANCESTORS_CACHE_SIZE = "10000";
+
+    /**
+     * Framework properties bounding the box users and groups kept to render the principals
+     *
+     * @since 9.1
+     */
+    public static final String BOX_PRINCIPALS_CACHE_SIZE_PROPERTY = "org.nuxeo.box.api.principals.cache.size";
+
+    public static final String BOX_PRINCIPALS_CACHE_SIZE = "10000";
+
+    public static final String BOX_PRINCIPALS_CACHE_TTL_PROPERTY = "org.nuxeo.box.api.principals.cache.ttl";
+
+    /**
+     * In seconds
+     */
+    public static final String BOX_PRINCIPALS_CACHE_TTL = "600";
+
+    /**
+     * Framework properties bounding the documents whose taggings are kept to render the tags
+     *
+     * @since 9.1
+     */
+    public static final String BOX_TAGS_CACHE_SIZE_PROPERTY = "org.nuxeo.box.api.tags.cache.size";
+
+    public static final String BOX_TAGS_CACHE_SIZE = "10000";
+
+    public static final String BOX_TAGS_CACHE_TTL_PROPERTY = "org.nuxeo.box.api.tags.cache.ttl";
+
+    /**
+     * In seconds
+     */
+    public static final String BOX_TAGS_CACHE_TTL = "600";
+
+    /**
+     * Framework property setting the local directory of the chunked uploads, the temporary directory by default
+     *
+     * @since 9.1
+     */
+    public static final String BOX_UPLOAD_DIR_PROPERTY = "org.nuxeo.box.api.upload.dir";
+
+    /**
+     * Framework properties setting the size of the parts of the chunked uploads, and how long their sessions live
+     *
+     * @since 9.1
+     */
+    public static final String BOX_UPLOAD_PART_SIZE_PROPERTY = "org.nuxeo.box.api.upload.part.size";
+
+    public static final String BOX_UPLOAD_PART_SIZE = "8388608";
+
+    public static final String BOX_UPLOAD_SESSION_TTL_PROPERTY = "org.nuxeo.box.api.upload.session.ttl";
+
+    /**
+     * In seconds
+     */
+    public static final String BOX_UPLOAD_SESSION_TTL = "604800";
+
+    /**
+     * Framework property bounding the number of hits counted for the total count of a search, -1 for an exact count
+     *
+     * @since 9.1
+     */
+    public static final String BOX_SEARCH_COUNT_LIMIT_PROPERTY = "org.nuxeo.box.api.search.count.limit";
+
+    public static final String BOX_SEARCH_COUNT_LIMIT = "10000";
+
+    /**
+     * Framework properties throttling the backfill of the SHA1 of the existing files: the number of binaries read at
+     * once, their bytes read per second (0 for no limit), and the pause between two batches
+     *
+     * @since 9.1
+     */
+    public static final String BOX_DIGEST_BACKFILL_THREADS_PROPERTY = "org.nuxeo.box.api.digest.backfill.threads";
+
+    public static final String BOX_DIGEST_BACKFILL_THREADS = "2";
+
+    public static final String BOX_DIGEST_BACKFILL_RATE_PROPERTY = "org.nuxeo.box.api.digest.backfill.rate";
+
+    public static final String BOX_DIGEST_BACKFILL_RATE = "16777216";
+
+    public static final String BOX_DIGEST_BACKFILL_PAUSE_PROPERTY = "org.nuxeo.box.api.digest.backfill.pause";
+
+    /**
+     * In milliseconds
+     */
+    public static final String BOX_DIGEST_BACKFILL_PAUSE = "100";
+
+    /**
+     * Framework properties setting where the event journal is stored, and how long its events are kept at least
+     *
+     * @since 9.1
+     */
+    public static final String BOX_EVENTS_DIR_PROPERTY = "org.nuxeo.box.api.events.dir";
+
+    public static final String BOX_EVENTS_RETENTION_PROPERTY = "org.nuxeo.box.api.events.retention";
+
+    /**
+     * In seconds
+     */
+    public static final String BOX_EVENTS_RETENTION = "1209600";
+
+    /**
+     * Framework property setting how long a poll of the realtime server is parked before being told to reconnect
+     *
+     * @since 9.1
+     */
+    public static final String BOX_REALTIME_TIMEOUT_PROPERTY = "org.nuxeo.box.api.realtime.timeout";
+
+    /**
+     * In seconds
+     */
+    public static final String BOX_REALTIME_TIMEOUT = "610";
+
+    /**
+     * The number of polls of a realtime channel, before opening a new one
+     */
+    public static final String BOX_REALTIME_MAX_RETRIES = "10";
+
+    /**
+     * Framework property bounding the number of descendants of a folder deleted within the call, the larger trees
+     * being deleted in the background
+     *
+     * @since 9.1
+     */
+    public static final String BOX_DELETE_SYNC_MAX_PROPERTY = "org.nuxeo.box.api.delete.sync.max";
+
+    public static final String BOX_DELETE_SYNC_MAX = "500";
+
+    /**
+     * Number of descendants above which a folder is copied in the background
+     *
+     * @since 9.1
+     */
+    public static final String BOX_COPY_SYNC_MAX_PROPERTY = "org.nuxeo.box.api.copy.sync.max";
+
+    public static final String BOX_COPY_SYNC_MAX = "500";
+
+    /**
+     * Whether the metrics of the Box API are published over JMX
+     *
+     * @since 9.1
+     */
+    public static final String BOX_METRICS_JMX_PROPERTY = "org.nuxeo.box.api.metrics.jmx";
+
+    public static final String BOX_METRICS_JMX = "true";
+
 }
@@ -0,0 +1,170 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.box.api.service.BoxRealTimeNotifier;
+import org.nuxeo.box.api.service.BoxService;
+import org.nuxeo.runtime.api.Framework;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The realtime server of the Box events, bound to /box/realtime: a long poll on a channel opened by
+ * <code>OPTIONS /events</code> is answered <code>new_change</code> once a change is made in the watched folder, or
+ * <code>reconnect</code> when it times out.
+ * <p>
+ * The polls are parked as asynchronous requests, not holding any thread while waiting. When a filter of the chain does
+ * not support asynchronous requests, the poll holds its thread until it is answered the same way, so that the clients
+ * never poll in a loop. The channel id is the only credential, as the answers hold no data.
+ *
+ * @since 9.1
+ */
+public class BoxRealTimeServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Log log = LogFactory.getLog(BoxRealTimeServlet.class);
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        BoxService boxService = Framework.getLocalService(BoxService.class);
+        BoxRealTimeNotifier notifier = boxService.getRealTimeNotifier();
+        final String path = notifier.getWatchedPath(req.getParameter("channel"));
+        if (path == null) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown channel");
+            return;
+        }
+        long position = getStreamPosition(req);
+        if (isChanged(boxService, position)) {
+            // Answered at once, the client polls again
+            write(resp, BoxRealTimeNotifier.NEW_CHANGE);
+            return;
+        }
+        long timeout = Long.parseLong(Framework.getProperty(BoxConstants.BOX_REALTIME_TIMEOUT_PROPERTY,
+                BoxConstants.BOX_REALTIME_TIMEOUT)) * 1000;
+        if (!req.isAsyncSupported()) {
+            hold(boxService, notifier, path, position, timeout, resp);
+            return;
+        }
+        final AsyncContext async = req.startAsync();
+        async.setTimeout(timeout);
+        final BoxRealTimeNotifier.Waiter waiter = new BoxRealTimeNotifier.Waiter() {
+            @Override
+            protected void onWake(String message) {
+                try {
+                    write(async.getResponse(), message);
+                } catch (IOException e) {
+                    log.debug("Cannot answer realtime poll", e);
+                } finally {
+                    async.complete();
+                }
+            }
+        };
+        async.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                notifier.unpark(path, waiter);
+                waiter.wake(BoxRealTimeNotifier.RECONNECT);
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                notifier.unpark(path, waiter);
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+                notifier.unpark(path, waiter);
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        notifier.park(path, waiter);
+        // A change may have been recorded while parking
+        if (isChanged(boxService, position)) {
+            notifier.unpark(path, waiter);
+            waiter.wake(BoxRealTimeNotifier.NEW_CHANGE);
+        }
+    }
+
+    /**
+     * Park a poll holding the current thread until it is woken or times out
+     */
+    protected void hold(BoxService boxService, BoxRealTimeNotifier notifier, String path, long position,
+            long timeout, HttpServletResponse resp) throws IOException {
+        final CountDownLatch answered = new CountDownLatch(1);
+        final AtomicReference<String> answer = new AtomicReference<>();
+        BoxRealTimeNotifier.Waiter waiter = new BoxRealTimeNotifier.Waiter() {
+            @Override
+            protected void onWake(String message) {
+                answer.set(message);
+                answered.countDown();
+            }
+        };
+        notifier.park(path, waiter);
+        try {
+            // A change may have been recorded while parking
+            if (isChanged(boxService, position)) {
+                waiter.wake(BoxRealTimeNotifier.NEW_CHANGE);
+            }
+            answered.await(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            notifier.unpark(path, waiter);
+        }
+        waiter.wake(BoxRealTimeNotifier.RECONNECT);
+        write(resp, answer.get());
+    }
+
+    protected boolean isChanged(BoxService boxService, long position) {
+        return position >= 0 && position < boxService.getEventJournal().getHeadPosition();
+    }
+
+    protected long getStreamPosition(HttpServletRequest req) {
+        try {
+            return Long.parseLong(req.getParameter("stream_position"));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    protected static void write(ServletResponse resp, String message) throws IOException {
+        resp.setContentType(MediaType.APPLICATION_JSON);
+        resp.setCharacterEncoding("UTF-8");
+        resp.getWriter().write("{\"message\":\"" + message + "\"}");
+    }
+
+}
@@ -19,6 +19,7 @@
  */
 package org.nuxeo.box.api;
 
+import org.nuxeo.box.api.service.BoxMetrics;
 import org.nuxeo.common.utils.URIUtils;
 
 import javax.servlet.RequestDispatcher;
@@ -29,7 +30,8 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 
 /**
- * This servlet is bound to /box and dispatch calls to /site/box in oder to have better looking URLs.
+ * This servlet is bound to /box and dispatch calls to /site/box in oder to have better looking URLs. The duration and
+ * the status of each call are recorded in the {@link BoxMetrics}.
  *
  * @since 5.9.3
  */
@@ -45,7 +47,16 @@ public class BoxServlet extends HttpServlet {
 
         RequestDispatcher rd = req.getRequestDispatcher("/site/box"
                 + URIUtils.quoteURIPathComponent(req.getPathInfo(), false, false));
-        rd.forward(req, resp);
+        String endpoint = BoxMetrics.getEndpoint(req.getMethod(), req.getPathInfo());
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            rd.forward(req, resp);
+            failed = false;
+        } finally {
+            BoxMetrics.request(endpoint, failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : resp.getStatus(),
+                    System.nanoTime() - start);
+        }
     }
 
 }
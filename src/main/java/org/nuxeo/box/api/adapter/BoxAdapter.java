@@ -19,24 +19,20 @@
 package org.nuxeo.box.api.adapter;
 
 import org.nuxeo.box.api.marshalling.dao.BoxCollection;
-import org.nuxeo.box.api.marshalling.dao.BoxFile;
 import org.nuxeo.box.api.marshalling.dao.BoxFolder;
 import org.nuxeo.box.api.marshalling.dao.BoxItem;
+import org.nuxeo.box.api.marshalling.dao.BoxObject.LazyValue;
 import org.nuxeo.box.api.marshalling.dao.BoxTypedObject;
-import org.nuxeo.box.api.marshalling.dao.BoxUser;
 import org.nuxeo.box.api.marshalling.exceptions.BoxJSONException;
+import org.nuxeo.box.api.service.BoxAggregates;
+import org.nuxeo.box.api.service.BoxAncestor;
 import org.nuxeo.box.api.service.BoxService;
 import org.joda.time.DateTime;
 import org.joda.time.format.ISODateTimeFormat;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.IdRef;
-import org.nuxeo.ecm.core.api.NuxeoPrincipal;
-import org.nuxeo.ecm.platform.tag.Tag;
 import org.nuxeo.ecm.platform.tag.TagService;
-import org.nuxeo.ecm.platform.usermanager.UserManager;
-import org.nuxeo.ecm.quota.size.QuotaAware;
-import org.nuxeo.ecm.quota.size.QuotaAwareDocument;
 import org.nuxeo.runtime.api.Framework;
 
 import java.lang.reflect.InvocationTargetException;
@@ -62,9 +58,23 @@ public abstract class BoxAdapter {
 
     protected final BoxService boxService = Framework.getLocalService(BoxService.class);
 
+    /**
+     * The ancestors of the document, resolved once for both path collection and parent
+     */
+    private List<BoxAncestor> ancestors;
+
+    /**
+     * The tags of the document, when resolved for a whole batch
+     */
+    private String[] tags;
+
+    /**
+     * Only the cheap properties, already loaded with the document, are computed here. The other ones are computed on
+     * first read, when serialized or explicitly requested.
+     */
     public BoxAdapter(DocumentModel doc) {
         this.doc = doc;
-        CoreSession session = doc.getCoreSession();
+        final CoreSession session = doc.getCoreSession();
 
         boxProperties.put(BoxItem.FIELD_ID, boxService.getBoxId(doc));
         boxProperties.put(BoxItem.FIELD_SEQUENCE_ID, boxService.getBoxSequenceId(doc));
@@ -78,57 +88,34 @@ public abstract class BoxAdapter {
         boxProperties.put(BoxItem.FIELD_DESCRIPTION, doc.getPropertyValue("dc:description"));
 
         // size
-        QuotaAwareDocument quotaAwareDocument = null;
-        if (Framework.getRuntime().getBundle("org.nuxeo.ecm.quota.core") != null) {
-            quotaAwareDocument = (QuotaAwareDocument) doc.getAdapter(QuotaAware.class);
-        }
-        boxProperties.put(BoxItem.FIELD_SIZE, quotaAwareDocument != null ? quotaAwareDocument.getInnerSize() : -1.0);
+        boxProperties.put(BoxItem.FIELD_SIZE, new LazyValue(this::getSize));
 
         // path_collection
-        final DocumentModel parentDoc = session.getParentDocument(doc.getRef());
-        final Map<String, Object> pathCollection = new HashMap<>();
-        List<BoxTypedObject> hierarchy = getParentsHierarchy(session, parentDoc);
-        pathCollection.put(BoxCollection.FIELD_ENTRIES, hierarchy);
-        pathCollection.put(BoxCollection.FIELD_TOTAL_COUNT, hierarchy.size());
-        BoxCollection boxPathCollection = new BoxCollection(Collections.unmodifiableMap(pathCollection));
-        boxProperties.put(BoxItem.FIELD_PATH_COLLECTION, boxPathCollection);
+        boxProperties.put(BoxItem.FIELD_PATH_COLLECTION, new LazyValue(() -> getPathCollection(session)));
 
         // parent
-        final Map<String, Object> parentProperties = new HashMap<>();
-        parentProperties.put(BoxItem.FIELD_ID, boxService.getBoxId(parentDoc));
-        parentProperties.put(BoxItem.FIELD_SEQUENCE_ID, boxService.getBoxSequenceId(parentDoc));
-        parentProperties.put(BoxItem.FIELD_NAME, boxService.getBoxName(parentDoc));
-        parentProperties.put(BoxItem.FIELD_ETAG, boxService.getBoxEtag(parentDoc));
-        BoxFolder parentFolder = new BoxFolder(Collections.unmodifiableMap(parentProperties));
-        boxProperties.put(BoxItem.FIELD_PARENT, parentFolder);
+        boxProperties.put(BoxItem.FIELD_PARENT, new LazyValue(() -> getParent(session)));
 
         // Users
         // Creator
-        final UserManager userManager = Framework.getLocalService(UserManager.class);
-        String creator = doc.getPropertyValue("dc:creator") != null ? (String) doc.getPropertyValue("dc:creator")
-                : "system";
-        NuxeoPrincipal principalCreator = userManager.getPrincipal(creator);
-        final BoxUser boxCreator = boxService.fillUser(principalCreator);
-        boxProperties.put(BoxItem.FIELD_CREATED_BY, boxCreator);
+        final String creator = getPrincipalName("dc:creator");
+        boxProperties.put(BoxItem.FIELD_CREATED_BY, new LazyValue(() -> boxService.getBoxUser(creator)));
 
         // Last Contributor
-        String lastContributor = doc.getPropertyValue("dc:lastContributor") != null ? (String) doc.getPropertyValue("dc:lastContributor")
-                : "system";
-        final NuxeoPrincipal principalLastContributor = userManager.getPrincipal(lastContributor);
-        final BoxUser boxContributor = boxService.fillUser(principalLastContributor);
-        boxProperties.put(BoxItem.FIELD_MODIFIED_BY, boxContributor);
+        final String lastContributor = getPrincipalName("dc:lastContributor");
+        boxProperties.put(BoxItem.FIELD_MODIFIED_BY, new LazyValue(() -> boxService.getBoxUser(lastContributor)));
 
         // Owner
-        boxProperties.put(BoxItem.FIELD_OWNED_BY, boxCreator);
+        boxProperties.put(BoxItem.FIELD_OWNED_BY, new LazyValue(() -> boxService.getBoxUser(creator)));
 
         // Shared Link
         boxProperties.put(BoxItem.FIELD_SHARED_LINK, null);
 
         // Status
-        boxProperties.put(BoxItem.FIELD_ITEM_STATUS, doc.getCurrentLifeCycleState());
+        boxProperties.put(BoxItem.FIELD_ITEM_STATUS, new LazyValue(doc::getCurrentLifeCycleState));
 
         // Tags
-        boxProperties.put(BoxItem.FIELD_TAGS, getTags(session));
+        boxProperties.put(BoxItem.FIELD_TAGS, new LazyValue(() -> getTags(session)));
 
     }
 
@@ -153,40 +140,80 @@ public abstract class BoxAdapter {
         return doc;
     }
 
-    protected List<BoxTypedObject> getParentsHierarchy(CoreSession session, DocumentModel parentDoc)
-            {
-        final List<BoxTypedObject> pathCollection = new ArrayList<>();
-        while (parentDoc != null) {
-            final Map<String, Object> parentCollectionProperties = new HashMap<>();
-            parentCollectionProperties.put(BoxItem.FIELD_ID, boxService.getBoxId(parentDoc));
-            parentCollectionProperties.put(BoxItem.FIELD_SEQUENCE_ID, boxService.getBoxSequenceId(parentDoc));
-            parentCollectionProperties.put(BoxItem.FIELD_ETAG, boxService.getBoxEtag(parentDoc));
-            parentCollectionProperties.put(BoxItem.FIELD_NAME, boxService.getBoxName(parentDoc));
-            BoxTypedObject boxParent;
-            // This different instantiation is related to the param type
-            // which is automatically added in json payload by Box marshaller
-            // following the box object type
-            if (parentDoc.isFolder()) {
-                boxParent = new BoxFolder(Collections.unmodifiableMap(parentCollectionProperties));
-            } else {
-                boxParent = new BoxFile(Collections.unmodifiableMap(parentCollectionProperties));
-            }
-            pathCollection.add(boxParent);
-            parentDoc = session.getParentDocument(parentDoc.getRef());
+    /**
+     * @return the bytes of the content of a file, or of all the descendants of a folder, read from the aggregates
+     */
+    protected Double getSize() {
+        return (double) BoxAggregates.getSize(doc);
+    }
+
+    /**
+     * Set the ancestors of the document, when resolved for a whole batch
+     *
+     * @since 9.1
+     */
+    public void setAncestors(List<BoxAncestor> ancestors) {
+        this.ancestors = ancestors;
+    }
+
+    /**
+     * Set the tags of the document, when resolved for a whole batch
+     *
+     * @since 9.1
+     */
+    public void setTags(String[] tags) {
+        this.tags = tags;
+    }
+
+    /**
+     * @return the user names rendered for the document
+     * @since 9.1
+     */
+    public List<String> getPrincipalNames() {
+        List<String> principalNames = new ArrayList<>();
+        principalNames.add(getPrincipalName("dc:creator"));
+        principalNames.add(getPrincipalName("dc:lastContributor"));
+        return principalNames;
+    }
+
+    protected String getPrincipalName(String xpath) {
+        return doc.getPropertyValue(xpath) != null ? (String) doc.getPropertyValue(xpath) : "system";
+    }
+
+    protected List<BoxAncestor> getAncestors(CoreSession session) {
+        if (ancestors == null) {
+            ancestors = boxService.getAncestors(session, doc);
+        }
+        return ancestors;
+    }
+
+    protected BoxCollection getPathCollection(CoreSession session) {
+        final Map<String, Object> pathCollection = new HashMap<>();
+        List<BoxTypedObject> hierarchy = getParentsHierarchy(getAncestors(session));
+        pathCollection.put(BoxCollection.FIELD_ENTRIES, hierarchy);
+        pathCollection.put(BoxCollection.FIELD_TOTAL_COUNT, hierarchy.size());
+        return new BoxCollection(Collections.unmodifiableMap(pathCollection));
+    }
+
+    protected BoxFolder getParent(CoreSession session) {
+        List<BoxAncestor> hierarchy = getAncestors(session);
+        final BoxAncestor parent = hierarchy.isEmpty() ? BoxAncestor.NONE : hierarchy.get(0);
+        return parent.toBoxFolder();
+    }
+
+    protected List<BoxTypedObject> getParentsHierarchy(List<BoxAncestor> ancestors) {
+        final List<BoxTypedObject> pathCollection = new ArrayList<>(ancestors.size());
+        for (BoxAncestor ancestor : ancestors) {
+            pathCollection.add(ancestor.toBoxItem());
         }
         return pathCollection;
     }
 
     protected String[] getTags(CoreSession session) {
-        final TagService tagService = Framework.getLocalService(TagService.class);
-        final List<Tag> tags = tagService.getDocumentTags(session, doc.getId(), session.getPrincipal().getName());
-        final String[] tagNames = new String[tags.size()];
-        int index = 0;
-        for (Tag tag : tags) {
-            tagNames[index] = tag.getLabel();
-            index++;
+        if (tags == null) {
+            tags = boxService.getTags(session, doc.getId());
         }
-        return tagNames;
+        return tags;
     }
 
     /**
@@ -221,6 +248,8 @@ public abstract class BoxAdapter {
                 for (String tag : boxItem.getTags()) {
                     tagService.tag(session, doc.getId(), tag, session.getPrincipal().getName());
                 }
+                // Read the tags again from the invalidated cache
+                tags = null;
             }
         }
         session.saveDocument(doc);
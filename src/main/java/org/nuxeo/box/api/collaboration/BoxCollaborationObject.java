@@ -49,8 +49,12 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 
 /**
  * WebObject for a Box Collaboration
@@ -82,24 +86,36 @@ public class BoxCollaborationObject extends AbstractResource<ResourceTypeImpl> {
     }
 
     @GET
-    public String doGetCollaborations() throws DocumentNotFoundException, BoxJSONException {
-        return boxService.toJSONString(boxFolder.getCollaborations());
+    public Response doGetCollaborations(@Context Request request) throws DocumentNotFoundException,
+            BoxJSONException {
+        final EntityTag entityTag = boxService.getCollaborationsEntityTag(boxFolder.getDoc());
+        ResponseBuilder notModified = boxService.evaluatePreconditions(request, entityTag, null);
+        if (notModified != null) {
+            return notModified.build();
+        }
+        return boxService.toJSONResponse(boxFolder.getCollaborations(), ctx.getRequest()).tag(entityTag).build();
     }
 
     @GET
     @Path("/{collaborationId}")
-    public String doGetCollaboration(@PathParam("collaborationId") String collaborationId) throws
-            BoxJSONException {
+    public Response doGetCollaboration(@PathParam("collaborationId") String collaborationId,
+            @Context Request request) throws BoxJSONException {
         CoreSession session = ctx.getCoreSession();
         String[] collaborationIds = boxService.getCollaborationArrayIds(collaborationId);
         DocumentModel folder = session.getDocument(new IdRef(collaborationIds[0]));
+        // Short-circuit unchanged collaborations before adapting the folder
+        final EntityTag entityTag = boxService.getCollaborationsEntityTag(folder);
+        ResponseBuilder notModified = boxService.evaluatePreconditions(request, entityTag, null);
+        if (notModified != null) {
+            return notModified.build();
+        }
         boxFolder = (BoxFolderAdapter) folder.getAdapter(BoxAdapter.class);
         BoxCollaboration collaboration = boxFolder.getCollaboration(collaborationIds[1]);
         if (collaboration == null) {
             throw new BoxRestException("There is no collaboration with id " + collaborationId,
                     Response.Status.NOT_FOUND.getStatusCode());
         }
-        return boxService.toJSONString(collaboration);
+        return boxService.toJSONResponse(collaboration, ctx.getRequest()).tag(entityTag).build();
     }
 
     /**
@@ -112,6 +128,8 @@ public class BoxCollaborationObject extends AbstractResource<ResourceTypeImpl> {
         CoreSession session = ctx.getCoreSession();
         String[] collaborationIds = boxService.getCollaborationArrayIds(collaborationId);
         DocumentRef docRef = new IdRef(collaborationIds[0]);
+        boxService.checkIfMatch(ctx.getRequest(), () -> boxService.getCollaborationsEntityTag(session.getDocument(
+                docRef)));
         ACP acp = session.getACP(docRef);
         acp.removeACL(collaborationIds[1]);
         session.setACP(docRef, acp, true);
@@ -151,6 +169,7 @@ public class BoxCollaborationObject extends AbstractResource<ResourceTypeImpl> {
         String[] collaborationIds = boxService.getCollaborationArrayIds(collaborationId);
         DocumentRef docRef = new IdRef(collaborationIds[0]);
         DocumentModel targetDocument = session.getDocument(docRef);
+        boxService.checkIfMatch(ctx.getRequest(), () -> boxService.getCollaborationsEntityTag(targetDocument));
         // ACLs Setup
         ACP acp = session.getACP(targetDocument.getRef());
         ACL acl = acp.getACL(collaborationIds[1]);
@@ -45,8 +45,12 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import java.lang.reflect.InvocationTargetException;
 import java.text.ParseException;
 import java.util.Date;
@@ -82,13 +86,21 @@ public class BoxCommentObject extends AbstractResource<ResourceTypeImpl> {
 
     @GET
     @Path("{commentId}")
-    public String doGetComment(@PathParam("commentId") final String commentId) throws DocumentNotFoundException,
-            BoxJSONException {
+    public Response doGetComment(@PathParam("commentId") final String commentId, @Context Request request)
+            throws DocumentNotFoundException, BoxJSONException {
         final CoreSession session = ctx.getCoreSession();
         final DocumentModel comment = session.getDocument(new IdRef(commentId));
+        // Short-circuit unchanged comments before adapting them
+        final EntityTag entityTag = boxService.getEntityTag(comment);
+        final Date lastModified = boxService.getLastModified(comment);
+        ResponseBuilder notModified = boxService.evaluatePreconditions(request, entityTag, lastModified);
+        if (notModified != null) {
+            return notModified.build();
+        }
         // Adapt nx document to box comment adapter
         final BoxCommentAdapter commentAdapter = comment.getAdapter(BoxCommentAdapter.class);
-        return boxService.toJSONString(commentAdapter.getBoxComment());
+        return boxService.toJSONResponse(commentAdapter.getBoxComment(), ctx.getRequest()).tag(entityTag).lastModified(
+                lastModified).build();
     }
 
     @POST
@@ -123,6 +135,7 @@ public class BoxCommentObject extends AbstractResource<ResourceTypeImpl> {
         final CoreSession session = ctx.getCoreSession();
         // Fetch the nx document comment
         final DocumentModel nxComment = session.getDocument(new IdRef(commentId));
+        boxService.checkIfMatch(ctx.getRequest(), () -> boxService.getEntityTag(nxComment));
         // Create box comment from json payload
         BoxComment boxCommentUpdated = boxService.getBoxComment(jsonBoxComment);
         // Adapt nx document to box comment adapter
@@ -138,12 +151,14 @@ public class BoxCommentObject extends AbstractResource<ResourceTypeImpl> {
     @Path("{commentId}")
     public void doDeleteComment(@PathParam("commentId") String commentId) {
         final CoreSession session = ctx.getCoreSession();
+        boxService.checkIfMatch(ctx.getRequest(), () -> boxService.getEntityTag(session.getDocument(new IdRef(
+                commentId))));
         session.removeDocument(new IdRef(commentId));
         session.save();
     }
 
     @GET
-    public String doGetComments() throws DocumentNotFoundException, BoxJSONException {
-        return boxService.toJSONString(boxFile.getComments());
+    public Response doGetComments() throws DocumentNotFoundException, BoxJSONException {
+        return boxService.toJSONResponse(boxFile.getComments(), ctx.getRequest()).build();
     }
 }
@@ -21,8 +21,8 @@ package org.nuxeo.box.api.comment.adapter;
 import org.nuxeo.box.api.marshalling.dao.BoxComment;
 import org.nuxeo.box.api.marshalling.dao.BoxFile;
 import org.nuxeo.box.api.marshalling.dao.BoxItem;
+import org.nuxeo.box.api.marshalling.dao.BoxObject.LazyValue;
 import org.nuxeo.box.api.marshalling.dao.BoxTypedObject;
-import org.nuxeo.box.api.marshalling.dao.BoxUser;
 import org.nuxeo.box.api.marshalling.exceptions.BoxJSONException;
 import org.nuxeo.box.api.marshalling.exceptions.BoxRestException;
 import org.nuxeo.box.api.service.BoxService;
@@ -30,9 +30,7 @@ import org.joda.time.DateTime;
 import org.joda.time.format.ISODateTimeFormat;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
-import org.nuxeo.ecm.core.api.NuxeoPrincipal;
 import org.nuxeo.ecm.platform.comment.api.CommentManager;
-import org.nuxeo.ecm.platform.usermanager.UserManager;
 import org.nuxeo.runtime.api.Framework;
 
 import java.lang.reflect.InvocationTargetException;
@@ -58,7 +56,7 @@ public class BoxCommentAdapter {
      * Instantiate the adapter and the Box Comment from Nuxeo Document and load its properties into json format
      */
     public BoxCommentAdapter(DocumentModel doc) {
-        BoxService boxService = Framework.getLocalService(BoxService.class);
+        final BoxService boxService = Framework.getLocalService(BoxService.class);
 
         comment = doc;
 
@@ -71,10 +69,8 @@ public class BoxCommentAdapter {
                 ISODateTimeFormat.dateTime().print(new DateTime(doc.getPropertyValue("dc:modified"))));
 
         // Comment Author
-        final UserManager userManager = Framework.getLocalService(UserManager.class);
-        final NuxeoPrincipal creator = userManager.getPrincipal((String) doc.getPropertyValue("comment:author"));
-        final BoxUser boxCreator = boxService.fillUser(creator);
-        boxProperties.put(BoxComment.FIELD_CREATED_BY, boxCreator);
+        final String author = (String) doc.getPropertyValue("comment:author");
+        boxProperties.put(BoxComment.FIELD_CREATED_BY, new LazyValue(() -> boxService.getBoxUser(author)));
 
         boxProperties.put(BoxComment.FIELD_MESSAGE, doc.getPropertyValue("comment:text"));
         boxProperties.put(BoxComment.FIELD_IS_REPLY_COMMENT, null);
@@ -0,0 +1,205 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.event;
+
+import org.joda.time.DateTime;
+import org.joda.time.format.ISODateTimeFormat;
+import org.nuxeo.box.api.BoxConstants;
+import org.nuxeo.box.api.marshalling.dao.BoxEvent;
+import org.nuxeo.box.api.marshalling.dao.BoxEventCollection;
+import org.nuxeo.box.api.marshalling.dao.BoxFile;
+import org.nuxeo.box.api.marshalling.dao.BoxFolder;
+import org.nuxeo.box.api.marshalling.dao.BoxItem;
+import org.nuxeo.box.api.marshalling.dao.BoxRealTimeServer;
+import org.nuxeo.box.api.marshalling.dao.BoxTypedObject;
+import org.nuxeo.box.api.marshalling.exceptions.BoxRestException;
+import org.nuxeo.box.api.service.BoxEventJournal;
+import org.nuxeo.box.api.service.BoxProjection;
+import org.nuxeo.box.api.service.BoxService;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.IdRef;
+import org.nuxeo.ecm.core.api.IterableQueryResult;
+import org.nuxeo.ecm.core.api.NuxeoPrincipal;
+import org.nuxeo.ecm.core.query.sql.NXQL;
+import org.nuxeo.ecm.platform.web.common.vh.VirtualHostHelper;
+import org.nuxeo.ecm.webengine.model.WebObject;
+import org.nuxeo.ecm.webengine.model.impl.AbstractResource;
+import org.nuxeo.ecm.webengine.model.impl.ResourceTypeImpl;
+import org.nuxeo.runtime.api.Framework;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.OPTIONS;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * WebObject for the Box Events: the changes of the folders and files, read from a stream position.
+ *
+ * @since 9.1
+ */
+@WebObject(type = "events")
+@Produces({ MediaType.APPLICATION_JSON })
+public class BoxEventObject extends AbstractResource<ResourceTypeImpl> {
+
+    public static final String STREAM_POSITION_NOW = "now";
+
+    /**
+     * Only changes are recorded, so all the stream types return the same events
+     */
+    public static final Set<String> STREAM_TYPES = new LinkedHashSet<>(Arrays.asList("all", "changes", "sync"));
+
+    public static final int MAX_LIMIT = 500;
+
+    public static final String REALTIME_PATH = "box/realtime";
+
+    /**
+     * In seconds, before polling again after an error
+     */
+    public static final String REALTIME_TTL = "10";
+
+    BoxService boxService;
+
+    @Override
+    public void initialize(Object... args) {
+        boxService = Framework.getLocalService(BoxService.class);
+    }
+
+    @GET
+    public Response doGetEvents(@DefaultValue("0") @QueryParam("stream_position") String streamPosition,
+            @DefaultValue("100") @QueryParam("limit") int limit,
+            @DefaultValue("all") @QueryParam("stream_type") String streamType) {
+        if (!STREAM_TYPES.contains(streamType)) {
+            throw new BoxRestException("Invalid stream_type " + streamType,
+                    Response.Status.BAD_REQUEST.getStatusCode());
+        }
+        BoxEventJournal journal = boxService.getEventJournal();
+        List<BoxEventJournal.Entry> entries;
+        long nextPosition;
+        if (STREAM_POSITION_NOW.equals(streamPosition)) {
+            entries = new ArrayList<>();
+            nextPosition = journal.getHeadPosition();
+        } else {
+            long position;
+            try {
+                position = Long.parseLong(streamPosition);
+            } catch (NumberFormatException e) {
+                throw new BoxRestException("Invalid stream_position " + streamPosition, e,
+                        Response.Status.BAD_REQUEST.getStatusCode());
+            }
+            entries = journal.read(position, Math.min(Math.max(limit, 1), MAX_LIMIT));
+            nextPosition = entries.isEmpty() ? Math.min(Math.max(position, journal.getFirstPosition()),
+                    journal.getHeadPosition()) : entries.get(entries.size() - 1).getPosition() + 1;
+        }
+        ArrayList<BoxTypedObject> events = toBoxEvents(ctx.getCoreSession(), entries);
+        BoxEventCollection collection = new BoxEventCollection();
+        collection.put(BoxEventCollection.FIELD_ENTRIES, events);
+        collection.put(BoxEventCollection.FIELD_CHUNK_SIZE, events.size());
+        collection.put(BoxEventCollection.FIELD_NEXT_STREAM_POSITION, nextPosition);
+        return boxService.toJSONResponse(collection, ctx.getRequest()).build();
+    }
+
+    /**
+     * Open a channel of the realtime server, watching the changes of a folder tree or of all of them
+     */
+    @OPTIONS
+    public Response doGetRealTimeServer(@QueryParam("folder_id") String folderId) {
+        final CoreSession session = ctx.getCoreSession();
+        String path = null;
+        if (folderId != null) {
+            path = "0".equals(folderId) ? session.getRootDocument().getPathAsString() : session.getDocument(
+                    new IdRef(folderId)).getPathAsString();
+        }
+        String channel = boxService.getRealTimeNotifier().openChannel(path);
+        String timeout = Framework.getProperty(BoxConstants.BOX_REALTIME_TIMEOUT_PROPERTY,
+                BoxConstants.BOX_REALTIME_TIMEOUT);
+        BoxRealTimeServer server = new BoxRealTimeServer();
+        server.put(BoxRealTimeServer.FIELD_URL, VirtualHostHelper.getBaseURL(ctx.getRequest()) + REALTIME_PATH
+                + "?channel=" + channel);
+        server.put(BoxRealTimeServer.FIELD_TTL, REALTIME_TTL);
+        server.put(BoxRealTimeServer.FIELD_MAX_RETRIES, BoxConstants.BOX_REALTIME_MAX_RETRIES);
+        server.put(BoxRealTimeServer.FIELD_RETRY_TIMEOUT, Integer.valueOf(timeout));
+        ArrayList<BoxTypedObject> entries = new ArrayList<>();
+        entries.add(server);
+        BoxEventCollection collection = new BoxEventCollection();
+        collection.put(BoxEventCollection.FIELD_ENTRIES, entries);
+        collection.put(BoxEventCollection.FIELD_CHUNK_SIZE, entries.size());
+        return boxService.toJSONResponse(collection, ctx.getRequest()).build();
+    }
+
+    /**
+     * Render the events whose item can be read, all the items being fetched with a single query
+     */
+    protected ArrayList<BoxTypedObject> toBoxEvents(CoreSession session, List<BoxEventJournal.Entry> entries) {
+        final Map<String, BoxTypedObject> sources = new HashMap<>();
+        if (!entries.isEmpty()) {
+            StringBuilder ids = new StringBuilder();
+            for (BoxEventJournal.Entry entry : entries) {
+                if (ids.length() > 0) {
+                    ids.append(", ");
+                }
+                ids.append(NXQL.escapeString(entry.getDocId()));
+            }
+            String query = "SELECT " + BoxProjection.SELECT_CLAUSE + " FROM Document WHERE " + NXQL.ECM_UUID
+                    + " IN (" + ids + ")";
+            IterableQueryResult rows = session.queryAndFetch(query, NXQL.NXQL);
+            try {
+                for (Map<String, Serializable> row : rows) {
+                    sources.put((String) row.get(NXQL.ECM_UUID), BoxProjection.ALL.fromRow(row));
+                }
+            } finally {
+                rows.close();
+            }
+        }
+        NuxeoPrincipal principal = (NuxeoPrincipal) session.getPrincipal();
+        ArrayList<BoxTypedObject> events = new ArrayList<>(entries.size());
+        for (BoxEventJournal.Entry entry : entries) {
+            BoxTypedObject source = sources.get(entry.getDocId());
+            if (source == null) {
+                // Removed items are only known by the ones who could read them: their author and administrators
+                if (!BoxEvent.EVENT_TYPE_ITEM_TRASH.equals(entry.getEventType())
+                        || !(principal.isAdministrator() || principal.getName().equals(entry.getUsername()))) {
+                    continue;
+                }
+                source = entry.isFolder() ? new BoxFolder() : new BoxFile();
+                source.put(BoxItem.FIELD_ID, entry.getDocId());
+            }
+            BoxEvent event = new BoxEvent();
+            event.put(BoxEvent.FIELD_EVENT_ID, String.valueOf(entry.getPosition()));
+            event.put(BoxEvent.FIELD_EVENT_TYPE, entry.getEventType());
+            event.put(BoxEvent.FIELD_SOURCE, source);
+            event.put(BoxItem.FIELD_CREATED_AT, ISODateTimeFormat.dateTime().print(new DateTime(
+                    entry.getTimestamp())));
+            event.put(BoxItem.FIELD_CREATED_BY, boxService.getBoxUser(entry.getUsername()));
+            events.add(event);
+        }
+        return events;
+    }
+
+}
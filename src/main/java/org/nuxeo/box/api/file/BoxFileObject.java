@@ -21,34 +21,55 @@ package org.nuxeo.box.api.file;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
 import java.lang.reflect.InvocationTargetException;
+import java.net.URLEncoder;
 import java.text.ParseException;
+import java.util.Date;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 
 import org.nuxeo.box.api.adapter.BoxAdapter;
 import org.nuxeo.box.api.file.adapter.BoxFileAdapter;
 import org.nuxeo.box.api.marshalling.dao.BoxFile;
 import org.nuxeo.box.api.marshalling.exceptions.BoxJSONException;
+import org.nuxeo.box.api.marshalling.exceptions.BoxRestException;
+import org.nuxeo.box.api.service.BoxBlobStreamingOutput;
+import org.nuxeo.box.api.service.BoxByteRange;
+import org.nuxeo.box.api.service.BoxContentDigest;
+import org.nuxeo.box.api.service.BoxMetrics;
+import org.nuxeo.box.api.service.BoxProjection;
 import org.nuxeo.box.api.service.BoxService;
+import org.nuxeo.box.api.utils.Constants;
+import org.nuxeo.ecm.core.api.Blob;
 import org.nuxeo.ecm.core.api.Blobs;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentNotFoundException;
 import org.nuxeo.ecm.core.api.IdRef;
+import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.webengine.model.WebObject;
 import org.nuxeo.ecm.webengine.model.impl.AbstractResource;
 import org.nuxeo.ecm.webengine.model.impl.ResourceTypeImpl;
 import org.nuxeo.runtime.api.Framework;
 
+import com.codahale.metrics.Timer;
 import com.sun.jersey.multipart.FormDataParam;
 
 /**
@@ -74,23 +95,111 @@ public class BoxFileObject extends AbstractResource<ResourceTypeImpl> {
 
     @GET
     @Path("{fileId}")
-    public String doGetFile(@PathParam("fileId") final String fileId) throws DocumentNotFoundException,
-            BoxJSONException {
+    public Response doGetFile(@PathParam("fileId") final String fileId, @QueryParam("fields") String fields,
+            @Context Request request) throws DocumentNotFoundException, BoxJSONException {
         final CoreSession session = ctx.getCoreSession();
-        final DocumentModel file = session.getDocument(new IdRef(fileId));
+        final DocumentModel file;
+        try (Timer.Context timer = BoxMetrics.time(BoxMetrics.PHASE_FETCH)) {
+            file = session.getDocument(new IdRef(fileId));
+        }
+        // Short-circuit unchanged files before adapting them
+        final BoxProjection projection = BoxProjection.of(fields);
+        final EntityTag entityTag = boxService.getEntityTag(file, projection);
+        final Date lastModified = boxService.getLastModified(file);
+        ResponseBuilder notModified = boxService.evaluatePreconditions(request, entityTag, lastModified);
+        if (notModified != null) {
+            return notModified.build();
+        }
         // Adapt nx document to box folder adapter
         final BoxFileAdapter fileAdapter = (BoxFileAdapter) file.getAdapter(BoxAdapter.class);
-        return boxService.toJSONString(fileAdapter.getBoxItem());
+        // Only the requested fields are computed
+        return boxService.toJSONResponse(projection.project(fileAdapter.getBoxItem()),
+                ctx.getRequest()).tag(entityTag).lastModified(lastModified).build();
+    }
+
+    /**
+     * Download the content of a file, or the byte range requested by a resumed or segmented download
+     *
+     * @since 9.1
+     */
+    @GET
+    @Path("{fileId}/content")
+    @Produces(MediaType.WILDCARD)
+    public Response doGetFileContent(@PathParam("fileId") final String fileId,
+            @HeaderParam(Constants.RANGE) String range, @HeaderParam(Constants.IF_RANGE) String ifRange,
+            @Context Request request) {
+        final CoreSession session = ctx.getCoreSession();
+        final DocumentModel file = session.getDocument(new IdRef(fileId));
+        final Blob blob = file.hasSchema("file") ? (Blob) file.getPropertyValue("file:content") : null;
+        if (blob == null) {
+            throw new BoxRestException("File " + fileId + " has no content", Response.Status.NOT_FOUND.getStatusCode());
+        }
+        // The tag of the content, ranges of different contents must never be mixed
+        final EntityTag entityTag = blob.getDigest() != null ? new EntityTag(blob.getDigest())
+                : boxService.getEntityTag(file);
+        final Date lastModified = boxService.getLastModified(file);
+        ResponseBuilder notModified = boxService.evaluatePreconditions(request, entityTag, lastModified);
+        if (notModified != null) {
+            return notModified.build();
+        }
+        final long length = blob.getLength();
+        BoxByteRange byteRange = BoxByteRange.isIfRangeSatisfied(ifRange, entityTag, lastModified)
+                ? BoxByteRange.parse(range, length) : null;
+        ResponseBuilder builder;
+        if (byteRange == BoxByteRange.UNSATISFIABLE) {
+            return Response.status(BoxByteRange.STATUS_RANGE_NOT_SATISFIABLE).header(Constants.CONTENT_RANGE,
+                    byteRange.getContentRange(length)).tag(entityTag).build();
+        } else if (byteRange != null) {
+            builder = Response.status(BoxByteRange.STATUS_PARTIAL_CONTENT).entity(new BoxBlobStreamingOutput(blob,
+                    byteRange.getFirst(), byteRange.getLength())).header(Constants.CONTENT_RANGE,
+                    byteRange.getContentRange(length)).header(HttpHeaders.CONTENT_LENGTH, byteRange.getLength());
+        } else {
+            builder = Response.ok(new BoxBlobStreamingOutput(blob, 0, length < 0 ? Long.MAX_VALUE : length));
+            if (length >= 0) {
+                builder.header(HttpHeaders.CONTENT_LENGTH, length);
+            }
+        }
+        String mimeType = blob.getMimeType() != null ? blob.getMimeType() : MediaType.APPLICATION_OCTET_STREAM;
+        return builder.type(mimeType).header(Constants.ACCEPT_RANGES, BoxByteRange.BYTES_UNIT).header(
+                Constants.CONTENT_DISPOSITION, getContentDisposition(blob.getFilename() != null
+                        ? blob.getFilename() : file.getName())).tag(entityTag).lastModified(lastModified).build();
+    }
+
+    protected String getContentDisposition(String filename) {
+        try {
+            return "attachment; filename*=UTF-8''" + URLEncoder.encode(filename, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new NuxeoException(e);
+        }
     }
 
     @DELETE
     @Path("{fileId}")
     public void doDeleteFile(@PathParam("fileId") String fileId) {
         final CoreSession session = ctx.getCoreSession();
+        boxService.checkIfMatch(ctx.getRequest(), () -> boxService.getEntityTag(session.getDocument(new IdRef(
+                fileId))));
         session.removeDocument(new IdRef(fileId));
         session.save();
     }
 
+    /**
+     * Copy a file into a folder, its content being shared instead of being uploaded again
+     */
+    @POST
+    @Path("{fileId}/copy")
+    public Response doCopyFile(@PathParam("fileId") String fileId, String jsonBoxFile) throws BoxJSONException {
+        final CoreSession session = ctx.getCoreSession();
+        BoxFile boxFile = boxService.getBoxFile(jsonBoxFile);
+        if (boxFile.getParent() == null) {
+            throw new BoxRestException("Missing parent", Response.Status.BAD_REQUEST.getStatusCode());
+        }
+        DocumentModel copy = boxService.copyItem(session, fileId, boxFile.getParent().getId(), boxFile.getName());
+        final BoxFileAdapter fileAdapter = (BoxFileAdapter) copy.getAdapter(BoxAdapter.class);
+        return boxService.toJSONResponse(fileAdapter.getBoxItem(), ctx.getRequest()).status(
+                Response.Status.CREATED).build();
+    }
+
     @PUT
     @Path("{fileId}")
     public String doUpdateFile(@PathParam("fileId") String fileId, String jsonBoxFile) throws
@@ -98,6 +207,7 @@ public class BoxFileObject extends AbstractResource<ResourceTypeImpl> {
         final CoreSession session = ctx.getCoreSession();
         // Fetch the nx document with given id
         final DocumentModel nxDocument = session.getDocument(new IdRef(fileId));
+        boxService.checkIfMatch(ctx.getRequest(), () -> boxService.getEntityTag(nxDocument));
         // Create box File from json payload
         BoxFile boxFileUpdated = boxService.getBoxFile(jsonBoxFile);
         // Adapt nx document to box File adapter
@@ -113,8 +223,8 @@ public class BoxFileObject extends AbstractResource<ResourceTypeImpl> {
     @Path("content")
     @Consumes(MediaType.MULTIPART_FORM_DATA)
     public String doPostFile(@FormDataParam("file") InputStream uploadedInputStream,
-            @FormDataParam("filename") String fileName, @FormDataParam("parent_id") String parentId)
-            throws BoxJSONException, IOException {
+            @FormDataParam("filename") String fileName, @FormDataParam("parent_id") String parentId,
+            @HeaderParam(Constants.CONTENT_MD5) String contentMd5) throws BoxJSONException, IOException {
         // Fetching its parent to get parent id
         final CoreSession session = ctx.getCoreSession();
         DocumentModel documentParent;
@@ -123,9 +233,14 @@ public class BoxFileObject extends AbstractResource<ResourceTypeImpl> {
         } else {
             documentParent = session.getDocument(new IdRef(parentId));
         }
+        // Digest the upload while it is stored, and check it before creating anything
+        BoxContentDigest digest = new BoxContentDigest(contentMd5);
+        Blob blob = Blobs.createBlob(digest.wrap(uploadedInputStream));
+        String sha1 = digest.verify();
         // Create the nx document from box item information
         DocumentModel newFile = session.createDocumentModel(documentParent.getPathAsString(), fileName, "File");
-        newFile.setPropertyValue("file:content", (Serializable) Blobs.createBlob(uploadedInputStream));
+        newFile.setPropertyValue("file:content", (Serializable) blob);
+        BoxContentDigest.setSha1(newFile, sha1);
         newFile = session.createDocument(newFile);
         // Adapt nx document to box folder adapter
         final BoxFileAdapter fileAdapter = (BoxFileAdapter) newFile.getAdapter(BoxAdapter.class);
@@ -133,6 +248,14 @@ public class BoxFileObject extends AbstractResource<ResourceTypeImpl> {
         return boxService.toJSONString(fileAdapter.getBoxItem());
     }
 
+    /**
+     * @since 9.1
+     */
+    @Path("upload_sessions")
+    public Object doGetUploadSessions() {
+        return newObject("upload_session");
+    }
+
     @Path("{fileId}/comments")
     public Object doGetComments(@PathParam("fileId") String fileId) {
         return newObject("comment", fileId);
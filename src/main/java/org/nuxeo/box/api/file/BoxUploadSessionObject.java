@@ -0,0 +1,203 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.file;
+
+import org.apache.commons.lang.StringUtils;
+import org.nuxeo.box.api.BoxConstants;
+import org.nuxeo.box.api.adapter.BoxAdapter;
+import org.nuxeo.box.api.marshalling.dao.BoxCollection;
+import org.nuxeo.box.api.marshalling.dao.BoxTypedObject;
+import org.nuxeo.box.api.marshalling.dao.BoxUploadPart;
+import org.nuxeo.box.api.marshalling.dao.BoxUploadPartCollection;
+import org.nuxeo.box.api.marshalling.dao.BoxUploadSession;
+import org.nuxeo.box.api.marshalling.exceptions.BoxJSONException;
+import org.nuxeo.box.api.marshalling.exceptions.BoxRestException;
+import org.nuxeo.box.api.service.BoxContentDigest;
+import org.nuxeo.box.api.service.BoxService;
+import org.nuxeo.box.api.service.BoxUploadStore;
+import org.nuxeo.box.api.utils.Constants;
+import org.nuxeo.ecm.core.api.Blob;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.IdRef;
+import org.nuxeo.ecm.core.api.security.SecurityConstants;
+import org.nuxeo.ecm.webengine.model.WebObject;
+import org.nuxeo.ecm.webengine.model.impl.AbstractResource;
+import org.nuxeo.ecm.webengine.model.impl.ResourceTypeImpl;
+import org.nuxeo.runtime.api.Framework;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * WebObject for the Box chunked uploads: a session is created for a file, its parts are uploaded in any order, then
+ * committed as a new file.
+ *
+ * @since 9.1
+ */
+@WebObject(type = "upload_session")
+@Produces({ MediaType.APPLICATION_JSON })
+public class BoxUploadSessionObject extends AbstractResource<ResourceTypeImpl> {
+
+    BoxService boxService;
+
+    BoxUploadStore uploadStore;
+
+    @Override
+    public void initialize(Object... args) {
+        boxService = Framework.getLocalService(BoxService.class);
+        uploadStore = boxService.getUploadStore();
+    }
+
+    @POST
+    public Response doCreateSession(String jsonBoxUploadSession) throws BoxJSONException {
+        final CoreSession session = ctx.getCoreSession();
+        BoxUploadSession request = boxService.getBoxUploadSession(jsonBoxUploadSession);
+        if (StringUtils.isBlank(request.getFolderId()) || StringUtils.isBlank(request.getFileName())
+                || request.getFileSize() == null) {
+            throw new BoxRestException("folder_id, file_name and file_size are required",
+                    Response.Status.BAD_REQUEST.getStatusCode());
+        }
+        // Check the folder now rather than after uploading the whole file
+        DocumentModel folder = getFolder(session, request.getFolderId());
+        if (!session.hasPermission(folder.getRef(), SecurityConstants.ADD_CHILDREN)) {
+            throw new BoxRestException("Cannot create a file in folder " + request.getFolderId(),
+                    Response.Status.FORBIDDEN.getStatusCode());
+        }
+        BoxUploadSession uploadSession = uploadStore.create(session.getPrincipal().getName(), request.getFolderId(),
+                request.getFileName(), request.getFileSize(), Long.parseLong(Framework.getProperty(
+                        BoxConstants.BOX_UPLOAD_PART_SIZE_PROPERTY, BoxConstants.BOX_UPLOAD_PART_SIZE)),
+                Long.parseLong(Framework.getProperty(BoxConstants.BOX_UPLOAD_SESSION_TTL_PROPERTY,
+                        BoxConstants.BOX_UPLOAD_SESSION_TTL)));
+        return boxService.toJSONResponse(withEndpoints(uploadSession), ctx.getRequest()).status(
+                Response.Status.CREATED).build();
+    }
+
+    @GET
+    @Path("{sessionId}")
+    public Response doGetSession(@PathParam("sessionId") String sessionId) {
+        BoxUploadSession uploadSession = uploadStore.getSession(getOwner(), sessionId);
+        return boxService.toJSONResponse(withEndpoints(uploadSession), ctx.getRequest()).build();
+    }
+
+    @PUT
+    @Path("{sessionId}")
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    public Response doUploadPart(@PathParam("sessionId") String sessionId,
+            @HeaderParam(Constants.CONTENT_RANGE) String contentRange, @HeaderParam(Constants.DIGEST) String digest,
+            InputStream part) {
+        // Streamed to disk, the part is never held in memory
+        BoxUploadPart uploadedPart = uploadStore.putPart(getOwner(), sessionId, contentRange, digest, part);
+        BoxUploadPartCollection result = new BoxUploadPartCollection();
+        result.put(BoxUploadPartCollection.FIELD_PART, uploadedPart);
+        return boxService.toJSONResponse(result, ctx.getRequest()).build();
+    }
+
+    @GET
+    @Path("{sessionId}/parts")
+    public Response doGetParts(@PathParam("sessionId") String sessionId,
+            @DefaultValue("0") @QueryParam("offset") int offset,
+            @DefaultValue("1000") @QueryParam("limit") int limit) {
+        List<BoxUploadPart> parts = uploadStore.getParts(getOwner(), sessionId);
+        int from = Math.min(Math.max(offset, 0), parts.size());
+        int to = Math.min(from + Math.max(limit, 0), parts.size());
+        BoxUploadPartCollection result = new BoxUploadPartCollection();
+        result.put(BoxUploadPartCollection.FIELD_ENTRIES, new ArrayList<>(parts.subList(from, to)));
+        result.put(BoxUploadPartCollection.FIELD_TOTAL_COUNT, parts.size());
+        result.put(BoxUploadPartCollection.FIELD_OFFSET, from);
+        result.put(BoxUploadPartCollection.FIELD_LIMIT, limit);
+        return boxService.toJSONResponse(result, ctx.getRequest()).build();
+    }
+
+    @POST
+    @Path("{sessionId}/commit")
+    public Response doCommit(@PathParam("sessionId") String sessionId, @HeaderParam(Constants.DIGEST) String digest,
+            String jsonBoxUploadParts) throws BoxJSONException, IOException {
+        final CoreSession session = ctx.getCoreSession();
+        final String owner = getOwner();
+        BoxUploadStore.Upload upload = uploadStore.getUpload(owner, sessionId);
+        List<BoxUploadPart> parts = StringUtils.isBlank(jsonBoxUploadParts) ? null : boxService.getBoxUploadParts(
+                jsonBoxUploadParts).getParts();
+        Blob blob = uploadStore.commit(owner, sessionId, parts, digest);
+        // Create the nx document, the blob manager reading the parts in sequence
+        DocumentModel folder = getFolder(session, upload.getFolderId());
+        DocumentModel newFile = session.createDocumentModel(folder.getPathAsString(), upload.getFileName(), "File");
+        newFile.setPropertyValue("file:content", (Serializable) blob);
+        // Verified against the parts
+        BoxContentDigest.setSha1(newFile, BoxUploadStore.getSha1Hex(digest));
+        newFile = session.createDocument(newFile);
+        session.save();
+        // The content is now in the binary store
+        uploadStore.delete(owner, sessionId);
+        final Map<String, Object> collectionProperties = new HashMap<>();
+        List<BoxTypedObject> entries = new ArrayList<>();
+        entries.add(newFile.getAdapter(BoxAdapter.class).getBoxItem());
+        collectionProperties.put(BoxCollection.FIELD_ENTRIES, entries);
+        collectionProperties.put(BoxCollection.FIELD_TOTAL_COUNT, entries.size());
+        return boxService.toJSONResponse(new BoxCollection(Collections.unmodifiableMap(collectionProperties)),
+                ctx.getRequest()).status(Response.Status.CREATED).build();
+    }
+
+    @DELETE
+    @Path("{sessionId}")
+    public Response doAbortSession(@PathParam("sessionId") String sessionId) {
+        uploadStore.delete(getOwner(), sessionId);
+        return Response.noContent().build();
+    }
+
+    protected String getOwner() {
+        return ctx.getCoreSession().getPrincipal().getName();
+    }
+
+    protected DocumentModel getFolder(CoreSession session, String folderId) {
+        return "0".equals(folderId) ? session.getRootDocument() : session.getDocument(new IdRef(folderId));
+    }
+
+    protected BoxUploadSession withEndpoints(BoxUploadSession uploadSession) {
+        String url = ctx.getServerURL().toString() + getPath() + "/" + uploadSession.getId();
+        Map<String, String> endpoints = new LinkedHashMap<>();
+        endpoints.put("upload_part", url);
+        endpoints.put("commit", url + "/commit");
+        endpoints.put("abort", url);
+        endpoints.put("list_parts", url + "/parts");
+        endpoints.put("status", url);
+        uploadSession.put(BoxUploadSession.FIELD_SESSION_ENDPOINTS, endpoints);
+        return uploadSession;
+    }
+}
@@ -26,15 +26,14 @@ import org.nuxeo.box.api.marshalling.dao.BoxComment;
 import org.nuxeo.box.api.marshalling.dao.BoxFile;
 import org.nuxeo.box.api.marshalling.dao.BoxItem;
 import org.nuxeo.box.api.marshalling.dao.BoxLock;
+import org.nuxeo.box.api.marshalling.dao.BoxObject.LazyValue;
 import org.nuxeo.box.api.marshalling.dao.BoxUser;
+import org.nuxeo.box.api.service.BoxContentDigest;
 import org.joda.time.DateTime;
 import org.joda.time.format.ISODateTimeFormat;
-import org.nuxeo.ecm.core.api.Blob;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.Lock;
-import org.nuxeo.ecm.core.api.NuxeoPrincipal;
 import org.nuxeo.ecm.platform.comment.api.CommentManager;
-import org.nuxeo.ecm.platform.usermanager.UserManager;
 import org.nuxeo.runtime.api.Framework;
 
 import java.util.ArrayList;
@@ -50,39 +49,57 @@ import java.util.Map;
  */
 public class BoxFileAdapter extends BoxAdapter {
 
+    /**
+     * The lock of the document, when resolved for a whole batch
+     */
+    private Lock lockInfo;
+
+    private boolean lockResolved;
+
     /**
      * Instantiate the adapter and the Box File from Nuxeo Document and load its properties into json format
      */
     public BoxFileAdapter(DocumentModel doc) {
         super(doc);
 
-        // MD5
-        Blob blob = (Blob) doc.getPropertyValue("file:content");
-        if (blob != null) {
-            boxProperties.put(BoxFile.FIELD_SHA1, blob.getDigest());
-        }
+        // SHA1, as stored when uploaded
+        boxProperties.put(BoxFile.FIELD_SHA1, BoxContentDigest.getSha1(doc));
 
         // Lock
-        Map<String, Object> boxLockProperties = new HashMap<>();
-        Lock lockInfo = doc.getLockInfo();
-        if (lockInfo != null) {
-            boxLockProperties.put(BoxItem.FIELD_ID, null);
-            final UserManager userManager = Framework.getLocalService(UserManager.class);
-            final NuxeoPrincipal lockCreator = userManager.getPrincipal(lockInfo.getOwner());
-            final BoxUser boxLockCreator = boxService.fillUser(lockCreator);
-            boxLockProperties.put(BoxItem.FIELD_CREATED_BY, boxLockCreator);
-            boxLockProperties.put(BoxItem.FIELD_CREATED_AT,
-                    ISODateTimeFormat.dateTime().print(new DateTime(lockInfo.getCreated())));
-            boxLockProperties.put(BoxLock.FIELD_EXPIRES_AT, null);
-            boxLockProperties.put(BoxLock.FIELD_IS_DOWNLOAD_PREVENTED, false);
-            BoxLock boxLock = new BoxLock(boxLockProperties);
-            boxProperties.put(BoxConstants.BOX_LOCK, boxLock);
-        }
+        boxProperties.put(BoxConstants.BOX_LOCK, new LazyValue(this::getLock));
 
         boxItem = new BoxFile(Collections.unmodifiableMap(boxProperties));
 
     }
 
+    /**
+     * Set the lock of the document, null if not locked, when resolved for a whole batch
+     *
+     * @since 9.1
+     */
+    public void setLockInfo(Lock lockInfo) {
+        this.lockInfo = lockInfo;
+        lockResolved = true;
+    }
+
+    protected BoxLock getLock() {
+        if (!lockResolved) {
+            setLockInfo(doc.getLockInfo());
+        }
+        if (lockInfo == null) {
+            return null;
+        }
+        Map<String, Object> boxLockProperties = new HashMap<>();
+        boxLockProperties.put(BoxItem.FIELD_ID, null);
+        final BoxUser boxLockCreator = boxService.getBoxUser(lockInfo.getOwner());
+        boxLockProperties.put(BoxItem.FIELD_CREATED_BY, boxLockCreator);
+        boxLockProperties.put(BoxItem.FIELD_CREATED_AT,
+                ISODateTimeFormat.dateTime().print(new DateTime(lockInfo.getCreated())));
+        boxLockProperties.put(BoxLock.FIELD_EXPIRES_AT, null);
+        boxLockProperties.put(BoxLock.FIELD_IS_DOWNLOAD_PREVENTED, false);
+        return new BoxLock(boxLockProperties);
+    }
+
     @Override
     public BoxItem getMiniItem() {
         Map<String, Object> boxProperties = new HashMap<>();
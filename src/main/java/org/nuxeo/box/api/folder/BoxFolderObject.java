@@ -19,30 +19,43 @@
  */
 package org.nuxeo.box.api.folder;
 
+import com.codahale.metrics.Timer;
+import org.nuxeo.box.api.BoxConstants;
 import org.nuxeo.box.api.adapter.BoxAdapter;
 import org.nuxeo.box.api.folder.adapter.BoxFolderAdapter;
 import org.nuxeo.box.api.marshalling.dao.BoxFolder;
+import org.nuxeo.box.api.marshalling.dao.BoxJob;
 import org.nuxeo.box.api.marshalling.exceptions.BoxJSONException;
-import org.nuxeo.box.api.marshalling.jsonparsing.BoxJSONParser;
-import org.nuxeo.box.api.marshalling.jsonparsing.BoxResourceHub;
+import org.nuxeo.box.api.marshalling.exceptions.BoxRestException;
+import org.nuxeo.box.api.service.BoxMetrics;
+import org.nuxeo.box.api.service.BoxProjection;
 import org.nuxeo.box.api.service.BoxService;
+import org.nuxeo.box.api.utils.Constants;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentNotFoundException;
 import org.nuxeo.ecm.core.api.IdRef;
+import org.nuxeo.ecm.core.api.security.SecurityConstants;
 import org.nuxeo.ecm.webengine.model.WebObject;
 import org.nuxeo.ecm.webengine.model.impl.AbstractResource;
 import org.nuxeo.ecm.webengine.model.impl.ResourceTypeImpl;
 import org.nuxeo.runtime.api.Framework;
 
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import java.lang.reflect.InvocationTargetException;
 import java.text.ParseException;
 
@@ -69,14 +82,25 @@ public class BoxFolderObject extends AbstractResource<ResourceTypeImpl> {
 
     @GET
     @Path("{folderId}")
-    public String doGetFolder(@PathParam("folderId") final String folderId) throws DocumentNotFoundException,
-            BoxJSONException {
+    public Response doGetFolder(@PathParam("folderId") final String folderId, @QueryParam("fields") String fields,
+            @Context Request request) throws DocumentNotFoundException, BoxJSONException {
         final CoreSession session = ctx.getCoreSession();
-        final DocumentModel folder = "0".equals(folderId) ? session.getRootDocument() : session.getDocument(new IdRef(
-                folderId));
+        final DocumentModel folder;
+        try (Timer.Context timer = BoxMetrics.time(BoxMetrics.PHASE_FETCH)) {
+            folder = "0".equals(folderId) ? session.getRootDocument() : session.getDocument(new IdRef(folderId));
+        }
+        // Short-circuit unchanged folders before adapting them
+        final BoxProjection projection = BoxProjection.of(fields);
+        final EntityTag entityTag = boxService.getEntityTag(folder, projection);
+        ResponseBuilder notModified = boxService.evaluatePreconditions(request, entityTag, null);
+        if (notModified != null) {
+            return notModified.build();
+        }
         // Adapt nx document to box folder adapter
         final BoxFolderAdapter folderAdapter = (BoxFolderAdapter) folder.getAdapter(BoxAdapter.class);
-        return boxService.toJSONString(folderAdapter.getBoxItem());
+        // Only the requested fields are computed
+        return boxService.toJSONResponse(projection.project(folderAdapter.getBoxItem()),
+                ctx.getRequest()).tag(entityTag).build();
     }
 
     @POST
@@ -109,9 +133,9 @@ public class BoxFolderObject extends AbstractResource<ResourceTypeImpl> {
         final CoreSession session = ctx.getCoreSession();
         // Fetch the nx document with given id
         final DocumentModel nxDocument = session.getDocument(new IdRef(folderId));
+        boxService.checkIfMatch(ctx.getRequest(), () -> boxService.getEntityTag(nxDocument));
         // Create box folder from json payload
-        BoxFolder boxFolderUpdated = new BoxJSONParser(new BoxResourceHub()).parseIntoBoxObject(jsonBoxFolder,
-                BoxFolder.class);
+        BoxFolder boxFolderUpdated = boxService.getBoxFolder(jsonBoxFolder);
         // Adapt nx document to box folder adapter
         final BoxFolderAdapter nxDocumentAdapter = (BoxFolderAdapter) nxDocument.getAdapter(BoxAdapter.class);
         // Update both nx document and box folder adapter
@@ -121,12 +145,64 @@ public class BoxFolderObject extends AbstractResource<ResourceTypeImpl> {
         return boxService.toJSONString(nxDocumentAdapter.getBoxItem());
     }
 
+    /**
+     * Copy a folder and its descendants into another folder, without transferring any content. The descendants of a
+     * large folder are copied in the background: a job is then returned with a 202 status, its id being the one of the
+     * copy.
+     */
+    @POST
+    @Path("{folderId}/copy")
+    public Response doCopyFolder(@PathParam("folderId") String folderId, String jsonBoxFolder) throws
+            BoxJSONException {
+        final CoreSession session = ctx.getCoreSession();
+        BoxFolder boxFolder = boxService.getBoxFolder(jsonBoxFolder);
+        if (boxFolder.getParent() == null) {
+            throw new BoxRestException("Missing parent", Response.Status.BAD_REQUEST.getStatusCode());
+        }
+        DocumentModel copy = boxService.copyItem(session, folderId, boxFolder.getParent().getId(),
+                boxFolder.getName());
+        BoxJob job = boxService.getJob(session, copy.getId());
+        if (job != null) {
+            return boxService.toJSONResponse(job, ctx.getRequest()).status(Response.Status.ACCEPTED).build();
+        }
+        final BoxFolderAdapter folderAdapter = (BoxFolderAdapter) copy.getAdapter(BoxAdapter.class);
+        return boxService.toJSONResponse(folderAdapter.getBoxItem(), ctx.getRequest()).status(
+                Response.Status.CREATED).build();
+    }
+
+    /**
+     * Delete a folder, and its descendants if recursive. The large trees are deleted in the background: a job is then
+     * returned with a 202 status.
+     */
     @DELETE
     @Path("{folderId}")
-    public void doDeleteFolder(@PathParam("folderId") String folderId) {
+    public Response doDeleteFolder(@PathParam("folderId") String folderId,
+            @DefaultValue("false") @QueryParam(Constants.RECURSIVE) boolean recursive) {
         final CoreSession session = ctx.getCoreSession();
-        session.removeDocument(new IdRef(folderId));
+        final DocumentModel folder = session.getDocument(new IdRef(folderId));
+        boxService.checkIfMatch(ctx.getRequest(), () -> boxService.getEntityTag(folder));
+        if (session.hasChildren(folder.getRef())) {
+            if (!recursive) {
+                throw new BoxRestException("Folder " + folderId + " is not empty",
+                        Response.Status.BAD_REQUEST.getStatusCode());
+            }
+            long syncMax = Long.parseLong(Framework.getProperty(BoxConstants.BOX_DELETE_SYNC_MAX_PROPERTY,
+                    BoxConstants.BOX_DELETE_SYNC_MAX));
+            if (boxService.hasMoreDescendants(session, folder, syncMax)) {
+                // Same checks as the removal, done now as the job removes as system
+                if (!session.hasPermission(folder.getRef(), SecurityConstants.REMOVE)
+                        || !session.hasPermission(folder.getParentRef(), SecurityConstants.REMOVE_CHILDREN)) {
+                    throw new BoxRestException("Cannot delete folder " + folderId,
+                            Response.Status.FORBIDDEN.getStatusCode());
+                }
+                BoxJob job = boxService.deleteFolder(session.getRepositoryName(), folderId,
+                        session.getPrincipal().getName());
+                return boxService.toJSONResponse(job, ctx.getRequest()).status(Response.Status.ACCEPTED).build();
+            }
+        }
+        session.removeDocument(folder.getRef());
         session.save();
+        return Response.noContent().build();
     }
 
     @Path("{folderId}/items")
@@ -18,6 +18,8 @@
  */
 package org.nuxeo.box.api.folder.adapter;
 
+import com.codahale.metrics.Timer;
+import com.google.common.primitives.Ints;
 import org.nuxeo.box.api.BoxConstants;
 import org.nuxeo.box.api.adapter.BoxAdapter;
 import org.nuxeo.box.api.marshalling.dao.BoxCollaboration;
@@ -25,13 +27,19 @@ import org.nuxeo.box.api.marshalling.dao.BoxCollection;
 import org.nuxeo.box.api.marshalling.dao.BoxEmail;
 import org.nuxeo.box.api.marshalling.dao.BoxFolder;
 import org.nuxeo.box.api.marshalling.dao.BoxItem;
+import org.nuxeo.box.api.marshalling.dao.BoxObject.LazyValue;
+import org.nuxeo.box.api.marshalling.dao.BoxTypedObject;
+import org.nuxeo.box.api.service.BoxAggregates;
+import org.nuxeo.box.api.service.BoxItemQuery;
+import org.nuxeo.box.api.service.BoxMetrics;
+import org.nuxeo.box.api.service.BoxProjection;
 import org.nuxeo.box.api.service.BoxService;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
-import org.nuxeo.ecm.core.api.DocumentModelList;
 import org.nuxeo.ecm.core.api.IdRef;
 import org.nuxeo.ecm.core.api.security.ACE;
 import org.nuxeo.ecm.core.api.security.ACL;
+import org.nuxeo.ecm.core.api.security.ACP;
 import org.nuxeo.runtime.api.Framework;
 
 import java.util.ArrayList;
@@ -52,7 +60,7 @@ public class BoxFolderAdapter extends BoxAdapter {
      */
     public BoxFolderAdapter(DocumentModel doc) {
         super(doc);
-        CoreSession session = doc.getCoreSession();
+        final CoreSession session = doc.getCoreSession();
         // Email update
         final Map<String, Object> boxEmailProperties = new HashMap<>();
         boxEmailProperties.put(BoxEmail.FIELD_ACCESS, null);
@@ -61,8 +69,8 @@ public class BoxFolderAdapter extends BoxAdapter {
         boxProperties.put(BoxFolder.FIELD_FOLDER_UPLOAD_EMAIL, boxEmail);
 
         // Children
-        boxProperties.put(BoxFolder.FIELD_ITEM_COLLECTION,
-                getItemCollection(session, BoxConstants.BOX_LIMIT, BoxConstants.BOX_OFFSET, BoxConstants.BOX_FIELDS));
+        boxProperties.put(BoxFolder.FIELD_ITEM_COLLECTION, new LazyValue(() -> getItemCollection(session,
+                BoxConstants.BOX_LIMIT, BoxConstants.BOX_OFFSET, BoxConstants.BOX_FIELDS)));
 
         boxItem = new BoxFolder(Collections.unmodifiableMap(boxProperties));
     }
@@ -84,17 +92,32 @@ public class BoxFolderAdapter extends BoxAdapter {
     public BoxCollection getItemCollection(CoreSession session, String limit, String offset, String fields)
             {
         final Map<String, Object> collectionProperties = new HashMap<>();
-        // Fetch items
-        StringBuilder query = new StringBuilder();
-        query.append("SELECT * FROM Document WHERE ecm:parentId=");
-        query.append("'" + doc.getId() + "'");
-        DocumentModelList children = session.query(query.toString(), null, Long.parseLong(limit),
-                Long.parseLong(offset), false);
-        collectionProperties.put(BoxCollection.FIELD_ENTRIES, boxService.getBoxDocumentCollection(children, fields));
-        collectionProperties.put(BoxCollection.FIELD_TOTAL_COUNT, children.size());
+        // Fetch only the mini item columns, children are not loaded
+        List<BoxTypedObject> children;
+        try (Timer.Context timer = BoxMetrics.time(BoxMetrics.PHASE_CHILDREN)) {
+            children = BoxItemQuery.children(doc.getId()).fetch(session, BoxProjection.of(fields), Long.parseLong(
+                    limit), Long.parseLong(offset));
+        }
+        collectionProperties.put(BoxCollection.FIELD_ENTRIES, children);
+        // The total of all the children, maintained with the folder
+        collectionProperties.put(BoxCollection.FIELD_TOTAL_COUNT, Ints.saturatedCast(BoxAggregates.getChildCount(doc)));
         return new BoxCollection(Collections.unmodifiableMap(collectionProperties));
     }
 
+    /**
+     * Fill item collection entries box object, ordered by name and id
+     *
+     * @param marker the marker of the previous page, empty for the first one
+     * @return the page of children after the marker, with the marker of the next page if any
+     * @since 9.1
+     */
+    public BoxCollection getItemCollectionAfter(CoreSession session, String limit, String marker, String fields) {
+        try (Timer.Context timer = BoxMetrics.time(BoxMetrics.PHASE_CHILDREN)) {
+            return BoxItemQuery.children(doc.getId()).fetchAfter(session, BoxProjection.of(fields),
+                    Long.parseLong(limit), marker);
+        }
+    }
+
     /**
      * @return the ACLs set as a BoxCollection containing box collaborations listing
      */
@@ -103,7 +126,7 @@ public class BoxFolderAdapter extends BoxAdapter {
         List<BoxCollaboration> boxCollaborations = new ArrayList<>();
         Map<String, Object> collectionProperties = new HashMap<>();
         CoreSession session = doc.getCoreSession();
-        for (ACL acl : session.getACP(new IdRef(doc.getId())).getACLs()) {
+        for (ACL acl : getACP(session).getACLs()) {
             if (!(ACL.LOCAL_ACL.equals(acl.getName()) || ACL.INHERITED_ACL.equals(acl.getName()))) {
                 for (ACE ace : acl.getACEs()) {
                     if (ace.isGranted()) {
@@ -122,10 +145,16 @@ public class BoxFolderAdapter extends BoxAdapter {
      */
     public BoxCollaboration getCollaboration(String collaborationId) {
         CoreSession session = doc.getCoreSession();
-        ACL acl = session.getACP(new IdRef(doc.getId())).getACL(collaborationId);
+        ACL acl = getACP(session).getACL(collaborationId);
         if (acl == null) {
             return null;
         }
         return boxService.getBoxCollaboration(this, acl.getACEs()[0], collaborationId);
     }
+
+    protected ACP getACP(CoreSession session) {
+        try (Timer.Context timer = BoxMetrics.time(BoxMetrics.PHASE_ACL)) {
+            return session.getACP(new IdRef(doc.getId()));
+        }
+    }
 }
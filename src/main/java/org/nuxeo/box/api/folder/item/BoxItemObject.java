@@ -40,6 +40,7 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 /**
  * WebObject for a Box Folder Item
@@ -68,15 +69,24 @@ public class BoxItemObject extends AbstractResource<ResourceTypeImpl> {
         setRoot(true);
     }
 
+    /**
+     * Items are paged by offset, or after the given marker if <code>usemarker</code> is true.
+     */
     @GET
-    public String doGetItems(@QueryParam("offset") String offset, @QueryParam("limit") String limit,
-            @QueryParam("fields") String fields) throws BoxJSONException {
+    public Response doGetItems(@QueryParam("offset") String offset, @QueryParam("limit") String limit,
+            @QueryParam("fields") String fields, @QueryParam("usemarker") boolean useMarker,
+            @QueryParam("marker") String marker) throws BoxJSONException {
         CoreSession session = ctx.getCoreSession();
+        if (useMarker) {
+            return boxService.toJSONResponse(folderAdapter.getItemCollectionAfter(session,
+                    Objects.firstNonNull(limit, BoxConstants.BOX_LIMIT), Objects.firstNonNull(marker, ""),
+                    Objects.firstNonNull(fields, BoxConstants.BOX_FIELDS)), ctx.getRequest()).build();
+        }
         BoxCollection itemCollection = folderAdapter.getItemCollection(session,
                 Objects.firstNonNull(limit, BoxConstants.BOX_LIMIT),
                 Objects.firstNonNull(offset, BoxConstants.BOX_OFFSET),
                 Objects.firstNonNull(fields, BoxConstants.BOX_FIELDS));
-        return boxService.toJSONString(itemCollection);
+        return boxService.toJSONResponse(itemCollection, ctx.getRequest()).build();
     }
 
 }
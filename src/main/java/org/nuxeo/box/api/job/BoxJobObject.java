@@ -0,0 +1,62 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.job;
+
+import org.nuxeo.box.api.marshalling.dao.BoxJob;
+import org.nuxeo.box.api.marshalling.exceptions.BoxRestException;
+import org.nuxeo.box.api.service.BoxService;
+import org.nuxeo.ecm.webengine.model.WebObject;
+import org.nuxeo.ecm.webengine.model.impl.AbstractResource;
+import org.nuxeo.ecm.webengine.model.impl.ResourceTypeImpl;
+import org.nuxeo.runtime.api.Framework;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * WebObject for the Box Jobs: the progress of the calls processed in the background.
+ *
+ * @since 9.1
+ */
+@WebObject(type = "job")
+@Produces({ MediaType.APPLICATION_JSON })
+public class BoxJobObject extends AbstractResource<ResourceTypeImpl> {
+
+    BoxService boxService;
+
+    @Override
+    public void initialize(Object... args) {
+        boxService = Framework.getLocalService(BoxService.class);
+    }
+
+    @GET
+    @Path("{jobId}")
+    public Response doGetJob(@PathParam("jobId") String jobId) {
+        BoxJob job = boxService.getJob(ctx.getCoreSession(), jobId);
+        if (job == null) {
+            throw new BoxRestException("No job " + jobId, Response.Status.NOT_FOUND.getStatusCode());
+        }
+        return boxService.toJSONResponse(job, ctx.getRequest()).build();
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.listener;
+
+import org.nuxeo.box.api.service.BoxAggregates;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentRef;
+import org.nuxeo.ecm.core.api.UnrestrictedSessionRunner;
+import org.nuxeo.ecm.core.api.event.CoreEventConstants;
+import org.nuxeo.ecm.core.api.event.DocumentEventTypes;
+import org.nuxeo.ecm.core.event.Event;
+import org.nuxeo.ecm.core.event.EventContext;
+import org.nuxeo.ecm.core.event.EventListener;
+import org.nuxeo.ecm.core.event.impl.DocumentEventContext;
+
+/**
+ * Keep the aggregates of the ancestors of a document up to date when it is created, copied, moved, removed or when its
+ * content changes, and the revision of its parent when it changes. The revision is changed in the transaction, the
+ * other changes are collected for the transaction and applied once it is committed, by
+ * {@link org.nuxeo.box.api.service.BoxAggregatesUpdateWork}.
+ *
+ * @since 9.1
+ */
+public class BoxAggregatesListener implements EventListener {
+
+    @Override
+    public void handleEvent(Event event) {
+        EventContext ctx = event.getContext();
+        if (!(ctx instanceof DocumentEventContext)) {
+            return;
+        }
+        DocumentEventContext docCtx = (DocumentEventContext) ctx;
+        DocumentModel doc = docCtx.getSourceDocument();
+        // Versions and placeless documents are not listed in any folder
+        if (doc == null || doc.isVersion() || doc.getParentRef() == null
+                || Boolean.TRUE.equals(doc.getContextData(BoxAggregates.UPDATING))) {
+            return;
+        }
+        new UnrestrictedSessionRunner(docCtx.getCoreSession()) {
+            @Override
+            public void run() {
+                BoxAggregates aggregates = BoxAggregates.ofTransaction(session.getRepositoryName());
+                switch (event.getName()) {
+                case DocumentEventTypes.DOCUMENT_CREATED:
+                case DocumentEventTypes.DOCUMENT_CREATED_BY_COPY:
+                    aggregates.add(session, doc.getParentRef(), doc, 1);
+                    aggregates.touch(session, doc.getParentRef());
+                    break;
+                case DocumentEventTypes.ABOUT_TO_REMOVE:
+                    aggregates.add(session, doc.getParentRef(), doc, -1);
+                    aggregates.touch(session, doc.getParentRef());
+                    break;
+                case DocumentEventTypes.DOCUMENT_MOVED:
+                    DocumentRef sourceParentRef = (DocumentRef) docCtx.getProperty(CoreEventConstants.PARENT_PATH);
+                    if (sourceParentRef == null || sourceParentRef.equals(doc.getParentRef())) {
+                        return;
+                    }
+                    aggregates.add(session, sourceParentRef, doc, -1);
+                    aggregates.add(session, doc.getParentRef(), doc, 1);
+                    aggregates.touch(session, sourceParentRef);
+                    aggregates.touch(session, doc.getParentRef());
+                    break;
+                case DocumentEventTypes.BEFORE_DOC_UPDATE:
+                    if (doc.hasSchema("file") && doc.getProperty(BoxAggregates.CONTENT).isDirty()) {
+                        aggregates.add(session, doc.getParentRef(), 0, 0, BoxAggregates.getInnerSize(doc)
+                                - BoxAggregates.getInnerSize(getPreviousDocument(session, docCtx, doc)));
+                    }
+                    // The parent lists the changed child, only its revision changes if the sizes are the same
+                    aggregates.touch(session, doc.getParentRef());
+                    break;
+                default:
+                    return;
+                }
+                if (!aggregates.isBound()) {
+                    aggregates.schedule();
+                }
+            }
+        }.runUnrestricted();
+    }
+
+    protected DocumentModel getPreviousDocument(CoreSession session, DocumentEventContext docCtx,
+            DocumentModel doc) {
+        DocumentModel previous = (DocumentModel) docCtx.getProperty(CoreEventConstants.PREVIOUS_DOCUMENT_MODEL);
+        return previous != null ? previous : session.getDocument(doc.getRef());
+    }
+
+}
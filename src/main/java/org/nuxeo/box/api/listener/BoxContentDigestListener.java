@@ -0,0 +1,54 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.listener;
+
+import org.nuxeo.box.api.service.BoxContentDigest;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.event.Event;
+import org.nuxeo.ecm.core.event.EventContext;
+import org.nuxeo.ecm.core.event.EventListener;
+import org.nuxeo.ecm.core.event.impl.DocumentEventContext;
+
+/**
+ * Flag the modifications changing the content of a document, for the listeners of the modified documents which can't
+ * tell anymore. Drop the stored SHA1 of a document whose content is changed without it, such as outside of the Box API,
+ * rather than keep a wrong one.
+ *
+ * @since 9.1
+ */
+public class BoxContentDigestListener implements EventListener {
+
+    @Override
+    public void handleEvent(Event event) {
+        EventContext ctx = event.getContext();
+        if (!(ctx instanceof DocumentEventContext)) {
+            return;
+        }
+        DocumentModel doc = ((DocumentEventContext) ctx).getSourceDocument();
+        if (doc == null || !doc.hasSchema("file") || !doc.getProperty("file:content").isDirty()) {
+            return;
+        }
+        // In the properties shared by the events of the save, so the modified event carries it
+        ctx.setProperty(BoxContentDigest.CONTENT_CHANGED, Boolean.TRUE);
+        if (doc.hasFacet(BoxContentDigest.FACET) && !doc.getProperty(BoxContentDigest.SHA1).isDirty()) {
+            doc.setPropertyValue(BoxContentDigest.SHA1, null);
+        }
+    }
+
+}
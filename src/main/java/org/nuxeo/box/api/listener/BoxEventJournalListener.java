@@ -0,0 +1,135 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.listener;
+
+import org.nuxeo.box.api.marshalling.dao.BoxEvent;
+import org.nuxeo.box.api.service.BoxAggregates;
+import org.nuxeo.box.api.service.BoxContentDigest;
+import org.nuxeo.box.api.service.BoxService;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentRef;
+import org.nuxeo.ecm.core.api.LifeCycleConstants;
+import org.nuxeo.ecm.core.api.PathRef;
+import org.nuxeo.ecm.core.api.event.CoreEventConstants;
+import org.nuxeo.ecm.core.api.event.DocumentEventTypes;
+import org.nuxeo.ecm.core.event.Event;
+import org.nuxeo.ecm.core.event.EventBundle;
+import org.nuxeo.ecm.core.event.PostCommitEventListener;
+import org.nuxeo.ecm.core.event.impl.DocumentEventContext;
+import org.nuxeo.runtime.api.Framework;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Record the changes of the folders and files in the event journal, once committed, then wake the realtime clients
+ * watching them.
+ *
+ * @since 9.1
+ */
+public class BoxEventJournalListener implements PostCommitEventListener {
+
+    @Override
+    public void handleEvent(EventBundle events) {
+        BoxService boxService = Framework.getLocalService(BoxService.class);
+        Set<String> paths = new LinkedHashSet<>();
+        for (Event event : events) {
+            if (!(event.getContext() instanceof DocumentEventContext)) {
+                continue;
+            }
+            DocumentEventContext docCtx = (DocumentEventContext) event.getContext();
+            DocumentModel doc = docCtx.getSourceDocument();
+            // Only the items of the Box API, and not the saves of the aggregates or digests
+            if (doc == null || doc.isVersion() || doc.isProxy() || !(doc.isFolder() || doc.hasSchema("file"))
+                    || Boolean.TRUE.equals(docCtx.getProperty(BoxAggregates.DISABLE_DUBLINCORE_LISTENER))) {
+                continue;
+            }
+            String eventType = getEventType(event, docCtx, doc);
+            if (eventType == null) {
+                continue;
+            }
+            boxService.getEventJournal().append(eventType, doc.isFolder(), doc.getId(),
+                    docCtx.getPrincipal() != null ? docCtx.getPrincipal().getName() : null);
+            if (doc.getPathAsString() != null) {
+                paths.add(doc.getPathAsString());
+            }
+            if (BoxEvent.EVENT_TYPE_ITEM_MOVE.equals(eventType)) {
+                // The tree it left changed too
+                String sourcePath = getSourceParentPath(docCtx);
+                if (sourcePath != null) {
+                    paths.add(sourcePath);
+                }
+            }
+        }
+        // Once recorded, so the woken clients read them
+        if (!paths.isEmpty()) {
+            boxService.getRealTimeNotifier().notify(paths);
+        }
+    }
+
+    /**
+     * @return the path of the parent a moved document comes from, null if it is gone
+     */
+    protected String getSourceParentPath(DocumentEventContext docCtx) {
+        DocumentRef sourceParentRef = (DocumentRef) docCtx.getProperty(CoreEventConstants.PARENT_PATH);
+        if (sourceParentRef instanceof PathRef) {
+            return sourceParentRef.reference().toString();
+        }
+        CoreSession session = docCtx.getCoreSession();
+        if (sourceParentRef == null || session == null || !session.exists(sourceParentRef)) {
+            return null;
+        }
+        return session.getDocument(sourceParentRef).getPathAsString();
+    }
+
+    protected String getEventType(Event event, DocumentEventContext docCtx, DocumentModel doc) {
+        switch (event.getName()) {
+        case DocumentEventTypes.DOCUMENT_CREATED:
+            return doc.isFolder() ? BoxEvent.EVENT_TYPE_ITEM_CREATE : BoxEvent.EVENT_TYPE_ITEM_UPLOAD;
+        case DocumentEventTypes.DOCUMENT_CREATED_BY_COPY:
+            return BoxEvent.EVENT_TYPE_ITEM_COPY;
+        case DocumentEventTypes.DOCUMENT_MOVED:
+            DocumentRef sourceParentRef = (DocumentRef) docCtx.getProperty(CoreEventConstants.PARENT_PATH);
+            return sourceParentRef == null || sourceParentRef.equals(doc.getParentRef())
+                    ? BoxEvent.EVENT_TYPE_ITEM_RENAME : BoxEvent.EVENT_TYPE_ITEM_MOVE;
+        case DocumentEventTypes.DOCUMENT_UPDATED:
+            // A new version of the content only, renames are moves and the other changes have no event type
+            return !doc.isFolder() && Boolean.TRUE.equals(docCtx.getProperty(BoxContentDigest.CONTENT_CHANGED))
+                    ? BoxEvent.EVENT_TYPE_ITEM_UPLOAD : null;
+        case DocumentEventTypes.DOCUMENT_REMOVED:
+            return BoxEvent.EVENT_TYPE_ITEM_TRASH;
+        case DocumentEventTypes.DOCUMENT_LOCKED:
+            return BoxEvent.EVENT_TYPE_LOCK_CREATE;
+        case DocumentEventTypes.DOCUMENT_UNLOCKED:
+            return BoxEvent.EVENT_TYPE_LOCK_DESTROY;
+        case LifeCycleConstants.TRANSITION_EVENT:
+            Object transition = docCtx.getProperty(LifeCycleConstants.TRANSTION_EVENT_OPTION_TRANSITION);
+            if (LifeCycleConstants.DELETE_TRANSITION.equals(transition)) {
+                return BoxEvent.EVENT_TYPE_ITEM_TRASH;
+            } else if (LifeCycleConstants.UNDELETE_TRANSITION.equals(transition)) {
+                return BoxEvent.EVENT_TYPE_ITEM_UNDELETE_VIA_TRASH;
+            }
+            return null;
+        default:
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.listener;
+
+import org.nuxeo.box.api.service.BoxService;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.services.event.Event;
+import org.nuxeo.runtime.services.event.EventListener;
+
+/**
+ * Invalidate the cached box user or group when it is created, modified or deleted in the directory. The user manager
+ * sends the name of the principal as event data.
+ *
+ * @since 9.1
+ */
+public class BoxPrincipalCacheListener implements EventListener {
+
+    @Override
+    public boolean aboutToHandleEvent(Event event) {
+        return true;
+    }
+
+    @Override
+    public void handleEvent(Event event) {
+        BoxService boxService = Framework.getLocalService(BoxService.class);
+        if (boxService == null) {
+            return;
+        }
+        Object data = event.getData();
+        boxService.invalidatePrincipal(data instanceof String ? (String) data : null);
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.listener;
+
+import org.nuxeo.box.api.service.BoxService;
+import org.nuxeo.box.api.service.BoxTagLoader;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.event.Event;
+import org.nuxeo.ecm.core.event.EventContext;
+import org.nuxeo.ecm.core.event.EventListener;
+import org.nuxeo.ecm.core.event.impl.DocumentEventContext;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * Invalidate the cached taggings of a document when one of its taggings is created, modified or removed. A change of a
+ * tag itself, such as its label, invalidates all of them.
+ *
+ * @since 9.1
+ */
+public class BoxTagCacheListener implements EventListener {
+
+    protected static final String TAGGING_TYPE = "Tagging";
+
+    protected static final String TAG_TYPE = "Tag";
+
+    @Override
+    public void handleEvent(Event event) {
+        EventContext ctx = event.getContext();
+        if (!(ctx instanceof DocumentEventContext)) {
+            return;
+        }
+        DocumentModel doc = ((DocumentEventContext) ctx).getSourceDocument();
+        if (doc == null) {
+            return;
+        }
+        if (TAGGING_TYPE.equals(doc.getType())) {
+            Framework.getLocalService(BoxService.class).invalidateTags(
+                    (String) doc.getPropertyValue(BoxTagLoader.TAGGING_SOURCE));
+        } else if (TAG_TYPE.equals(doc.getType())) {
+            Framework.getLocalService(BoxService.class).invalidateTags(null);
+        }
+    }
+
+}
@@ -23,6 +23,8 @@ public class BoxCollection extends BoxCollectionBase {
 
     public static final String FIELD_TOTAL_COUNT = "total_count";
 
+    public static final String FIELD_NEXT_MARKER = "next_marker";
+
     public BoxCollection() {
     }
 
@@ -59,4 +61,22 @@ public class BoxCollection extends BoxCollectionBase {
     private void setTotalCount(Integer totalCount) {
         put(FIELD_TOTAL_COUNT, totalCount);
     }
+
+    /**
+     * @return the marker of the next page, null on the last page or when paging by offset
+     * @since 9.1
+     */
+    @JsonProperty("next_marker")
+    public String getNextMarker() {
+        return (String) getValue(FIELD_NEXT_MARKER);
+    }
+
+    /**
+     * @param nextMarker the next_marker to set
+     * @since 9.1
+     */
+    @JsonProperty("next_marker")
+    private void setNextMarker(String nextMarker) {
+        put(FIELD_NEXT_MARKER, nextMarker);
+    }
 }
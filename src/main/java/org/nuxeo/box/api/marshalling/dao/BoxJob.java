@@ -0,0 +1,112 @@
+/*
+ * Copyright 2013 Box, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.box.api.marshalling.dao;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Map;
+
+/**
+ * Background job started by a call, such as the recursive delete of a large folder.
+ *
+ * @since 9.1
+ */
+public class BoxJob extends BoxTypedObject {
+
+    public static final String FIELD_STATUS = "status";
+
+    public static final String FIELD_TOTAL_COUNT = "total_count";
+
+    public static final String FIELD_PROCESSED_COUNT = "processed_count";
+
+    public static final String STATUS_QUEUED = "queued";
+
+    public static final String STATUS_IN_PROGRESS = "in_progress";
+
+    public static final String STATUS_DONE = "done";
+
+    public static final String STATUS_FAILED = "failed";
+
+    public BoxJob() {
+        setType(BoxResourceType.JOB.toString());
+    }
+
+    /**
+     * Copy constructor, this does deep copy for all the fields.
+     *
+     * @param obj
+     */
+    public BoxJob(BoxJob obj) {
+        super(obj);
+    }
+
+    /**
+     * Instantiate the object from a map. Each entry in the map reflects to a field.
+     *
+     * @param map
+     */
+    public BoxJob(Map<String, Object> map) {
+        super(map);
+    }
+
+    /**
+     * @return the status: queued, in_progress or done
+     */
+    @JsonProperty(FIELD_STATUS)
+    public String getStatus() {
+        return (String) getValue(FIELD_STATUS);
+    }
+
+    /**
+     * @param status the status to set
+     */
+    @JsonProperty(FIELD_STATUS)
+    private void setStatus(String status) {
+        put(FIELD_STATUS, status);
+    }
+
+    /**
+     * @return the total_count of the items to process, when known
+     */
+    @JsonProperty(FIELD_TOTAL_COUNT)
+    public Long getTotalCount() {
+        return (Long) getValue(FIELD_TOTAL_COUNT);
+    }
+
+    /**
+     * @param totalCount the total_count to set
+     */
+    @JsonProperty(FIELD_TOTAL_COUNT)
+    private void setTotalCount(Long totalCount) {
+        put(FIELD_TOTAL_COUNT, totalCount);
+    }
+
+    /**
+     * @return the processed_count of the items already processed
+     */
+    @JsonProperty(FIELD_PROCESSED_COUNT)
+    public Long getProcessedCount() {
+        return (Long) getValue(FIELD_PROCESSED_COUNT);
+    }
+
+    /**
+     * @param processedCount the processed_count to set
+     */
+    @JsonProperty(FIELD_PROCESSED_COUNT)
+    private void setProcessedCount(Long processedCount) {
+        put(FIELD_PROCESSED_COUNT, processedCount);
+    }
+}
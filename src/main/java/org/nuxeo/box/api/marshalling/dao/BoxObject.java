@@ -19,34 +19,98 @@ import com.fasterxml.jackson.annotation.JsonAnyGetter;
 import com.fasterxml.jackson.annotation.JsonAnySetter;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import org.nuxeo.box.api.marshalling.jsonentities.DefaultJSONStringEntity;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 
 public class BoxObject extends DefaultJSONStringEntity {
 
     private static final Log log = LogFactory.getLog(BoxObject.class);
 
-    private final Map<String, Object> extraMap = new HashMap<String, Object>();
+    private static final Class<?> UNMODIFIABLE_MAP = Collections.unmodifiableMap(new HashMap<>()).getClass();
 
-    private final Map<String, Object> map = new HashMap<String, Object>();
+    /**
+     * The types of the values shared by the adopted maps
+     */
+    private static final Set<Class<?>> IMMUTABLE_TYPES = ImmutableSet.of(String.class, Boolean.class, Character.class,
+            Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class, BigInteger.class,
+            BigDecimal.class);
+
+    /**
+     * The copy constructor of each box object type, looked up once
+     */
+    private static final ClassValue<MethodHandle> COPY_CONSTRUCTORS = new ClassValue<MethodHandle>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            try {
+                return MethodHandles.publicLookup().findConstructor(type, MethodType.methodType(void.class, type));
+            } catch (ReflectiveOperationException e) {
+                log.error(e, e);
+                return null;
+            }
+        }
+    };
+
+    /**
+     * The unknown fields, created with the first one
+     */
+    private Map<String, Object> extraMap;
+
+    private Map<String, Object> map;
+
+    /**
+     * Whether the map is an immutable one adopted from the constructor, copied on the first write
+     */
+    private boolean shared;
 
     public BoxObject() {
+        map = new BoxFieldMap();
     }
 
     /**
      * Instantiate the object from a map. Each entry in the map reflects to a field.
+     * <p>
+     * An unmodifiable or immutable map, which must not be changed anymore by its creator, is adopted without any copy
+     * until the object is changed, as long as all its values are immutable too. The other maps are deep copied, so that
+     * no nested object or list is shared with the source.
      *
      * @param map
      */
     public BoxObject(Map<String, Object> map) {
-        cloneMap(this.map, map);
+        if ((map.getClass() == UNMODIFIABLE_MAP || map instanceof ImmutableMap) && isImmutable(map.values())) {
+            this.map = map;
+            shared = true;
+        } else {
+            this.map = new BoxFieldMap(map.size());
+            cloneMap(this.map, map);
+        }
+    }
+
+    /**
+     * @return whether all the values are immutable scalars, which can be shared between objects
+     */
+    private static boolean isImmutable(Iterable<Object> values) {
+        for (Object value : values) {
+            if (value != null && !(IMMUTABLE_TYPES.contains(value.getClass()) || value instanceof Enum)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -55,8 +119,12 @@ public class BoxObject extends DefaultJSONStringEntity {
      * @param obj
      */
     public BoxObject(BoxObject obj) {
+        map = new BoxFieldMap(obj.map.size());
         cloneMap(map, obj.map);
-        cloneMap(extraMap, obj.extraMap);
+        if (obj.extraMap != null) {
+            extraMap = new HashMap<>();
+            cloneMap(extraMap, obj.extraMap);
+        }
     }
 
     /**
@@ -70,14 +138,12 @@ public class BoxObject extends DefaultJSONStringEntity {
         for (Map.Entry<String, Object> entry : source.entrySet()) {
             Object value = entry.getValue();
             if (value instanceof BoxObject) {
-                try {
-                    destination.put(entry.getKey(),
-                            value.getClass().getConstructor(value.getClass()).newInstance(value));
-                } catch (ReflectiveOperationException e) {
-                    log.error(e, e);
+                BoxObject copy = copy((BoxObject) value);
+                if (copy != null) {
+                    destination.put(entry.getKey(), copy);
                 }
             } else if (value instanceof ArrayList<?>) {
-                ArrayList<Object> list = new ArrayList<Object>();
+                ArrayList<Object> list = new ArrayList<Object>(((ArrayList<Object>) value).size());
                 cloneArrayList(list, (ArrayList<Object>) value);
                 destination.put(entry.getKey(), list);
             } else {
@@ -95,10 +161,9 @@ public class BoxObject extends DefaultJSONStringEntity {
     private static void cloneArrayList(ArrayList<Object> destination, ArrayList<Object> source) {
         for (Object obj : source) {
             if (obj instanceof BoxObject) {
-                try {
-                    destination.add(obj.getClass().getConstructor(obj.getClass()).newInstance(obj));
-                } catch (ReflectiveOperationException e) {
-                    log.error(e, e);
+                BoxObject copy = copy((BoxObject) obj);
+                if (copy != null) {
+                    destination.add(copy);
                 }
             } else {
                 destination.add(obj);
@@ -106,6 +171,39 @@ public class BoxObject extends DefaultJSONStringEntity {
         }
     }
 
+    /**
+     * @return a copy by the copy constructor of the object type, null if it has none
+     */
+    private static BoxObject copy(BoxObject obj) {
+        MethodHandle constructor = COPY_CONSTRUCTORS.get(obj.getClass());
+        if (constructor == null) {
+            return null;
+        }
+        try {
+            return (BoxObject) constructor.invoke(obj);
+        } catch (Throwable e) {
+            log.error(e, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the map of the fields, copied first if it is shared, its values being immutable
+     */
+    private Map<String, Object> writableMap() {
+        if (shared) {
+            Map<String, Object> fields = new BoxFieldMap(map.size() + 1);
+            fields.putAll(map);
+            map = fields;
+            shared = false;
+        }
+        return map;
+    }
+
+    private Map<String, Object> extraMap() {
+        return extraMap != null ? extraMap : Collections.emptyMap();
+    }
+
     /**
      * Whether the two objects are equal. This strictly compares all the fields in the two objects, if any fields are
      * different this returns false.
@@ -124,24 +222,57 @@ public class BoxObject extends DefaultJSONStringEntity {
         }
 
         BoxObject bObj = (BoxObject) obj;
-        return map.equals(bObj.map) && extraMap.equals(bObj.extraMap);
+        computeLazyValues();
+        bObj.computeLazyValues();
+        return map.equals(bObj.map) && extraMap().equals(bObj.extraMap());
     }
 
     @Override
     public int hashCode() {
-        return new HashCodeBuilder().append(map).append(extraMap).toHashCode();
+        computeLazyValues();
+        return new HashCodeBuilder().append(map).append(extraMap()).toHashCode();
     }
 
     public void put(String key, Object value) {
-        map.put(key, value);
+        writableMap().put(key, value);
     }
 
     public void putAll(Map<String, Object> newMap) {
-        map.putAll(newMap);
+        writableMap().putAll(newMap);
+    }
+
+    /**
+     * Put a field whose value is only computed when it is read for the first time.
+     *
+     * @param key
+     * @param supplier
+     * @since 9.1
+     */
+    public void putLazy(String key, Supplier<?> supplier) {
+        writableMap().put(key, new LazyValue(supplier));
     }
 
     public Object getValue(String key) {
-        return map.get(key);
+        Object value = map.get(key);
+        if (value instanceof LazyValue) {
+            value = ((LazyValue) value).compute();
+            writableMap().put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Compute all the lazy fields
+     */
+    private void computeLazyValues() {
+        if (shared && !map.values().stream().anyMatch(LazyValue.class::isInstance)) {
+            return;
+        }
+        for (Map.Entry<String, Object> entry : writableMap().entrySet()) {
+            if (entry.getValue() instanceof LazyValue) {
+                entry.setValue(((LazyValue) entry.getValue()).compute());
+            }
+        }
     }
 
     /**
@@ -151,12 +282,12 @@ public class BoxObject extends DefaultJSONStringEntity {
      * @return extra object
      */
     public Object getExtraData(String key) {
-        return extraMap.get(key);
+        return extraMap().get(key);
     }
 
     @JsonAnyGetter
     public Map<String, Object> properties() {
-        return extraMap;
+        return extraMap();
     }
 
     /**
@@ -167,12 +298,15 @@ public class BoxObject extends DefaultJSONStringEntity {
      * @return whether the field exists
      */
     public boolean contains(String key) {
-        return map.containsKey(key) || extraMap.containsKey(key);
+        return map.containsKey(key) || extraMap().containsKey(key);
     }
 
     @JsonAnySetter
     public void handleUnknown(String key, Object value) {
         if (value instanceof String) {
+            if (extraMap == null) {
+                extraMap = new HashMap<>();
+            }
             extraMap.put(key, value);
         }
     }
@@ -186,4 +320,23 @@ public class BoxObject extends DefaultJSONStringEntity {
     public Set<String> getKeySet() {
         return map.keySet();
     }
+
+    /**
+     * A field value computed on first read. It is replaced by the computed value in the map of the object reading it,
+     * so a lazy value shared by copies is computed once per copy and copies never share the computed object.
+     *
+     * @since 9.1
+     */
+    public static final class LazyValue {
+
+        private final Supplier<?> supplier;
+
+        public LazyValue(Supplier<?> supplier) {
+            this.supplier = supplier;
+        }
+
+        private Object compute() {
+            return supplier.get();
+        }
+    }
 }
@@ -21,7 +21,13 @@ import java.util.Map;
 
 public class BoxRealTimeServer extends BoxTypedObject {
 
-    private static final String FIELD_URL = "url";
+    public static final String FIELD_URL = "url";
+
+    public static final String FIELD_TTL = "ttl";
+
+    public static final String FIELD_MAX_RETRIES = "max_retries";
+
+    public static final String FIELD_RETRY_TIMEOUT = "retry_timeout";
 
     /**
      * Constructor.
@@ -59,6 +65,66 @@ public class BoxRealTimeServer extends BoxTypedObject {
         put(FIELD_URL, url);
     }
 
+    /**
+     * Get the time to live of the url.
+     *
+     * @return ttl, in seconds.
+     */
+    @JsonProperty(FIELD_TTL)
+    public String getTtl() {
+        return (String) getValue(FIELD_TTL);
+    }
+
+    /**
+     * Setter. This is only used by {@see <a href="http://jackson.codehaus .org">Jackson JSON processer</a>}
+     *
+     * @param ttl ttl, in seconds.
+     */
+    @JsonProperty(FIELD_TTL)
+    private void setTtl(String ttl) {
+        put(FIELD_TTL, ttl);
+    }
+
+    /**
+     * Get the number of polls of the url before asking for a new one.
+     *
+     * @return max retries.
+     */
+    @JsonProperty(FIELD_MAX_RETRIES)
+    public String getMaxRetries() {
+        return (String) getValue(FIELD_MAX_RETRIES);
+    }
+
+    /**
+     * Setter. This is only used by {@see <a href="http://jackson.codehaus .org">Jackson JSON processer</a>}
+     *
+     * @param maxRetries max retries.
+     */
+    @JsonProperty(FIELD_MAX_RETRIES)
+    private void setMaxRetries(String maxRetries) {
+        put(FIELD_MAX_RETRIES, maxRetries);
+    }
+
+    /**
+     * Get how long a poll may wait for a change.
+     *
+     * @return retry timeout, in seconds.
+     */
+    @JsonProperty(FIELD_RETRY_TIMEOUT)
+    public Integer getRetryTimeout() {
+        return (Integer) getValue(FIELD_RETRY_TIMEOUT);
+    }
+
+    /**
+     * Setter. This is only used by {@see <a href="http://jackson.codehaus .org">Jackson JSON processer</a>}
+     *
+     * @param retryTimeout retry timeout, in seconds.
+     */
+    @JsonProperty(FIELD_RETRY_TIMEOUT)
+    private void setRetryTimeout(Integer retryTimeout) {
+        put(FIELD_RETRY_TIMEOUT, retryTimeout);
+    }
+
     /**
      * Instantiate the object from a map. Each entry in the map reflects to a field.
      *
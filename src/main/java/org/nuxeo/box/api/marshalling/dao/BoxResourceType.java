@@ -140,7 +140,15 @@ public enum BoxResourceType implements IBoxType {
     /**
      * Login token
      */
-    LOGIN_TOKEN;
+    LOGIN_TOKEN,
+    /**
+     * Session of a chunked upload.
+     */
+    UPLOAD_SESSION,
+    /**
+     * Background job, such as a recursive delete.
+     */
+    JOB;
 
     // As a performance optimization, set up string values for all types.
     private static final Map<BoxResourceType, String> typeToLowercaseString = new HashMap<BoxResourceType, String>();
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2013 Box, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.box.api.marshalling.dao;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Map;
+
+/**
+ * Part of a chunked upload.
+ *
+ * @since 9.1
+ */
+public class BoxUploadPart extends BoxObject {
+
+    public static final String FIELD_PART_ID = "part_id";
+
+    public static final String FIELD_OFFSET = "offset";
+
+    public static final String FIELD_SIZE = "size";
+
+    public static final String FIELD_SHA1 = "sha1";
+
+    public BoxUploadPart() {
+    }
+
+    /**
+     * Copy constructor, this does deep copy for all the fields.
+     *
+     * @param obj
+     */
+    public BoxUploadPart(BoxUploadPart obj) {
+        super(obj);
+    }
+
+    /**
+     * Instantiate the object from a map. Each entry in the map reflects to a field.
+     *
+     * @param map
+     */
+    public BoxUploadPart(Map<String, Object> map) {
+        super(map);
+    }
+
+    /**
+     * @return the part_id
+     */
+    @JsonProperty(FIELD_PART_ID)
+    public String getPartId() {
+        return (String) getValue(FIELD_PART_ID);
+    }
+
+    /**
+     * @param partId the part_id to set
+     */
+    @JsonProperty(FIELD_PART_ID)
+    private void setPartId(String partId) {
+        put(FIELD_PART_ID, partId);
+    }
+
+    /**
+     * @return the offset of the part in the file
+     */
+    @JsonProperty(FIELD_OFFSET)
+    public Long getOffset() {
+        return (Long) getValue(FIELD_OFFSET);
+    }
+
+    /**
+     * @param offset the offset to set
+     */
+    @JsonProperty(FIELD_OFFSET)
+    private void setOffset(Long offset) {
+        put(FIELD_OFFSET, offset);
+    }
+
+    /**
+     * @return the size of the part
+     */
+    @JsonProperty(FIELD_SIZE)
+    public Long getSize() {
+        return (Long) getValue(FIELD_SIZE);
+    }
+
+    /**
+     * @param size the size to set
+     */
+    @JsonProperty(FIELD_SIZE)
+    private void setSize(Long size) {
+        put(FIELD_SIZE, size);
+    }
+
+    /**
+     * @return the hexadecimal SHA1 of the part
+     */
+    @JsonProperty(FIELD_SHA1)
+    public String getSha1() {
+        return (String) getValue(FIELD_SHA1);
+    }
+
+    /**
+     * @param sha1 the sha1 to set
+     */
+    @JsonProperty(FIELD_SHA1)
+    private void setSha1(String sha1) {
+        put(FIELD_SHA1, sha1);
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2013 Box, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.box.api.marshalling.dao;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Parts of a chunked upload: the page of the uploaded parts when listed, the parts to assemble when committed, the
+ * stored part when uploaded.
+ *
+ * @since 9.1
+ */
+public class BoxUploadPartCollection extends BoxObject {
+
+    public static final String FIELD_ENTRIES = "entries";
+
+    public static final String FIELD_PARTS = "parts";
+
+    public static final String FIELD_PART = "part";
+
+    public static final String FIELD_TOTAL_COUNT = "total_count";
+
+    public static final String FIELD_OFFSET = "offset";
+
+    public static final String FIELD_LIMIT = "limit";
+
+    public BoxUploadPartCollection() {
+    }
+
+    /**
+     * Copy constructor, this does deep copy for all the fields.
+     *
+     * @param obj
+     */
+    public BoxUploadPartCollection(BoxUploadPartCollection obj) {
+        super(obj);
+    }
+
+    /**
+     * Instantiate the object from a map. Each entry in the map reflects to a field.
+     *
+     * @param map
+     */
+    public BoxUploadPartCollection(Map<String, Object> map) {
+        super(map);
+    }
+
+    /**
+     * @return the entries, the listed parts
+     */
+    @SuppressWarnings("unchecked")
+    @JsonProperty(FIELD_ENTRIES)
+    public ArrayList<BoxUploadPart> getEntries() {
+        return (ArrayList<BoxUploadPart>) getValue(FIELD_ENTRIES);
+    }
+
+    /**
+     * @param entries the entries to set
+     */
+    @JsonProperty(FIELD_ENTRIES)
+    private void setEntries(ArrayList<BoxUploadPart> entries) {
+        put(FIELD_ENTRIES, entries);
+    }
+
+    /**
+     * @return the parts, the committed parts
+     */
+    @SuppressWarnings("unchecked")
+    @JsonProperty(FIELD_PARTS)
+    public ArrayList<BoxUploadPart> getParts() {
+        return (ArrayList<BoxUploadPart>) getValue(FIELD_PARTS);
+    }
+
+    /**
+     * @param parts the parts to set
+     */
+    @JsonProperty(FIELD_PARTS)
+    private void setParts(ArrayList<BoxUploadPart> parts) {
+        put(FIELD_PARTS, parts);
+    }
+
+    /**
+     * @return the part, the uploaded part
+     */
+    @JsonProperty(FIELD_PART)
+    public BoxUploadPart getPart() {
+        return (BoxUploadPart) getValue(FIELD_PART);
+    }
+
+    /**
+     * @param part the part to set
+     */
+    @JsonProperty(FIELD_PART)
+    private void setPart(BoxUploadPart part) {
+        put(FIELD_PART, part);
+    }
+
+    /**
+     * @return the total_count
+     */
+    @JsonProperty(FIELD_TOTAL_COUNT)
+    public Integer getTotalCount() {
+        return (Integer) getValue(FIELD_TOTAL_COUNT);
+    }
+
+    /**
+     * @param totalCount the total_count to set
+     */
+    @JsonProperty(FIELD_TOTAL_COUNT)
+    private void setTotalCount(Integer totalCount) {
+        put(FIELD_TOTAL_COUNT, totalCount);
+    }
+
+    /**
+     * @return the offset
+     */
+    @JsonProperty(FIELD_OFFSET)
+    public Integer getOffset() {
+        return (Integer) getValue(FIELD_OFFSET);
+    }
+
+    /**
+     * @param offset the offset to set
+     */
+    @JsonProperty(FIELD_OFFSET)
+    private void setOffset(Integer offset) {
+        put(FIELD_OFFSET, offset);
+    }
+
+    /**
+     * @return the limit
+     */
+    @JsonProperty(FIELD_LIMIT)
+    public Integer getLimit() {
+        return (Integer) getValue(FIELD_LIMIT);
+    }
+
+    /**
+     * @param limit the limit to set
+     */
+    @JsonProperty(FIELD_LIMIT)
+    private void setLimit(Integer limit) {
+        put(FIELD_LIMIT, limit);
+    }
+}
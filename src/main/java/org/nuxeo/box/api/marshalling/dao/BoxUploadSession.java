@@ -0,0 +1,195 @@
+/*
+ * Copyright 2013 Box, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nuxeo.box.api.marshalling.dao;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Map;
+
+/**
+ * Session of a chunked upload: the parts of the file are uploaded separately, then committed as one file.
+ *
+ * @since 9.1
+ */
+public class BoxUploadSession extends BoxTypedObject {
+
+    public static final String FIELD_SESSION_EXPIRES_AT = "session_expires_at";
+
+    public static final String FIELD_PART_SIZE = "part_size";
+
+    public static final String FIELD_TOTAL_PARTS = "total_parts";
+
+    public static final String FIELD_NUM_PARTS_PROCESSED = "num_parts_processed";
+
+    public static final String FIELD_SESSION_ENDPOINTS = "session_endpoints";
+
+    public static final String FIELD_FOLDER_ID = "folder_id";
+
+    public static final String FIELD_FILE_SIZE = "file_size";
+
+    public static final String FIELD_FILE_NAME = "file_name";
+
+    public BoxUploadSession() {
+        setType(BoxResourceType.UPLOAD_SESSION.toString());
+    }
+
+    /**
+     * Copy constructor, this does deep copy for all the fields.
+     *
+     * @param obj
+     */
+    public BoxUploadSession(BoxUploadSession obj) {
+        super(obj);
+    }
+
+    /**
+     * Instantiate the object from a map. Each entry in the map reflects to a field.
+     *
+     * @param map
+     */
+    public BoxUploadSession(Map<String, Object> map) {
+        super(map);
+    }
+
+    /**
+     * @return the session_expires_at
+     */
+    @JsonProperty(FIELD_SESSION_EXPIRES_AT)
+    public String getSessionExpiresAt() {
+        return (String) getValue(FIELD_SESSION_EXPIRES_AT);
+    }
+
+    /**
+     * @param sessionExpiresAt the session_expires_at to set
+     */
+    @JsonProperty(FIELD_SESSION_EXPIRES_AT)
+    private void setSessionExpiresAt(String sessionExpiresAt) {
+        put(FIELD_SESSION_EXPIRES_AT, sessionExpiresAt);
+    }
+
+    /**
+     * @return the part_size, the size of all the parts but the last one
+     */
+    @JsonProperty(FIELD_PART_SIZE)
+    public Long getPartSize() {
+        return (Long) getValue(FIELD_PART_SIZE);
+    }
+
+    /**
+     * @param partSize the part_size to set
+     */
+    @JsonProperty(FIELD_PART_SIZE)
+    private void setPartSize(Long partSize) {
+        put(FIELD_PART_SIZE, partSize);
+    }
+
+    /**
+     * @return the total_parts
+     */
+    @JsonProperty(FIELD_TOTAL_PARTS)
+    public Integer getTotalParts() {
+        return (Integer) getValue(FIELD_TOTAL_PARTS);
+    }
+
+    /**
+     * @param totalParts the total_parts to set
+     */
+    @JsonProperty(FIELD_TOTAL_PARTS)
+    private void setTotalParts(Integer totalParts) {
+        put(FIELD_TOTAL_PARTS, totalParts);
+    }
+
+    /**
+     * @return the num_parts_processed
+     */
+    @JsonProperty(FIELD_NUM_PARTS_PROCESSED)
+    public Integer getNumPartsProcessed() {
+        return (Integer) getValue(FIELD_NUM_PARTS_PROCESSED);
+    }
+
+    /**
+     * @param numPartsProcessed the num_parts_processed to set
+     */
+    @JsonProperty(FIELD_NUM_PARTS_PROCESSED)
+    private void setNumPartsProcessed(Integer numPartsProcessed) {
+        put(FIELD_NUM_PARTS_PROCESSED, numPartsProcessed);
+    }
+
+    /**
+     * @return the session_endpoints, the urls of the calls of the session
+     */
+    @SuppressWarnings("unchecked")
+    @JsonProperty(FIELD_SESSION_ENDPOINTS)
+    public Map<String, String> getSessionEndpoints() {
+        return (Map<String, String>) getValue(FIELD_SESSION_ENDPOINTS);
+    }
+
+    /**
+     * @param sessionEndpoints the session_endpoints to set
+     */
+    @JsonProperty(FIELD_SESSION_ENDPOINTS)
+    private void setSessionEndpoints(Map<String, String> sessionEndpoints) {
+        put(FIELD_SESSION_ENDPOINTS, sessionEndpoints);
+    }
+
+    /**
+     * @return the folder_id, only sent to create the session
+     */
+    @JsonProperty(FIELD_FOLDER_ID)
+    public String getFolderId() {
+        return (String) getValue(FIELD_FOLDER_ID);
+    }
+
+    /**
+     * @param folderId the folder_id to set
+     */
+    @JsonProperty(FIELD_FOLDER_ID)
+    private void setFolderId(String folderId) {
+        put(FIELD_FOLDER_ID, folderId);
+    }
+
+    /**
+     * @return the file_size, only sent to create the session
+     */
+    @JsonProperty(FIELD_FILE_SIZE)
+    public Long getFileSize() {
+        return (Long) getValue(FIELD_FILE_SIZE);
+    }
+
+    /**
+     * @param fileSize the file_size to set
+     */
+    @JsonProperty(FIELD_FILE_SIZE)
+    private void setFileSize(Long fileSize) {
+        put(FIELD_FILE_SIZE, fileSize);
+    }
+
+    /**
+     * @return the file_name, only sent to create the session
+     */
+    @JsonProperty(FIELD_FILE_NAME)
+    public String getFileName() {
+        return (String) getValue(FIELD_FILE_NAME);
+    }
+
+    /**
+     * @param fileName the file_name to set
+     */
+    @JsonProperty(FIELD_FILE_NAME)
+    private void setFileName(String fileName) {
+        put(FIELD_FILE_NAME, fileName);
+    }
+}
@@ -18,6 +18,7 @@ package org.nuxeo.box.api.marshalling.interfaces;
 import org.nuxeo.box.api.marshalling.exceptions.BoxJSONException;
 
 import java.io.InputStream;
+import java.io.OutputStream;
 
 public interface IBoxJSONParser {
 
@@ -75,4 +76,14 @@ public interface IBoxJSONParser {
      * @throws BoxJSONException
      */
     <T> T parseIntoBoxObject(final String jsonString, final Class<T> theClass) throws BoxJSONException;
+
+    /**
+     * Write the object as JSON straight into the given stream, without materializing the payload. The stream is
+     * flushed but not closed.
+     *
+     * @param object
+     * @param outputStream
+     * @throws BoxJSONException
+     */
+    void writeBoxObject(final Object object, final OutputStream outputStream) throws BoxJSONException;
 }
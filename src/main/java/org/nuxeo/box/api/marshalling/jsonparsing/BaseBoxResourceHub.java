@@ -25,8 +25,9 @@ import java.util.Map;
 
 public abstract class BaseBoxResourceHub implements IBoxResourceHub {
 
-    // As a performance optimization, set up string values for all types.
-    private static final Map<String, IBoxType> lowercaseStringToType = new HashMap<String, IBoxType>();
+    // As a performance optimization, set up string values for all types. The map is only filled while the hub is
+    // being constructed and is read-only afterwards, so a hub instance can be shared between threads.
+    private final Map<String, IBoxType> lowercaseStringToType = new HashMap<String, IBoxType>();
 
     public BaseBoxResourceHub() {
         initializeTypes();
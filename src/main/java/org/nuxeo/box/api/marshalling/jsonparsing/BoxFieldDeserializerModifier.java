@@ -0,0 +1,145 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.marshalling.jsonparsing;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.PropertyName;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerBuilder;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerModifier;
+import com.fasterxml.jackson.databind.deser.SettableBeanProperty;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMethod;
+
+import org.nuxeo.box.api.marshalling.dao.BoxObject;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deserialize the fields of the box objects straight into their store instead of calling their setters by reflection,
+ * the counterpart of the {@link BoxFieldSerializerModifier}.
+ * <p>
+ * The setters of the box objects only put the field named by their <code>@JsonProperty</code>, whose name is one of the
+ * <code>FIELD_</code> constants of the class: these properties are replaced once, when the deserializer of the class is
+ * built, by properties putting the value with {@link BoxObject#put(String, Object)}. The values are read by the same
+ * deserializers, so the objects are the same. The other properties are left as they are.
+ *
+ * @since 9.1
+ */
+public class BoxFieldDeserializerModifier extends BeanDeserializerModifier {
+
+    @Override
+    public BeanDeserializerBuilder updateBuilder(DeserializationConfig config, BeanDescription beanDesc,
+            BeanDeserializerBuilder builder) {
+        if (!BoxObject.class.isAssignableFrom(beanDesc.getBeanClass())) {
+            return builder;
+        }
+        Map<String, String> fields = BoxFieldSerializerModifier.getFields(beanDesc.getBeanClass());
+        List<SettableBeanProperty> properties = new ArrayList<>();
+        builder.getProperties().forEachRemaining(properties::add);
+        for (SettableBeanProperty property : properties) {
+            String field = fields.get(property.getName());
+            if (field != null && property.getMember() instanceof AnnotatedMethod
+                    && property.getAnnotation(JsonProperty.class) != null) {
+                builder.addOrReplaceProperty(new BoxFieldProperty(property, field), true);
+            }
+        }
+        return builder;
+    }
+
+    /**
+     * Property putting its field into the store of the box object, the value being read as by the replaced property.
+     */
+    protected static class BoxFieldProperty extends SettableBeanProperty {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final SettableBeanProperty base;
+
+        protected final String field;
+
+        protected BoxFieldProperty(SettableBeanProperty base, String field) {
+            super(base);
+            this.base = base;
+            this.field = field;
+        }
+
+        protected BoxFieldProperty(BoxFieldProperty src, JsonDeserializer<?> deser) {
+            super(src, deser);
+            base = src.base;
+            field = src.field;
+        }
+
+        protected BoxFieldProperty(BoxFieldProperty src, PropertyName newName) {
+            super(src, newName);
+            base = src.base;
+            field = src.field;
+        }
+
+        @Override
+        public SettableBeanProperty withValueDeserializer(JsonDeserializer<?> deser) {
+            return new BoxFieldProperty(this, deser);
+        }
+
+        @Override
+        public SettableBeanProperty withName(PropertyName newName) {
+            return new BoxFieldProperty(this, newName);
+        }
+
+        @Override
+        public AnnotatedMember getMember() {
+            return base.getMember();
+        }
+
+        @Override
+        public <A extends Annotation> A getAnnotation(Class<A> acls) {
+            return base.getAnnotation(acls);
+        }
+
+        @Override
+        public void deserializeAndSet(JsonParser p, DeserializationContext ctxt, Object instance) throws IOException {
+            set(instance, deserialize(p, ctxt));
+        }
+
+        @Override
+        public Object deserializeSetAndReturn(JsonParser p, DeserializationContext ctxt, Object instance)
+                throws IOException {
+            return setAndReturn(instance, deserialize(p, ctxt));
+        }
+
+        @Override
+        public void set(Object instance, Object value) {
+            ((BoxObject) instance).put(field, value);
+        }
+
+        @Override
+        public Object setAndReturn(Object instance, Object value) {
+            set(instance, value);
+            return instance;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.marshalling.jsonparsing;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMethod;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.impl.PropertySerializerMap;
+
+import org.nuxeo.box.api.marshalling.dao.BoxObject;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serialize the fields of the box objects straight from their store instead of calling their getters by reflection.
+ * <p>
+ * The getters of the box objects only read the field named by their <code>@JsonProperty</code>, whose name is one of
+ * the <code>FIELD_</code> constants of the class: the writers of these properties are replaced once, when the
+ * serializer of the class is built, by writers reading the field with {@link BoxObject#getValue(String)}. Jackson keeps
+ * the order of the properties, their inclusion, the type ids and the serializers of the values, so the JSON is the
+ * same. The other properties are left as they are.
+ *
+ * @since 9.1
+ */
+public class BoxFieldSerializerModifier extends BeanSerializerModifier {
+
+    protected static final String FIELD_PREFIX = "FIELD_";
+
+    @Override
+    public List<BeanPropertyWriter> changeProperties(SerializationConfig config, BeanDescription beanDesc,
+            List<BeanPropertyWriter> beanProperties) {
+        if (!BoxObject.class.isAssignableFrom(beanDesc.getBeanClass())) {
+            return beanProperties;
+        }
+        Map<String, String> fields = getFields(beanDesc.getBeanClass());
+        for (int i = 0; i < beanProperties.size(); i++) {
+            BeanPropertyWriter writer = beanProperties.get(i);
+            String field = fields.get(writer.getName());
+            if (field != null && writer.getMember() instanceof AnnotatedMethod
+                    && writer.getAnnotation(JsonProperty.class) != null) {
+                beanProperties.set(i, new BoxFieldWriter(writer, field));
+            }
+        }
+        return beanProperties;
+    }
+
+    /**
+     * @return the values of the <code>FIELD_</code> constants of the class and of its parents, by value
+     */
+    protected static Map<String, String> getFields(Class<?> beanClass) {
+        Map<String, String> fields = new HashMap<>();
+        for (Class<?> klass = beanClass; klass != null && klass != Object.class; klass = klass.getSuperclass()) {
+            for (Field field : klass.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (field.getName().startsWith(FIELD_PREFIX) && field.getType() == String.class
+                        && Modifier.isStatic(modifiers) && Modifier.isFinal(modifiers)
+                        && Modifier.isPublic(modifiers)) {
+                    try {
+                        String value = (String) field.get(null);
+                        // The constant itself, the very key the fields are stored with
+                        fields.putIfAbsent(value, value);
+                    } catch (IllegalAccessException e) {
+                        // not a field name then
+                    }
+                }
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Writer of a property reading its field from the store of the box object, the rest being the same as
+     * {@link BeanPropertyWriter#serializeAsField}.
+     */
+    protected static class BoxFieldWriter extends BeanPropertyWriter {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final String field;
+
+        protected BoxFieldWriter(BeanPropertyWriter base, String field) {
+            super(base);
+            this.field = field;
+        }
+
+        @Override
+        public Object get(Object bean) {
+            return ((BoxObject) bean).getValue(field);
+        }
+
+        @Override
+        public void serializeAsField(Object bean, JsonGenerator gen, SerializerProvider prov) throws Exception {
+            Object value = ((BoxObject) bean).getValue(field);
+            if (value == null) {
+                if (_nullSerializer != null) {
+                    gen.writeFieldName(_name);
+                    _nullSerializer.serialize(null, gen, prov);
+                }
+                return;
+            }
+            JsonSerializer<Object> ser = _serializer;
+            if (ser == null) {
+                Class<?> cls = value.getClass();
+                PropertySerializerMap serializers = _dynamicSerializers;
+                ser = serializers.serializerFor(cls);
+                if (ser == null) {
+                    ser = _findAndAddDynamic(serializers, cls, prov);
+                }
+            }
+            if (_suppressableValue != null) {
+                if (MARKER_FOR_EMPTY == _suppressableValue) {
+                    if (ser.isEmpty(prov, value)) {
+                        return;
+                    }
+                } else if (_suppressableValue.equals(value)) {
+                    return;
+                }
+            }
+            if (value == bean && _handleSelfReference(bean, gen, prov, ser)) {
+                return;
+            }
+            gen.writeFieldName(_name);
+            if (_typeSerializer == null) {
+                ser.serialize(value, gen, prov);
+            } else {
+                ser.serializeWithType(value, gen, prov, _typeSerializer);
+            }
+        }
+    }
+}
@@ -16,11 +16,14 @@
 package org.nuxeo.box.api.marshalling.jsonparsing;
 
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
-import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.jsontype.NamedType;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 
 import org.nuxeo.box.api.marshalling.exceptions.BoxJSONException;
 import org.nuxeo.box.api.marshalling.interfaces.IBoxJSONParser;
@@ -29,6 +32,9 @@ import org.nuxeo.box.api.marshalling.interfaces.IBoxType;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * The json parser class wrapping Jackson JSON parser. For now, if user wants to remove jackson dependency(jackson
@@ -36,25 +42,71 @@ import java.io.InputStream;
  * parser. An alternative approach (not taken yet) requires user to implement a new IBoxJSONParser, in the meantime make
  * all the jackson library related calls in this class reflection calls. However this is error prone if we need to
  * update jackson. Since jackson is still the recommended way. We are not doing the reflection way yet.
+ * <p>
+ * A parser is thread-safe once constructed: the readers and writers of all the types known by the hub are resolved up
+ * front, so a single instance is meant to be shared instead of being created for each call.
  */
 public class BoxJSONParser implements IBoxJSONParser {
 
     private final ObjectMapper mObjectMapper;
 
+    private final ConcurrentMap<Class<?>, ObjectReader> mReaders = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Class<?>, ObjectWriter> mWriters = new ConcurrentHashMap<>();
+
     public BoxJSONParser(final IBoxResourceHub hub) {
         mObjectMapper = new ObjectMapper();
         mObjectMapper.setSerializationInclusion(Include.NON_NULL);
         mObjectMapper.configure(DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES, false);
         mObjectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        // The fields of the box objects are written from and read into their store, not through their accessors
+        mObjectMapper.registerModule(new SimpleModule(BoxFieldSerializerModifier.class.getSimpleName())
+                .setSerializerModifier(new BoxFieldSerializerModifier())
+                .setDeserializerModifier(new BoxFieldDeserializerModifier()));
         for (IBoxType type : hub.getAllTypes()) {
             mObjectMapper.registerSubtypes(new NamedType(hub.getClass(type), type.toString()));
         }
+        // Warm up the (de)serializers of all the registered types so that the first requests don't pay for it
+        for (IBoxType type : hub.getAllTypes()) {
+            getReader(hub.getClass(type));
+            getWriter(hub.getClass(type));
+        }
     }
 
     protected ObjectMapper getObjectMapper() {
         return mObjectMapper;
     }
 
+    /**
+     * @return the cached reader binding JSON content to the given class
+     */
+    protected ObjectReader getReader(Class<?> theClass) {
+        ObjectReader reader = mReaders.get(theClass);
+        if (reader == null) {
+            reader = getObjectMapper().readerFor(theClass);
+            ObjectReader previous = mReaders.putIfAbsent(theClass, reader);
+            if (previous != null) {
+                reader = previous;
+            }
+        }
+        return reader;
+    }
+
+    /**
+     * @return the cached writer serializing instances of the given class
+     */
+    protected ObjectWriter getWriter(Class<?> theClass) {
+        ObjectWriter writer = mWriters.get(theClass);
+        if (writer == null) {
+            writer = getObjectMapper().writerFor(theClass);
+            ObjectWriter previous = mWriters.putIfAbsent(theClass, writer);
+            if (previous != null) {
+                writer = previous;
+            }
+        }
+        return writer;
+    }
+
     @Override
     public String convertBoxObjectToJSONStringQuietly(final Object object) {
         try {
@@ -85,7 +137,9 @@ public class BoxJSONParser implements IBoxJSONParser {
     @Override
     public String convertBoxObjectToJSONString(Object object) throws BoxJSONException {
         try {
-            return getObjectMapper().writeValueAsString(object);
+            // Writers are keyed by the runtime class so that sub classes are never serialized as their parent type
+            return object == null ? getObjectMapper().writeValueAsString(null)
+                    : getWriter(object.getClass()).writeValueAsString(object);
         } catch (IOException e) {
             throw new BoxJSONException(e);
         }
@@ -94,9 +148,7 @@ public class BoxJSONParser implements IBoxJSONParser {
     @Override
     public <T> T parseIntoBoxObject(InputStream inputStream, Class<T> theClass) throws BoxJSONException {
         try {
-            JsonFactory jsonFactory = new JsonFactory();
-            JsonParser jp = jsonFactory.createJsonParser(inputStream);
-            return getObjectMapper().readValue(jp, theClass);
+            return getReader(theClass).readValue(inputStream);
         } catch (IOException e) {
             throw new BoxJSONException(e);
         }
@@ -105,9 +157,23 @@ public class BoxJSONParser implements IBoxJSONParser {
     @Override
     public <T> T parseIntoBoxObject(String jsonString, Class<T> theClass) throws BoxJSONException {
         try {
-            JsonFactory jsonFactory = new JsonFactory();
-            JsonParser jp = jsonFactory.createJsonParser(jsonString);
-            return getObjectMapper().readValue(jp, theClass);
+            return getReader(theClass).readValue(jsonString);
+        } catch (IOException e) {
+            throw new BoxJSONException(e);
+        }
+    }
+
+    @Override
+    public void writeBoxObject(Object object, OutputStream outputStream) throws BoxJSONException {
+        try (JsonGenerator generator = getObjectMapper().getFactory().createGenerator(outputStream,
+                JsonEncoding.UTF8)) {
+            // The stream belongs to the caller
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            if (object == null) {
+                generator.writeNull();
+            } else {
+                getWriter(object.getClass()).writeValue(generator, object);
+            }
         } catch (IOException e) {
             throw new BoxJSONException(e);
         }
@@ -26,17 +26,20 @@ import org.nuxeo.box.api.marshalling.dao.BoxFileVersion;
 import org.nuxeo.box.api.marshalling.dao.BoxFolder;
 import org.nuxeo.box.api.marshalling.dao.BoxGroup;
 import org.nuxeo.box.api.marshalling.dao.BoxItem;
+import org.nuxeo.box.api.marshalling.dao.BoxJob;
 import org.nuxeo.box.api.marshalling.dao.BoxLock;
 import org.nuxeo.box.api.marshalling.dao.BoxPreview;
 import org.nuxeo.box.api.marshalling.dao.BoxRealTimeServer;
 import org.nuxeo.box.api.marshalling.dao.BoxResourceType;
 import org.nuxeo.box.api.marshalling.dao.BoxServerError;
 import org.nuxeo.box.api.marshalling.dao.BoxTypedObject;
+import org.nuxeo.box.api.marshalling.dao.BoxUploadSession;
 import org.nuxeo.box.api.marshalling.dao.BoxUser;
 import org.nuxeo.box.api.marshalling.dao.BoxWebLink;
 import org.nuxeo.box.api.marshalling.interfaces.IBoxType;
 
 import java.util.Collection;
+import java.util.Collections;
 
 public class BoxResourceHub extends BaseBoxResourceHub {
 
@@ -56,7 +59,7 @@ public class BoxResourceHub extends BaseBoxResourceHub {
 
     @Override
     public Collection<IBoxType> getAllTypes() {
-        return getLowerCaseStringToTypeMap().values();
+        return Collections.unmodifiableCollection(getLowerCaseStringToTypeMap().values());
     }
 
     @Override
@@ -94,6 +97,10 @@ public class BoxResourceHub extends BaseBoxResourceHub {
             return BoxLock.class;
         case ERROR:
             return BoxServerError.class;
+        case UPLOAD_SESSION:
+            return BoxUploadSession.class;
+        case JOB:
+            return BoxJob.class;
         case ITEMS:
         case FILES:
         case USERS:
@@ -32,6 +32,7 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 /**
  * WebObject for a Box Search
@@ -51,14 +52,19 @@ public class BoxSearchObject extends AbstractResource<ResourceTypeImpl> {
 
     /**
      * The string in query to search for; can be matched against item names, descriptions, text content of a file, and
-     * other fields of the different item types.
+     * other fields of the different item types. Results are paged by offset, or after the given marker if
+     * <code>usemarker</code> is true.
      */
     @GET
-    public String doSearch(@QueryParam("query") String query, @QueryParam("offset") String offset,
-            @QueryParam("limit") String limit) throws BoxJSONException {
-        return boxService.toJSONString(boxService.searchBox(query, ctx.getCoreSession(),
+    public Response doSearch(@QueryParam("query") String query, @QueryParam("offset") String offset,
+            @QueryParam("limit") String limit, @QueryParam("fields") String fields,
+            @QueryParam("usemarker") boolean useMarker, @QueryParam("marker") String marker)
+            throws BoxJSONException {
+        return boxService.toJSONResponse(boxService.searchBox(query, ctx.getCoreSession(),
                 Objects.firstNonNull(limit, BoxConstants.BOX_LIMIT),
-                Objects.firstNonNull(offset, BoxConstants.BOX_OFFSET)));
+                Objects.firstNonNull(offset, BoxConstants.BOX_OFFSET),
+                Objects.firstNonNull(fields, BoxConstants.BOX_FIELDS),
+                useMarker ? Objects.firstNonNull(marker, "") : null), ctx.getRequest()).build();
     }
 
 }
@@ -0,0 +1,295 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.service;
+
+import org.nuxeo.ecm.core.api.Blob;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentRef;
+import org.nuxeo.ecm.core.api.IdRef;
+
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The aggregates of the folders: direct children, descendants and bytes of their content, kept in the
+ * <code>BoxAggregates</code> facet of each folder so sizes and totals are read without any counting query.
+ * <p>
+ * An instance collects the changes of a transaction per ancestor. Once the transaction is committed, they are handed to
+ * the {@link BoxAggregatesUpdateWork}, which applies the changes of all the transactions one after the other: the
+ * writes never contend on the ancestors, and each folder is written once per batch whatever the number of changes
+ * below it. The facet is added to a folder on its first change, a folder without it has no children.
+ * <p>
+ * The changes are only serialized on a node and are lost if the node stops before applying them: the aggregates of a
+ * tree are then repaired by {@link BoxService#rebuildAggregates}, to be run periodically on a cluster.
+ *
+ * @since 9.1
+ */
+public class BoxAggregates implements Synchronization {
+
+    public static final String FACET = "BoxAggregates";
+
+    public static final String CHILD_COUNT = "bxa:childCount";
+
+    public static final String DESCENDANT_COUNT = "bxa:descendantCount";
+
+    public static final String TOTAL_SIZE = "bxa:totalSize";
+
+    /**
+     * Changed on each update of the aggregates of a folder and, in the same transaction, when one of its children
+     * changes
+     */
+    public static final String REVISION = "bxa:revision";
+
+    public static final String CONTENT = "file:content";
+
+    public static final String CONTENT_LENGTH = "file:content/length";
+
+    /**
+     * Context data flagging the saves of the aggregates, so they are not handled as changes of the content
+     */
+    public static final String UPDATING = "boxAggregatesUpdating";
+
+    /**
+     * Same flag as the one of the dublincore listener: updating the aggregates is not a contribution
+     */
+    public static final String DISABLE_DUBLINCORE_LISTENER = "disableDublinCoreListener";
+
+    protected static final int CHILDREN = 0;
+
+    protected static final int DESCENDANTS = 1;
+
+    protected static final int SIZE = 2;
+
+    protected static final ThreadLocal<Map<String, BoxAggregates>> TRANSACTION_AGGREGATES = ThreadLocal.withInitial(
+            HashMap::new);
+
+    protected final String repositoryName;
+
+    protected final Map<String, long[]> deltas = new LinkedHashMap<>();
+
+    /**
+     * The folders whose revision is already changed
+     */
+    protected final Set<String> touched = new HashSet<>();
+
+    protected boolean bound;
+
+    public BoxAggregates(String repositoryName) {
+        this.repositoryName = repositoryName;
+    }
+
+    /**
+     * @return the aggregates collecting the changes of the current transaction, a new unbound instance outside of a
+     *         transaction
+     */
+    public static BoxAggregates ofTransaction(String repositoryName) {
+        Map<String, BoxAggregates> transactionAggregates = TRANSACTION_AGGREGATES.get();
+        BoxAggregates aggregates = transactionAggregates.get(repositoryName);
+        if (aggregates == null) {
+            aggregates = new BoxAggregates(repositoryName);
+            if (TransactionHelper.isTransactionActive()) {
+                TransactionHelper.registerSynchronization(aggregates);
+                aggregates.bound = true;
+                transactionAggregates.put(repositoryName, aggregates);
+            }
+        }
+        return aggregates;
+    }
+
+    /**
+     * @return whether the changes are scheduled when the transaction is committed, otherwise {@link #schedule} is up
+     *         to the caller
+     */
+    public boolean isBound() {
+        return bound;
+    }
+
+    @Override
+    public void beforeCompletion() {
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+        TRANSACTION_AGGREGATES.get().remove(repositoryName);
+        if (status == Status.STATUS_COMMITTED) {
+            schedule();
+        }
+    }
+
+    /**
+     * Hand the collected changes to the update work
+     */
+    public void schedule() {
+        if (!deltas.isEmpty()) {
+            BoxAggregatesUpdateWork.schedule(repositoryName, deltas);
+            deltas.clear();
+        }
+    }
+
+    /**
+     * @return the bytes of the content of the document itself, 0 for folders and proxies
+     */
+    public static long getInnerSize(DocumentModel doc) {
+        if (doc.isFolder() || doc.isProxy() || !doc.hasSchema("file")) {
+            return 0;
+        }
+        Blob content = (Blob) doc.getPropertyValue(CONTENT);
+        return content != null && content.getLength() > 0 ? content.getLength() : 0;
+    }
+
+    public static long getChildCount(DocumentModel folder) {
+        return getAggregate(folder, CHILD_COUNT);
+    }
+
+    public static long getDescendantCount(DocumentModel folder) {
+        return getAggregate(folder, DESCENDANT_COUNT);
+    }
+
+    public static long getTotalSize(DocumentModel folder) {
+        return getAggregate(folder, TOTAL_SIZE);
+    }
+
+    /**
+     * @return the size rendered for the document: its content for a file, the one of its descendants for a folder
+     */
+    public static long getSize(DocumentModel doc) {
+        return doc.isFolder() ? getTotalSize(doc) : getInnerSize(doc);
+    }
+
+    /**
+     * @return the revision of the aggregates and children of the folder, null if it has never changed
+     */
+    public static String getRevision(DocumentModel folder) {
+        return folder.hasFacet(FACET) ? (String) folder.getPropertyValue(REVISION) : null;
+    }
+
+    protected static long getAggregate(DocumentModel folder, String xpath) {
+        if (!folder.hasFacet(FACET)) {
+            return 0;
+        }
+        Long value = (Long) folder.getPropertyValue(xpath);
+        return value != null ? value : 0;
+    }
+
+    /**
+     * Count a document and its descendants in the given parent and all its ancestors
+     *
+     * @param sign 1 when the document is added to the parent, -1 when it is removed from it
+     */
+    public void add(CoreSession session, DocumentRef parentRef, DocumentModel doc, int sign) {
+        long descendants = 1;
+        long size = getInnerSize(doc);
+        if (doc.isFolder()) {
+            // Including the changes below the folder which are not applied yet
+            long[] pending = BoxAggregatesUpdateWork.getPending(repositoryName, doc.getId());
+            long[] delta = deltas.get(doc.getId());
+            descendants += getDescendantCount(doc) + pending[DESCENDANTS] + (delta != null ? delta[DESCENDANTS] : 0);
+            size += getTotalSize(doc) + pending[SIZE] + (delta != null ? delta[SIZE] : 0);
+        }
+        add(session, parentRef, sign, sign * descendants, sign * size);
+    }
+
+    /**
+     * Add the given deltas to the given parent and all its ancestors, nothing if they are zero
+     */
+    public void add(CoreSession session, DocumentRef parentRef, long children, long descendants, long size) {
+        if (children == 0 && descendants == 0 && size == 0) {
+            return;
+        }
+        delta(getId(session, parentRef), children, descendants, size);
+        if (descendants == 0 && size == 0) {
+            return;
+        }
+        for (DocumentRef ancestorRef : session.getParentDocumentRefs(parentRef)) {
+            delta(getId(session, ancestorRef), 0, descendants, size);
+        }
+    }
+
+    /**
+     * Change the revision of a folder whose children change, once per transaction, so that its tag changes with the
+     * commit of the children and not only once the update work applied the aggregates
+     */
+    public void touch(CoreSession session, DocumentRef folderRef) {
+        String folderId = getId(session, folderRef);
+        if (!touched.add(folderId)) {
+            return;
+        }
+        DocumentModel folder = session.getDocument(new IdRef(folderId));
+        if (!folder.hasFacet(FACET)) {
+            folder.addFacet(FACET);
+        }
+        folder.setPropertyValue(REVISION, UUID.randomUUID().toString());
+        save(session, folder);
+    }
+
+    protected static String getId(CoreSession session, DocumentRef ref) {
+        return ref instanceof IdRef ? ref.reference().toString() : session.getDocument(ref).getId();
+    }
+
+    protected void delta(String folderId, long children, long descendants, long size) {
+        long[] delta = deltas.computeIfAbsent(folderId, k -> new long[3]);
+        delta[CHILDREN] += children;
+        delta[DESCENDANTS] += descendants;
+        delta[SIZE] += size;
+    }
+
+    /**
+     * @return the sum of two deltas, as a new array
+     */
+    public static long[] sum(long[] a, long[] b) {
+        return new long[] { a[CHILDREN] + b[CHILDREN], a[DESCENDANTS] + b[DESCENDANTS], a[SIZE] + b[SIZE] };
+    }
+
+    /**
+     * Save the aggregates of a folder plus a delta, the session is expected to be allowed to write it
+     */
+    public static void apply(CoreSession session, DocumentModel folder, long[] delta) {
+        set(session, folder, getChildCount(folder) + delta[CHILDREN], getDescendantCount(folder) + delta[DESCENDANTS],
+                getTotalSize(folder) + delta[SIZE]);
+    }
+
+    /**
+     * Save the aggregates of a folder, adding the facet if needed
+     */
+    public static void set(CoreSession session, DocumentModel folder, long children, long descendants, long size) {
+        if (!folder.hasFacet(FACET)) {
+            folder.addFacet(FACET);
+        }
+        folder.setPropertyValue(CHILD_COUNT, Math.max(children, 0));
+        folder.setPropertyValue(DESCENDANT_COUNT, Math.max(descendants, 0));
+        folder.setPropertyValue(TOTAL_SIZE, Math.max(size, 0));
+        folder.setPropertyValue(REVISION, UUID.randomUUID().toString());
+        save(session, folder);
+    }
+
+    protected static void save(CoreSession session, DocumentModel folder) {
+        folder.putContextData(UPDATING, Boolean.TRUE);
+        folder.putContextData(DISABLE_DUBLINCORE_LISTENER, Boolean.TRUE);
+        session.saveDocument(folder);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.service;
+
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.IdRef;
+import org.nuxeo.ecm.core.api.IterableQueryResult;
+import org.nuxeo.ecm.core.query.sql.NXQL;
+import org.nuxeo.ecm.core.schema.DocumentType;
+import org.nuxeo.ecm.core.schema.SchemaManager;
+import org.nuxeo.ecm.core.work.AbstractWork;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compute again the aggregates of all the folders of a tree, for the trees created before the aggregates were
+ * maintained or after an inconsistency.
+ * <p>
+ * The tree is read with a single projection, the aggregates are summed in memory from the leaves up, and the folders
+ * are saved by batches. The difference found on the root of the tree is then applied to its ancestors.
+ * <p>
+ * The work runs in the queue of the {@link BoxAggregatesUpdateWork}, so that no update is applied while the tree is
+ * rebuilt. The changes committed before the tree is read are counted by the rebuild: their pending deltas are dropped
+ * for the folders of the tree, and taken off the difference applied to the ancestors, which still have their own.
+ *
+ * @since 9.1
+ */
+public class BoxAggregatesRebuildWork extends AbstractWork {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String CATEGORY = BoxAggregatesUpdateWork.CATEGORY;
+
+    protected static final String TITLE = "Box Aggregates Rebuild";
+
+    protected static final int BATCH_SIZE = 500;
+
+    protected static final int CHILDREN = 0;
+
+    protected static final int DESCENDANTS = 1;
+
+    protected static final int SIZE = 2;
+
+    public BoxAggregatesRebuildWork(String repositoryName, String rootId) {
+        super(repositoryName + ":" + rootId + ":boxAggregates");
+        setDocument(repositoryName, rootId);
+    }
+
+    @Override
+    public String getCategory() {
+        return CATEGORY;
+    }
+
+    @Override
+    public String getTitle() {
+        return TITLE;
+    }
+
+    @Override
+    public void work() {
+        setStatus("Computing");
+        openSystemSession();
+        final Map<String, String> parents = new HashMap<>();
+        final Map<String, long[]> folders = new HashMap<>();
+        folders.put(docId, new long[3]);
+        final Map<String, Long> sizes = new HashMap<>();
+        String query = "SELECT " + NXQL.ECM_UUID + ", " + NXQL.ECM_PARENTID + ", " + NXQL.ECM_PRIMARYTYPE + ", "
+                + NXQL.ECM_ISPROXY + ", " + BoxAggregates.CONTENT_LENGTH + " FROM Document WHERE "
+                + NXQL.ECM_ANCESTORID + " = " + NXQL.escapeString(docId) + " AND " + NXQL.ECM_ISVERSION + " = 0";
+        SchemaManager schemaManager = Framework.getService(SchemaManager.class);
+        IterableQueryResult rows = session.queryAndFetch(query, NXQL.NXQL);
+        try {
+            for (Map<String, Serializable> row : rows) {
+                String id = (String) row.get(NXQL.ECM_UUID);
+                parents.put(id, (String) row.get(NXQL.ECM_PARENTID));
+                DocumentType type = schemaManager.getDocumentType((String) row.get(NXQL.ECM_PRIMARYTYPE));
+                if (type != null && type.isFolder()) {
+                    folders.put(id, new long[3]);
+                } else if (!Boolean.TRUE.equals(row.get(NXQL.ECM_ISPROXY))
+                        && row.get(BoxAggregates.CONTENT_LENGTH) instanceof Long) {
+                    sizes.put(id, (Long) row.get(BoxAggregates.CONTENT_LENGTH));
+                }
+            }
+        } finally {
+            rows.close();
+        }
+        // Counted by the tree as read
+        long[] rootPending = BoxAggregatesUpdateWork.NO_DELTA;
+        for (String folderId : folders.keySet()) {
+            long[] pending = BoxAggregatesUpdateWork.take(repositoryName, folderId);
+            if (docId.equals(folderId)) {
+                rootPending = pending;
+            }
+        }
+        // Sum each document in all its ancestors within the tree
+        for (Map.Entry<String, String> entry : parents.entrySet()) {
+            long size = sizes.getOrDefault(entry.getKey(), 0L);
+            String parentId = entry.getValue();
+            long[] parent = folders.get(parentId);
+            if (parent != null) {
+                parent[CHILDREN]++;
+            }
+            while (parent != null) {
+                parent[DESCENDANTS]++;
+                parent[SIZE] += size;
+                parentId = docId.equals(parentId) ? null : parents.get(parentId);
+                parent = parentId != null ? folders.get(parentId) : null;
+            }
+        }
+        setStatus("Saving");
+        DocumentModel root = session.getDocument(new IdRef(docId));
+        long[] rootAggregates = folders.get(docId);
+        long descendantsDelta = rootAggregates[DESCENDANTS] - BoxAggregates.getDescendantCount(root)
+                - rootPending[DESCENDANTS];
+        long sizeDelta = rootAggregates[SIZE] - BoxAggregates.getTotalSize(root) - rootPending[SIZE];
+        int done = 0;
+        for (Map.Entry<String, long[]> entry : folders.entrySet()) {
+            long[] aggregates = entry.getValue();
+            DocumentModel folder = session.getDocument(new IdRef(entry.getKey()));
+            BoxAggregates.set(session, folder, aggregates[CHILDREN], aggregates[DESCENDANTS], aggregates[SIZE]);
+            setProgress(new Progress(++done, folders.size()));
+            if (done % BATCH_SIZE == 0) {
+                session.save();
+                TransactionHelper.commitOrRollbackTransaction();
+                TransactionHelper.startTransaction();
+            }
+        }
+        // The ancestors of the tree only see the difference
+        if (root.getParentRef() != null) {
+            BoxAggregates ancestors = new BoxAggregates(repositoryName);
+            ancestors.add(session, root.getParentRef(), 0, descendantsDelta, sizeDelta);
+            ancestors.schedule();
+        }
+        session.save();
+        setStatus("Done");
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.service;
+
+import org.nuxeo.ecm.core.api.DocumentRef;
+import org.nuxeo.ecm.core.api.IdRef;
+import org.nuxeo.ecm.core.work.AbstractWork;
+import org.nuxeo.ecm.core.work.api.WorkManager;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Apply the changes of the aggregates committed by the transactions, by batches, each in its own transaction.
+ * <p>
+ * The changes wait in memory, summed per folder, until the work takes them. Its queue, shared with the
+ * {@link BoxAggregatesRebuildWork}, runs a single thread, so the aggregates of a folder are only read and written by
+ * one transaction at a time on this node, which sees the ones committed before it. Changes that cannot be saved are put back for the next run. The pending changes are local to
+ * the node, so the work is meant for a local queue.
+ *
+ * @since 9.1
+ */
+public class BoxAggregatesUpdateWork extends AbstractWork {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String CATEGORY = "boxAggregatesUpdate";
+
+    protected static final String TITLE = "Box Aggregates Update";
+
+    protected static final int BATCH_SIZE = 500;
+
+    protected static final long[] NO_DELTA = new long[3];
+
+    /**
+     * The changes not applied yet, per folder, per repository
+     */
+    protected static final ConcurrentMap<String, ConcurrentMap<String, long[]>> PENDING = new ConcurrentHashMap<>();
+
+    public BoxAggregatesUpdateWork(String repositoryName) {
+        super(repositoryName + ":boxAggregatesUpdate");
+        this.repositoryName = repositoryName;
+    }
+
+    /**
+     * Add the changes to the pending ones and make sure a work will apply them
+     */
+    public static void schedule(String repositoryName, Map<String, long[]> deltas) {
+        merge(repositoryName, deltas);
+        Framework.getService(WorkManager.class).schedule(new BoxAggregatesUpdateWork(repositoryName),
+                WorkManager.Scheduling.IF_NOT_SCHEDULED, false);
+    }
+
+    /**
+     * @return the pending changes of a folder, zero if none
+     */
+    public static long[] getPending(String repositoryName, String folderId) {
+        ConcurrentMap<String, long[]> pending = PENDING.get(repositoryName);
+        long[] delta = pending != null ? pending.get(folderId) : null;
+        return delta != null ? delta : NO_DELTA;
+    }
+
+    /**
+     * Remove the pending changes of a folder, counted otherwise
+     *
+     * @return the removed changes, zero if none
+     */
+    public static long[] take(String repositoryName, String folderId) {
+        ConcurrentMap<String, long[]> pending = PENDING.get(repositoryName);
+        long[] delta = pending != null ? pending.remove(folderId) : null;
+        return delta != null ? delta : NO_DELTA;
+    }
+
+    protected static void merge(String repositoryName, Map<String, long[]> deltas) {
+        ConcurrentMap<String, long[]> pending = PENDING.computeIfAbsent(repositoryName,
+                k -> new ConcurrentHashMap<>());
+        for (Map.Entry<String, long[]> entry : deltas.entrySet()) {
+            pending.merge(entry.getKey(), entry.getValue().clone(), BoxAggregates::sum);
+        }
+    }
+
+    @Override
+    public String getCategory() {
+        return CATEGORY;
+    }
+
+    @Override
+    public String getTitle() {
+        return TITLE;
+    }
+
+    @Override
+    public void work() {
+        ConcurrentMap<String, long[]> pending = PENDING.get(repositoryName);
+        if (pending == null || pending.isEmpty()) {
+            return;
+        }
+        setStatus("Updating");
+        openSystemSession();
+        // Taken from the pending ones, not yet committed
+        Map<String, long[]> taken = new HashMap<>();
+        try {
+            for (String folderId : pending.keySet()) {
+                long[] delta = pending.remove(folderId);
+                // Changes of the same transactions may cancel each other
+                if (delta == null || Arrays.equals(delta, NO_DELTA)) {
+                    continue;
+                }
+                DocumentRef folderRef = new IdRef(folderId);
+                if (!session.exists(folderRef)) {
+                    continue;
+                }
+                taken.put(folderId, delta);
+                BoxAggregates.apply(session, session.getDocument(folderRef), delta);
+                if (taken.size() == BATCH_SIZE) {
+                    commit(taken);
+                }
+            }
+            commit(taken);
+        } catch (RuntimeException e) {
+            merge(repositoryName, taken);
+            throw e;
+        }
+        setStatus("Done");
+    }
+
+    protected void commit(Map<String, long[]> taken) {
+        session.save();
+        TransactionHelper.commitOrRollbackTransaction();
+        TransactionHelper.startTransaction();
+        taken.clear();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.service;
+
+import org.nuxeo.box.api.marshalling.dao.BoxFile;
+import org.nuxeo.box.api.marshalling.dao.BoxFolder;
+import org.nuxeo.box.api.marshalling.dao.BoxItem;
+import org.nuxeo.box.api.marshalling.dao.BoxTypedObject;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable mini representation of an ancestor, as listed in a path collection. Box objects being mutable, a new one is
+ * built each time the ancestor is rendered.
+ *
+ * @since 9.1
+ */
+public class BoxAncestor {
+
+    /**
+     * The parent of the root
+     */
+    public static final BoxAncestor NONE = new BoxAncestor(null, null, null, null, true);
+
+    protected final String id;
+
+    protected final String sequenceId;
+
+    protected final String etag;
+
+    protected final String name;
+
+    protected final boolean folder;
+
+    public BoxAncestor(String id, String sequenceId, String etag, String name, boolean folder) {
+        this.id = id;
+        this.sequenceId = sequenceId;
+        this.etag = etag;
+        this.name = name;
+        this.folder = folder;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isFolder() {
+        return folder;
+    }
+
+    protected Map<String, Object> getProperties() {
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put(BoxItem.FIELD_ID, id);
+        properties.put(BoxItem.FIELD_SEQUENCE_ID, sequenceId);
+        properties.put(BoxItem.FIELD_ETAG, etag);
+        properties.put(BoxItem.FIELD_NAME, name);
+        return Collections.unmodifiableMap(properties);
+    }
+
+    /**
+     * @return the ancestor as a path collection entry
+     */
+    public BoxTypedObject toBoxItem() {
+        // This different instantiation is related to the param type
+        // which is automatically added in json payload by Box marshaller
+        // following the box object type
+        return folder ? new BoxFolder(getProperties()) : new BoxFile(getProperties());
+    }
+
+    /**
+     * @return the ancestor as a parent folder
+     */
+    public BoxFolder toBoxFolder() {
+        return new BoxFolder(getProperties());
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentRef;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bounded cache of the ancestors mini representations, keyed by document id.
+ * <p>
+ * The ancestor references of a document are fetched in one call, and only the ancestors missing from the cache are
+ * loaded, in one batch. Entries are invalidated when the related document is moved, renamed or removed.
+ *
+ * @since 9.1
+ */
+public class BoxAncestorCache {
+
+    protected final BoxService boxService;
+
+    protected final Cache<String, BoxAncestor> ancestors;
+
+    public BoxAncestorCache(BoxService boxService, long maxSize) {
+        this.boxService = boxService;
+        ancestors = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    }
+
+    /**
+     * @return the ancestors of the given document, from its parent up to the root
+     */
+    public List<BoxAncestor> getAncestors(CoreSession session, DocumentRef docRef) {
+        final DocumentRef[] parentRefs = session.getParentDocumentRefs(docRef);
+        return toHierarchy(parentRefs, resolve(session, Arrays.asList(parentRefs)));
+    }
+
+    /**
+     * Resolve the ancestors of the children of several folders at once, all the missing ancestors being loaded in one
+     * batch.
+     *
+     * @return for each given folder id, the ancestors of its children: the folder itself up to the root
+     */
+    public Map<String, List<BoxAncestor>> getChildrenAncestors(CoreSession session,
+            Collection<DocumentRef> folderRefs) {
+        final Map<String, DocumentRef[]> hierarchies = new HashMap<>();
+        final Set<DocumentRef> allRefs = new LinkedHashSet<>();
+        for (DocumentRef folderRef : folderRefs) {
+            DocumentRef[] parentRefs = session.getParentDocumentRefs(folderRef);
+            DocumentRef[] hierarchy = new DocumentRef[parentRefs.length + 1];
+            hierarchy[0] = folderRef;
+            System.arraycopy(parentRefs, 0, hierarchy, 1, parentRefs.length);
+            hierarchies.put(folderRef.reference().toString(), hierarchy);
+            allRefs.addAll(Arrays.asList(hierarchy));
+        }
+        final Map<String, BoxAncestor> resolved = resolve(session, allRefs);
+        final Map<String, List<BoxAncestor>> childrenAncestors = new HashMap<>();
+        for (Map.Entry<String, DocumentRef[]> hierarchy : hierarchies.entrySet()) {
+            childrenAncestors.put(hierarchy.getKey(), toHierarchy(hierarchy.getValue(), resolved));
+        }
+        return childrenAncestors;
+    }
+
+    /**
+     * @return the ancestors of the given references by id, the ones missing from the cache being loaded in one batch
+     */
+    protected Map<String, BoxAncestor> resolve(CoreSession session, Collection<DocumentRef> parentRefs) {
+        final Map<String, BoxAncestor> resolved = new HashMap<>();
+        final List<DocumentRef> missingRefs = new ArrayList<>();
+        for (DocumentRef parentRef : parentRefs) {
+            String parentId = parentRef.reference().toString();
+            BoxAncestor ancestor = ancestors.getIfPresent(parentId);
+            if (ancestor != null) {
+                resolved.put(parentId, ancestor);
+            } else {
+                missingRefs.add(parentRef);
+            }
+        }
+        if (!missingRefs.isEmpty()) {
+            DocumentRef[] refs = missingRefs.toArray(new DocumentRef[missingRefs.size()]);
+            for (DocumentModel parentDoc : session.getDocuments(refs)) {
+                BoxAncestor ancestor = newAncestor(parentDoc);
+                ancestors.put(parentDoc.getId(), ancestor);
+                resolved.put(parentDoc.getId(), ancestor);
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Keep the repository order, skipping the ancestors which are not readable
+     */
+    protected List<BoxAncestor> toHierarchy(DocumentRef[] parentRefs, Map<String, BoxAncestor> resolved) {
+        final List<BoxAncestor> hierarchy = new ArrayList<>(parentRefs.length);
+        for (DocumentRef parentRef : parentRefs) {
+            BoxAncestor ancestor = resolved.get(parentRef.reference().toString());
+            if (ancestor != null) {
+                hierarchy.add(ancestor);
+            }
+        }
+        return hierarchy;
+    }
+
+    protected BoxAncestor newAncestor(DocumentModel doc) {
+        return new BoxAncestor(boxService.getBoxId(doc), boxService.getBoxSequenceId(doc),
+                boxService.getBoxEtag(doc), boxService.getBoxName(doc), doc.isFolder());
+    }
+
+    public void invalidate(String docId) {
+        ancestors.invalidate(docId);
+    }
+
+    public void invalidateAll() {
+        ancestors.invalidateAll();
+    }
+}
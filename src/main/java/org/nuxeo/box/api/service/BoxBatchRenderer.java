@@ -0,0 +1,172 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.service;
+
+import com.codahale.metrics.Timer;
+import org.nuxeo.box.api.BoxConstants;
+import org.nuxeo.box.api.adapter.BoxAdapter;
+import org.nuxeo.box.api.file.adapter.BoxFileAdapter;
+import org.nuxeo.box.api.marshalling.dao.BoxItem;
+import org.nuxeo.box.api.marshalling.dao.BoxTypedObject;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentRef;
+import org.nuxeo.ecm.core.api.IterableQueryResult;
+import org.nuxeo.ecm.core.api.Lock;
+import org.nuxeo.ecm.core.query.sql.NXQL;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Render the box items of a whole batch of documents.
+ * <p>
+ * Instead of letting each item resolve its own ancestors, principals, tags and lock, the distinct parents, user names,
+ * tagged documents and locks of the batch are resolved group by group, each group at once, before the items are
+ * assembled. Only the groups needed by the requested fields are resolved.
+ *
+ * @since 9.1
+ */
+public class BoxBatchRenderer {
+
+    protected final BoxAncestorCache ancestorCache;
+
+    protected final BoxPrincipalCache principalCache;
+
+    protected final BoxTagCache tagCache;
+
+    public BoxBatchRenderer(BoxAncestorCache ancestorCache, BoxPrincipalCache principalCache, BoxTagCache tagCache) {
+        this.ancestorCache = ancestorCache;
+        this.principalCache = principalCache;
+        this.tagCache = tagCache;
+    }
+
+    public List<BoxTypedObject> render(CoreSession session, List<DocumentModel> docs, BoxProjection projection) {
+        final Map<String, BoxAdapter> adapters = new LinkedHashMap<>();
+        for (DocumentModel doc : docs) {
+            BoxAdapter adapter = doc.getAdapter(BoxAdapter.class);
+            if (adapter != null) {
+                adapters.put(doc.getId(), adapter);
+            }
+        }
+        if (adapters.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (projection.includes(BoxItem.FIELD_PATH_COLLECTION) || projection.includes(BoxItem.FIELD_PARENT)) {
+            try (Timer.Context timer = BoxMetrics.time(BoxMetrics.PHASE_PATH_COLLECTION)) {
+                prefetchAncestors(session, adapters.values());
+            }
+        }
+        final Set<String> principalNames = new LinkedHashSet<>();
+        if (projection.includes(BoxConstants.BOX_LOCK)) {
+            principalNames.addAll(prefetchLocks(session, adapters));
+        }
+        if (projection.includes(BoxItem.FIELD_CREATED_BY) || projection.includes(BoxItem.FIELD_MODIFIED_BY)
+                || projection.includes(BoxItem.FIELD_OWNED_BY)) {
+            for (BoxAdapter adapter : adapters.values()) {
+                principalNames.addAll(adapter.getPrincipalNames());
+            }
+        }
+        if (!principalNames.isEmpty()) {
+            try (Timer.Context timer = BoxMetrics.time(BoxMetrics.PHASE_PRINCIPALS)) {
+                principalCache.prefetchUsers(principalNames);
+            }
+        }
+        if (projection.includes(BoxItem.FIELD_TAGS)) {
+            Map<String, String[]> tags;
+            try (Timer.Context timer = BoxMetrics.time(BoxMetrics.PHASE_TAGS)) {
+                tags = tagCache.getTags(session, adapters.keySet(), session.getPrincipal().getName());
+            }
+            for (Map.Entry<String, BoxAdapter> adapter : adapters.entrySet()) {
+                adapter.getValue().setTags(tags.get(adapter.getKey()));
+            }
+        }
+        final List<BoxTypedObject> items = new ArrayList<>(adapters.size());
+        for (BoxAdapter adapter : adapters.values()) {
+            items.add(projection.project(adapter.getBoxItem()));
+        }
+        return items;
+    }
+
+    /**
+     * The documents of the batch sharing the same parent share their ancestors
+     */
+    protected void prefetchAncestors(CoreSession session, Collection<BoxAdapter> adapters) {
+        final Map<String, DocumentRef> parentRefs = new HashMap<>();
+        for (BoxAdapter adapter : adapters) {
+            DocumentRef parentRef = adapter.getDoc().getParentRef();
+            if (parentRef != null) {
+                parentRefs.put(parentRef.reference().toString(), parentRef);
+            }
+        }
+        Map<String, List<BoxAncestor>> childrenAncestors = ancestorCache.getChildrenAncestors(session,
+                parentRefs.values());
+        for (BoxAdapter adapter : adapters) {
+            DocumentRef parentRef = adapter.getDoc().getParentRef();
+            adapter.setAncestors(parentRef != null ? childrenAncestors.get(parentRef.reference().toString())
+                    : Collections.emptyList());
+        }
+    }
+
+    /**
+     * @return the owners of the locks
+     */
+    protected Set<String> prefetchLocks(CoreSession session, Map<String, BoxAdapter> adapters) {
+        final List<String> fileIds = new ArrayList<>();
+        for (Map.Entry<String, BoxAdapter> adapter : adapters.entrySet()) {
+            if (adapter.getValue() instanceof BoxFileAdapter) {
+                fileIds.add(adapter.getKey());
+            }
+        }
+        final Map<String, Lock> locks = new HashMap<>();
+        for (List<String> batch : BoxTagLoader.partition(fileIds)) {
+            IterableQueryResult rows = session.queryAndFetch("SELECT " + NXQL.ECM_UUID + ", " + NXQL.ECM_LOCK_OWNER
+                    + ", " + NXQL.ECM_LOCK_CREATED + " FROM Document WHERE " + NXQL.ECM_UUID + " IN ("
+                    + BoxTagLoader.toList(batch) + ")", NXQL.NXQL);
+            try {
+                for (Map<String, Serializable> row : rows) {
+                    String owner = (String) row.get(NXQL.ECM_LOCK_OWNER);
+                    if (owner != null) {
+                        locks.put((String) row.get(NXQL.ECM_UUID), new Lock(owner,
+                                (Calendar) row.get(NXQL.ECM_LOCK_CREATED)));
+                    }
+                }
+            } finally {
+                rows.close();
+            }
+        }
+        for (String fileId : fileIds) {
+            ((BoxFileAdapter) adapters.get(fileId)).setLockInfo(locks.get(fileId));
+        }
+        final Set<String> owners = new LinkedHashSet<>();
+        for (Lock lock : locks.values()) {
+            owners.add(lock.getOwner());
+        }
+        return owners;
+    }
+}
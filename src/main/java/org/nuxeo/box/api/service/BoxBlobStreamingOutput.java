@@ -0,0 +1,103 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.service;
+
+import com.google.common.io.ByteStreams;
+import org.nuxeo.ecm.core.api.Blob;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Write a range of the content of a blob into the response stream.
+ * <p>
+ * A blob backed by a file is read from the start of the range by positioned reads of a {@link FileChannel}, instead of
+ * skipping the bytes before it. Other blobs are streamed from the start of the range. Both are copied once, through a
+ * large buffer, into the response stream: the servlet containers do not expose it as a channel, so the bytes are not
+ * moved by the kernel.
+ *
+ * @since 9.1
+ */
+public class BoxBlobStreamingOutput implements StreamingOutput {
+
+    protected static final int BUFFER_SIZE = 64 * 1024;
+
+    protected final Blob blob;
+
+    protected final long offset;
+
+    protected final long length;
+
+    /**
+     * @param length the number of bytes to write from the offset
+     */
+    public BoxBlobStreamingOutput(Blob blob, long offset, long length) {
+        this.blob = blob;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException, WebApplicationException {
+        File file = blob.getFile();
+        if (file != null && file.isFile()) {
+            transfer(file, output);
+        } else {
+            try (InputStream in = blob.getStream()) {
+                ByteStreams.skipFully(in, offset);
+                InputStream range = ByteStreams.limit(in, length);
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = range.read(buffer)) >= 0) {
+                    output.write(buffer, 0, read);
+                }
+            }
+        }
+        output.flush();
+    }
+
+    protected void transfer(File file, OutputStream output) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long position = offset;
+            // Up to the end of the file when the length is not known
+            long remaining = length == Long.MAX_VALUE ? Math.max(channel.size() - offset, 0) : length;
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(remaining, 1)));
+            while (remaining > 0) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), remaining));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new EOFException("File " + file + " ends before " + (offset + length) + " bytes");
+                }
+                output.write(buffer.array(), 0, read);
+                position += read;
+                remaining -= read;
+            }
+        }
+    }
+
+}
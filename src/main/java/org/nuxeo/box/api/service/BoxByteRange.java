@@ -0,0 +1,145 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.service;
+
+import org.apache.commons.lang.StringUtils;
+
+import javax.ws.rs.core.EntityTag;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+
+/**
+ * The single byte range requested by a <code>Range</code> header, as used by resumed and segmented downloads.
+ * <p>
+ * Multiple ranges are not served: like malformed headers, they are ignored and the whole content is sent.
+ *
+ * @since 9.1
+ */
+public class BoxByteRange {
+
+    public static final String BYTES_UNIT = "bytes";
+
+    public static final int STATUS_PARTIAL_CONTENT = 206;
+
+    public static final int STATUS_RANGE_NOT_SATISFIABLE = 416;
+
+    /**
+     * A range starting after the end of the content
+     */
+    public static final BoxByteRange UNSATISFIABLE = new BoxByteRange(-1, -1);
+
+    protected final long first;
+
+    protected final long last;
+
+    protected BoxByteRange(long first, long last) {
+        this.first = first;
+        this.last = last;
+    }
+
+    /**
+     * @param range the value of the <code>Range</code> header
+     * @param length the length of the content
+     * @return the range, {@link #UNSATISFIABLE}, or null if the whole content is to be sent
+     */
+    public static BoxByteRange parse(String range, long length) {
+        if (StringUtils.isBlank(range) || length < 0) {
+            return null;
+        }
+        range = range.trim();
+        if (!range.startsWith(BYTES_UNIT + "=") || range.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = range.substring(BYTES_UNIT.length() + 1).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String from = spec.substring(0, dash).trim();
+            String to = spec.substring(dash + 1).trim();
+            if (from.isEmpty()) {
+                // Suffix range: the last bytes
+                long suffix = Long.parseLong(to);
+                if (suffix <= 0) {
+                    return suffix == 0 ? UNSATISFIABLE : null;
+                }
+                return length == 0 ? UNSATISFIABLE : new BoxByteRange(Math.max(length - suffix, 0), length - 1);
+            }
+            long first = Long.parseLong(from);
+            long last = to.isEmpty() ? length - 1 : Math.min(Long.parseLong(to), length - 1);
+            if (first < 0 || (!to.isEmpty() && Long.parseLong(to) < first)) {
+                return null;
+            }
+            return first >= length ? UNSATISFIABLE : new BoxByteRange(first, last);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param ifRange the value of the <code>If-Range</code> header, an entity tag or a date
+     * @return whether the range can be served, the whole content being sent when the content has changed
+     */
+    public static boolean isIfRangeSatisfied(String ifRange, EntityTag entityTag, Date lastModified) {
+        if (StringUtils.isBlank(ifRange)) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // Strong comparison only
+            try {
+                EntityTag tag = EntityTag.valueOf(ifRange);
+                return !tag.isWeak() && !entityTag.isWeak() && tag.getValue().equals(entityTag.getValue());
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+        if (lastModified == null) {
+            return false;
+        }
+        try {
+            long date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().getEpochSecond();
+            return date == lastModified.getTime() / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    public long getFirst() {
+        return first;
+    }
+
+    public long getLast() {
+        return last;
+    }
+
+    public long getLength() {
+        return last - first + 1;
+    }
+
+    /**
+     * @return the value of the <code>Content-Range</code> header of the response
+     */
+    public String getContentRange(long length) {
+        return BYTES_UNIT + " " + (this == UNSATISFIABLE ? "*" : first + "-" + last) + "/" + length;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.service;
+
+import com.google.common.io.BaseEncoding;
+import org.apache.commons.lang.StringUtils;
+import org.nuxeo.box.api.marshalling.exceptions.BoxRestException;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.NuxeoException;
+
+import javax.ws.rs.core.Response;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The SHA1 of the content of a file, computed while it is uploaded and stored in the <code>BoxContent</code> facet, so
+ * it is never computed again from the binary.
+ * <p>
+ * An instance digests an upload stream in the same pass as it is stored: SHA1 always, MD5 only when a
+ * <code>Content-MD5</code> header has to be verified.
+ *
+ * @since 9.1
+ */
+public class BoxContentDigest {
+
+    public static final String FACET = "BoxContent";
+
+    public static final String SHA1 = "bxc:sha1";
+
+    /**
+     * Event property flagging the modifications of a document which change its content
+     */
+    public static final String CONTENT_CHANGED = "boxContentChanged";
+
+    protected static final int SHA1_HEX_LENGTH = 40;
+
+    protected final MessageDigest sha1 = newDigest("SHA-1");
+
+    protected final MessageDigest md5;
+
+    protected final String contentMd5;
+
+    /**
+     * @param contentMd5 the value of the <code>Content-MD5</code> header, null if not sent
+     */
+    public BoxContentDigest(String contentMd5) {
+        this.contentMd5 = StringUtils.trimToNull(contentMd5);
+        // Box clients send the hexadecimal SHA1 in this header, others the base64 MD5
+        md5 = this.contentMd5 != null && !isSha1Hex(this.contentMd5) ? newDigest("MD5") : null;
+    }
+
+    /**
+     * @return the stream to read instead of the given one, digesting what is read
+     */
+    public InputStream wrap(InputStream in) {
+        InputStream digested = new DigestInputStream(in, sha1);
+        return md5 != null ? new DigestInputStream(digested, md5) : digested;
+    }
+
+    /**
+     * Check the <code>Content-MD5</code> header, if any, once the whole stream is read
+     *
+     * @return the hexadecimal SHA1 of the stream
+     */
+    public String verify() {
+        String sha1Hex = BaseEncoding.base16().lowerCase().encode(sha1.digest());
+        if (contentMd5 == null) {
+            return sha1Hex;
+        }
+        boolean matches;
+        if (md5 == null) {
+            matches = sha1Hex.equalsIgnoreCase(contentMd5);
+        } else {
+            byte[] md5Bytes = md5.digest();
+            matches = BaseEncoding.base64().encode(md5Bytes).equals(contentMd5)
+                    || BaseEncoding.base16().lowerCase().encode(md5Bytes).equalsIgnoreCase(contentMd5);
+        }
+        if (!matches) {
+            throw new BoxRestException("The content does not match the Content-MD5 header",
+                    Response.Status.PRECONDITION_FAILED.getStatusCode());
+        }
+        return sha1Hex;
+    }
+
+    /**
+     * @return the stored SHA1 of the content of the document, null if unknown
+     */
+    public static String getSha1(DocumentModel doc) {
+        return doc.hasFacet(FACET) ? (String) doc.getPropertyValue(SHA1) : null;
+    }
+
+    /**
+     * Store the SHA1 of the content along with it, in the same save
+     */
+    public static void setSha1(DocumentModel doc, String sha1Hex) {
+        if (!doc.hasFacet(FACET)) {
+            doc.addFacet(FACET);
+        }
+        doc.setPropertyValue(SHA1, sha1Hex);
+    }
+
+    protected static boolean isSha1Hex(String value) {
+        return value.length() == SHA1_HEX_LENGTH && BaseEncoding.base16().lowerCase().canDecode(
+                value.toLowerCase());
+    }
+
+    protected static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new NuxeoException(e);
+        }
+    }
+}
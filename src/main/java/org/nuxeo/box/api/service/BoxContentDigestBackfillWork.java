@@ -0,0 +1,204 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.service;
+
+import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.box.api.BoxConstants;
+import org.nuxeo.ecm.core.api.Blob;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentModelList;
+import org.nuxeo.ecm.core.api.DocumentNotFoundException;
+import org.nuxeo.ecm.core.api.versioning.VersioningService;
+import org.nuxeo.ecm.core.query.sql.NXQL;
+import org.nuxeo.ecm.core.work.AbstractWork;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compute the SHA1 of the content of the files stored before it was digested on upload, or whose content was changed
+ * outside of the Box API.
+ * <p>
+ * The files are scanned by batches in id order. The binaries of a batch are read by a bounded pool of threads, out of
+ * any transaction and within a byte rate, then the SHA1 are stored in a short transaction, unless the content has
+ * changed meanwhile. As the stored SHA1 are skipped by the scan, a new run continues where the previous one stopped.
+ * A suspended work also keeps the id it stopped at.
+ *
+ * @since 9.1
+ */
+public class BoxContentDigestBackfillWork extends AbstractWork {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Log log = LogFactory.getLog(BoxContentDigestBackfillWork.class);
+
+    public static final String CATEGORY = "boxContentDigest";
+
+    protected static final String TITLE = "Box Content Digest Backfill";
+
+    protected static final String CONTENT = "file:content";
+
+    protected static final int BATCH_SIZE = 100;
+
+    protected static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The id of the last file processed, null to start from the first one
+     */
+    protected String lastId;
+
+    protected long done;
+
+    public BoxContentDigestBackfillWork(String repositoryName) {
+        super(repositoryName + ":boxContentDigest");
+        this.repositoryName = repositoryName;
+    }
+
+    @Override
+    public String getCategory() {
+        return CATEGORY;
+    }
+
+    @Override
+    public String getTitle() {
+        return TITLE;
+    }
+
+    @Override
+    public void work() {
+        setStatus("Digesting");
+        openSystemSession();
+        int threads = Integer.parseInt(Framework.getProperty(BoxConstants.BOX_DIGEST_BACKFILL_THREADS_PROPERTY,
+                BoxConstants.BOX_DIGEST_BACKFILL_THREADS));
+        long rate = Long.parseLong(Framework.getProperty(BoxConstants.BOX_DIGEST_BACKFILL_RATE_PROPERTY,
+                BoxConstants.BOX_DIGEST_BACKFILL_RATE));
+        long pause = Long.parseLong(Framework.getProperty(BoxConstants.BOX_DIGEST_BACKFILL_PAUSE_PROPERTY,
+                BoxConstants.BOX_DIGEST_BACKFILL_PAUSE));
+        final RateLimiter rateLimiter = rate > 0 ? RateLimiter.create(rate) : null;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(threads, 1),
+                new ThreadFactoryBuilder().setNameFormat("box-digest-%d").setDaemon(true).build());
+        try {
+            while (!isSuspending()) {
+                DocumentModelList files = session.query(getQuery(), BATCH_SIZE);
+                if (files.isEmpty()) {
+                    setStatus("Done");
+                    return;
+                }
+                // The binaries are read without holding a transaction
+                Map<DocumentModel, Future<String>> digests = new LinkedHashMap<>();
+                for (DocumentModel file : files) {
+                    Blob blob = (Blob) file.getPropertyValue(CONTENT);
+                    digests.put(file, executor.submit(() -> digest(blob, rateLimiter)));
+                }
+                TransactionHelper.commitOrRollbackTransaction();
+                Map<DocumentModel, String> sha1s = new LinkedHashMap<>();
+                for (Map.Entry<DocumentModel, Future<String>> entry : digests.entrySet()) {
+                    try {
+                        sha1s.put(entry.getKey(), entry.getValue().get());
+                    } catch (ExecutionException e) {
+                        log.warn("Cannot digest the content of " + entry.getKey().getId(), e.getCause());
+                    }
+                }
+                TransactionHelper.startTransaction();
+                for (Map.Entry<DocumentModel, String> entry : sha1s.entrySet()) {
+                    save(entry.getKey(), entry.getValue());
+                }
+                session.save();
+                lastId = files.get(files.size() - 1).getId();
+                done += files.size();
+                setStatus("Digested " + done);
+                if (pause > 0) {
+                    TransactionHelper.commitOrRollbackTransaction();
+                    Thread.sleep(pause);
+                    TransactionHelper.startTransaction();
+                }
+            }
+            // Resumed from the last id processed
+            suspended();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    protected String getQuery() {
+        String query = "SELECT * FROM Document WHERE " + BoxAggregates.CONTENT_LENGTH + " IS NOT NULL AND "
+                + BoxContentDigest.SHA1 + " IS NULL AND " + NXQL.ECM_ISVERSION + " = 0 AND " + NXQL.ECM_ISPROXY
+                + " = 0";
+        if (lastId != null) {
+            query += " AND " + NXQL.ECM_UUID + " > " + NXQL.escapeString(lastId);
+        }
+        return query + " ORDER BY " + NXQL.ECM_UUID;
+    }
+
+    /**
+     * Store the SHA1 of a file if its content is still the digested one
+     */
+    protected void save(DocumentModel digested, String sha1) {
+        DocumentModel file;
+        try {
+            file = session.getDocument(digested.getRef());
+        } catch (DocumentNotFoundException e) {
+            return;
+        }
+        Blob blob = (Blob) file.getPropertyValue(CONTENT);
+        Blob digestedBlob = (Blob) digested.getPropertyValue(CONTENT);
+        if (blob == null || !Objects.equals(blob.getDigest(), digestedBlob.getDigest())) {
+            return;
+        }
+        BoxContentDigest.setSha1(file, sha1);
+        file.putContextData(BoxAggregates.DISABLE_DUBLINCORE_LISTENER, Boolean.TRUE);
+        file.putContextData(VersioningService.DISABLE_AUTO_CHECKOUT, Boolean.TRUE);
+        session.saveDocument(file);
+    }
+
+    /**
+     * @return the hexadecimal SHA1 of the blob, read within the rate if any
+     */
+    protected static String digest(Blob blob, RateLimiter rateLimiter) throws IOException {
+        MessageDigest sha1 = BoxContentDigest.newDigest("SHA-1");
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = blob.getStream()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (rateLimiter != null && read > 0) {
+                    rateLimiter.acquire(read);
+                }
+                sha1.update(buffer, 0, read);
+            }
+        }
+        return BaseEncoding.base16().lowerCase().encode(sha1.digest());
+    }
+}
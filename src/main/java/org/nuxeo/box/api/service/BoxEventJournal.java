@@ -0,0 +1,371 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.box.api.marshalling.dao.BoxEvent;
+import org.nuxeo.ecm.core.api.NuxeoException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local append-only journal of the changes of the documents, read by stream position.
+ * <p>
+ * The journal is a sequence of memory-mapped segment files of fixed-size records, so the record of a position is found
+ * by computation alone, without any index. A record is complete once its timestamp, written last, is not zero, which
+ * also gives the end of the journal when it is opened again. A record torn or corrupted by a crash is taken as the end
+ * of the journal instead of failing the reads. Whole segments are dropped once all their records are older than the
+ * retention.
+ * <p>
+ * The journal only holds the changes made on this node.
+ *
+ * @since 9.1
+ */
+public class BoxEventJournal {
+
+    private static final Log log = LogFactory.getLog(BoxEventJournal.class);
+
+    /**
+     * The event types that can be recorded, stored as their index
+     */
+    public static final List<String> EVENT_TYPES = Collections.unmodifiableList(Arrays.asList(
+            BoxEvent.EVENT_TYPE_ITEM_CREATE, BoxEvent.EVENT_TYPE_ITEM_UPLOAD, BoxEvent.EVENT_TYPE_ITEM_MOVE,
+            BoxEvent.EVENT_TYPE_ITEM_COPY, BoxEvent.EVENT_TYPE_ITEM_RENAME, BoxEvent.EVENT_TYPE_ITEM_TRASH,
+            BoxEvent.EVENT_TYPE_ITEM_UNDELETE_VIA_TRASH, BoxEvent.EVENT_TYPE_LOCK_CREATE,
+            BoxEvent.EVENT_TYPE_LOCK_DESTROY));
+
+    protected static final int RECORD_SIZE = 256;
+
+    protected static final int SEGMENT_RECORDS = 64 * 1024;
+
+    protected static final int TIMESTAMP = 0;
+
+    protected static final int EVENT_TYPE = 8;
+
+    protected static final int FOLDER = 9;
+
+    protected static final int DOC_ID = 10;
+
+    protected static final int DOC_ID_BYTES = 100;
+
+    protected static final int USERNAME = DOC_ID + 2 + DOC_ID_BYTES;
+
+    protected static final int USERNAME_BYTES = 128;
+
+    protected static final String SEGMENT_SUFFIX = ".log";
+
+    protected static final Pattern SEGMENT_NAME = Pattern.compile("(\\d{19})\\" + SEGMENT_SUFFIX);
+
+    protected final Path root;
+
+    protected final long retentionMillis;
+
+    /**
+     * The mapped segments by index, the first position of a segment being its index times {@link #SEGMENT_RECORDS}
+     */
+    protected final ConcurrentNavigableMap<Long, MappedByteBuffer> segments = new ConcurrentSkipListMap<>();
+
+    /**
+     * The position of the next record, written once the record is complete
+     */
+    protected volatile long head;
+
+    /**
+     * @param retentionSeconds how long the records are kept at least
+     */
+    public BoxEventJournal(Path root, long retentionSeconds) {
+        this.root = root;
+        retentionMillis = retentionSeconds * 1000;
+        try {
+            Files.createDirectories(root);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(root, "*" + SEGMENT_SUFFIX)) {
+                for (Path file : files) {
+                    Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                    if (matcher.matches()) {
+                        long index = Long.parseLong(matcher.group(1));
+                        segments.put(index, map(index));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new NuxeoException("Cannot open event journal " + root, e);
+        }
+        head = segments.isEmpty() ? 0 : recoverHead(segments.lastKey());
+        // The last records may have been torn by a crash, they are written again
+        while (head > getFirstPosition() && readEntry(head - 1) == null) {
+            head--;
+        }
+    }
+
+    /**
+     * @return the position of the next record, to read only the records to come
+     */
+    public long getHeadPosition() {
+        return head;
+    }
+
+    /**
+     * @return the position of the oldest record kept
+     */
+    public long getFirstPosition() {
+        return segments.isEmpty() ? head : segments.firstKey() * SEGMENT_RECORDS;
+    }
+
+    /**
+     * Append a record, dropping the expired segments when a new one is started
+     *
+     * @return the position of the record, -1 if it cannot be recorded
+     */
+    public synchronized long append(String eventType, boolean folder, String docId, String username) {
+        int type = EVENT_TYPES.indexOf(eventType);
+        byte[] id = docId.getBytes(StandardCharsets.UTF_8);
+        if (type < 0 || id.length > DOC_ID_BYTES) {
+            log.warn("Cannot record event " + eventType + " on " + docId);
+            return -1;
+        }
+        long position = head;
+        long index = position / SEGMENT_RECORDS;
+        MappedByteBuffer segment = segments.get(index);
+        if (segment == null) {
+            try {
+                segment = map(index);
+            } catch (IOException e) {
+                throw new NuxeoException("Cannot create event journal segment " + index, e);
+            }
+            segments.put(index, segment);
+            truncate(System.currentTimeMillis() - retentionMillis);
+        }
+        int offset = (int) (position % SEGMENT_RECORDS) * RECORD_SIZE;
+        segment.put(offset + EVENT_TYPE, (byte) type);
+        segment.put(offset + FOLDER, (byte) (folder ? 1 : 0));
+        putString(segment, offset + DOC_ID, id);
+        putString(segment, offset + USERNAME, truncate(username != null ? username : "", USERNAME_BYTES));
+        // Written last, the record is complete
+        segment.putLong(offset + TIMESTAMP, Math.max(System.currentTimeMillis(), 1));
+        head = position + 1;
+        return position;
+    }
+
+    /**
+     * Read the records from a position, starting at the oldest one kept if it is older
+     *
+     * @return at most limit records, in position order
+     */
+    public List<Entry> read(long position, int limit) {
+        long end = head;
+        long from = Math.max(position, getFirstPosition());
+        long to = Math.min(end, from + Math.max(limit, 0));
+        List<Entry> entries = new ArrayList<>((int) Math.max(to - from, 0));
+        for (long current = from; current < to; current++) {
+            MappedByteBuffer segment = segments.get(current / SEGMENT_RECORDS);
+            if (segment == null) {
+                // Dropped meanwhile
+                continue;
+            }
+            Entry entry = readEntry(segment.duplicate(), current);
+            if (entry == null) {
+                log.warn("Invalid event journal record at " + current + ", taken as the end of the journal");
+                break;
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    protected Entry readEntry(long position) {
+        MappedByteBuffer segment = segments.get(position / SEGMENT_RECORDS);
+        return segment != null ? readEntry(segment.duplicate(), position) : null;
+    }
+
+    /**
+     * @return the record at a position, null if it is not a valid one
+     */
+    protected static Entry readEntry(ByteBuffer buffer, long position) {
+        int offset = (int) (position % SEGMENT_RECORDS) * RECORD_SIZE;
+        long timestamp = buffer.getLong(offset + TIMESTAMP);
+        int type = buffer.get(offset + EVENT_TYPE);
+        String docId = getString(buffer, offset + DOC_ID, DOC_ID_BYTES);
+        String username = getString(buffer, offset + USERNAME, USERNAME_BYTES);
+        if (timestamp <= 0 || type < 0 || type >= EVENT_TYPES.size() || docId == null || username == null) {
+            return null;
+        }
+        return new Entry(position, timestamp, EVENT_TYPES.get(type), buffer.get(offset + FOLDER) == 1, docId,
+                username);
+    }
+
+    /**
+     * Drop the segments whose records are all older than the given time, except the last one
+     */
+    public synchronized void truncate(long before) {
+        for (Map.Entry<Long, MappedByteBuffer> segment : segments.headMap(segments.lastKey()).entrySet()) {
+            long last = segment.getValue().getLong((SEGMENT_RECORDS - 1) * RECORD_SIZE + TIMESTAMP);
+            if (last >= before) {
+                break;
+            }
+            segments.remove(segment.getKey());
+            try {
+                Files.deleteIfExists(getSegmentPath(segment.getKey()));
+            } catch (IOException e) {
+                log.warn("Cannot delete event journal segment " + segment.getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * Write the pending records to the disk
+     */
+    public void flush() {
+        for (MappedByteBuffer segment : segments.values()) {
+            segment.force();
+        }
+    }
+
+    protected MappedByteBuffer map(long index) throws IOException {
+        // The mapping remains valid once the channel is closed
+        try (FileChannel channel = FileChannel.open(getSegmentPath(index), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) SEGMENT_RECORDS * RECORD_SIZE);
+        }
+    }
+
+    /**
+     * The records being written in order, the complete ones are found by a binary search
+     */
+    protected long recoverHead(long index) {
+        MappedByteBuffer segment = segments.get(index);
+        int low = 0;
+        int high = SEGMENT_RECORDS;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (segment.getLong(middle * RECORD_SIZE + TIMESTAMP) != 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return index * SEGMENT_RECORDS + low;
+    }
+
+    protected Path getSegmentPath(long index) {
+        return root.resolve(String.format("%019d", index) + SEGMENT_SUFFIX);
+    }
+
+    protected static void putString(ByteBuffer buffer, int offset, byte[] bytes) {
+        buffer.putShort(offset, (short) bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            buffer.put(offset + 2 + i, bytes[i]);
+        }
+    }
+
+    /**
+     * @return the string at an offset, null if its length is not within the bytes reserved for it
+     */
+    protected static String getString(ByteBuffer buffer, int offset, int maxBytes) {
+        int length = buffer.getShort(offset);
+        if (length < 0 || length > maxBytes) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.position(offset + 2);
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the bytes of the string, cut on a character to fit
+     */
+    protected static byte[] truncate(String value, int maxBytes) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        while (bytes.length > maxBytes) {
+            value = value.substring(0, value.length() - 1);
+            bytes = value.getBytes(StandardCharsets.UTF_8);
+        }
+        return bytes;
+    }
+
+    /**
+     * Immutable record of the journal.
+     */
+    public static class Entry {
+
+        protected final long position;
+
+        protected final long timestamp;
+
+        protected final String eventType;
+
+        protected final boolean folder;
+
+        protected final String docId;
+
+        protected final String username;
+
+        public Entry(long position, long timestamp, String eventType, boolean folder, String docId,
+                String username) {
+            this.position = position;
+            this.timestamp = timestamp;
+            this.eventType = eventType;
+            this.folder = folder;
+            this.docId = docId;
+            this.username = username;
+        }
+
+        public long getPosition() {
+            return position;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getEventType() {
+            return eventType;
+        }
+
+        public boolean isFolder() {
+            return folder;
+        }
+
+        public String getDocId() {
+            return docId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.service;
+
+import org.nuxeo.box.api.marshalling.dao.BoxJob;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentRef;
+import org.nuxeo.ecm.core.api.IdRef;
+import org.nuxeo.ecm.core.api.IterableQueryResult;
+import org.nuxeo.ecm.core.api.security.ACL;
+import org.nuxeo.ecm.core.api.security.ACP;
+import org.nuxeo.ecm.core.query.sql.NXQL;
+import org.nuxeo.ecm.core.work.AbstractWork;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copy the children of a folder tree into a new folder by batches, each in its own transaction, so that no transaction
+ * lasts with the size of the tree.
+ * <p>
+ * The folders are copied level by level, each one created empty before its own children are copied. The files are
+ * copied by the repository, their blobs being shared by digest instead of being written again. The copy runs as the user
+ * who asked for it, so the permissions are the same as for a synchronous copy.
+ * <p>
+ * The children of a folder are copied by increasing id, and each batch records the id of its last child on the copy of
+ * the folder in the same transaction. Each folder copy also records the id of its source. A suspended or failed work
+ * thus continues with what remains when run again, whatever the names of the children.
+ *
+ * @since 9.1
+ */
+public class BoxFolderCopyWork extends AbstractWork {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String CATEGORY = "boxFolderCopy";
+
+    public static final String FACET = "BoxCopy";
+
+    public static final String SOURCE = "bxcp:source";
+
+    public static final String CURSOR = "bxcp:cursor";
+
+    protected static final String TITLE = "Box Folder Copy";
+
+    protected static final int BATCH_SIZE = 500;
+
+    protected final String sourceId;
+
+    protected long done;
+
+    /**
+     * @param targetId the id of the folder receiving the copy of the children, already created
+     */
+    public BoxFolderCopyWork(String repositoryName, String sourceId, String targetId, String username) {
+        super(getWorkId(repositoryName, targetId));
+        setDocument(repositoryName, targetId);
+        setOriginatingUsername(username);
+        this.sourceId = sourceId;
+    }
+
+    public static String getWorkId(String repositoryName, String targetId) {
+        return repositoryName + ":" + targetId + ":boxFolderCopy";
+    }
+
+    /**
+     * Create an empty copy of a folder, with its facets, properties and local ACLs, its children being copied apart
+     *
+     * @param name the name and title of the copy, or null to keep the name and title of the folder
+     */
+    public static DocumentModel createFolderCopy(CoreSession session, DocumentModel folder, String parentPath,
+            String name) {
+        DocumentModel copy = session.createDocumentModel(parentPath, name != null ? name : folder.getName(),
+                folder.getType());
+        for (String facet : folder.getFacets()) {
+            // The aggregates of the copy are counted as its children are copied, its copy state is its own
+            if (!BoxAggregates.FACET.equals(facet) && !FACET.equals(facet)) {
+                copy.addFacet(facet);
+            }
+        }
+        for (String schema : copy.getSchemas()) {
+            if (folder.hasSchema(schema)) {
+                copy.setProperties(schema, folder.getProperties(schema));
+            }
+        }
+        if (name != null) {
+            copy.setPropertyValue("dc:title", name);
+        }
+        copy.addFacet(FACET);
+        copy.setPropertyValue(SOURCE, folder.getId());
+        copy = session.createDocument(copy);
+        ACP acp = session.getACP(folder.getRef());
+        acp.removeACL(ACL.INHERITED_ACL);
+        if (acp.getACLs().length > 0) {
+            session.setACP(copy.getRef(), acp, true);
+        }
+        return copy;
+    }
+
+    @Override
+    public String getCategory() {
+        return CATEGORY;
+    }
+
+    @Override
+    public String getTitle() {
+        return TITLE;
+    }
+
+    @Override
+    public void work() {
+        setStatus("Copying");
+        openUserSession();
+        // From the aggregates, only a hint of the progress
+        long total = BoxAggregates.getDescendantCount(session.getDocument(new IdRef(sourceId)));
+        Deque<String[]> folders = new ArrayDeque<>();
+        folders.add(new String[] { sourceId, docId });
+        while (!folders.isEmpty()) {
+            String[] folder = folders.poll();
+            copyChildren(folder[0], session.getDocument(new IdRef(folder[1])), folders, total);
+        }
+        setStatus("Done");
+    }
+
+    @Override
+    public void cleanUp(boolean ok, Exception e) {
+        super.cleanUp(ok, e);
+        if (!isSuspended()) {
+            // Record how the job ended, a suspended one is queued again
+            BoxService boxService = Framework.getService(BoxService.class);
+            if (boxService != null) {
+                boxService.setJobStatus(getId(), ok ? BoxJob.STATUS_DONE : BoxJob.STATUS_FAILED);
+            }
+        }
+    }
+
+    /**
+     * Copy the children of a folder which are not copied yet, queuing the copies of the sub-folders
+     */
+    protected void copyChildren(String folderId, DocumentModel target, Deque<String[]> folders, long total) {
+        // The sub-folders copied by a previous run may not have all their children
+        for (Map.Entry<String, String> copied : getFolderCopyIds(target.getId()).entrySet()) {
+            folders.add(new String[] { copied.getKey(), copied.getValue() });
+        }
+        String cursor = (String) target.getPropertyValue(CURSOR);
+        List<String> batch;
+        while (!(batch = getChildIds(folderId, cursor)).isEmpty()) {
+            DocumentRef[] refs = new DocumentRef[batch.size()];
+            for (int i = 0; i < refs.length; i++) {
+                refs[i] = new IdRef(batch.get(i));
+            }
+            List<DocumentRef> files = new ArrayList<>(refs.length);
+            for (DocumentModel child : session.getDocuments(refs)) {
+                if (child.isFolder()) {
+                    DocumentModel copy = createFolderCopy(session, child, target.getPathAsString(), null);
+                    folders.add(new String[] { child.getId(), copy.getId() });
+                } else {
+                    files.add(child.getRef());
+                }
+            }
+            if (!files.isEmpty()) {
+                session.copy(files, target.getRef());
+            }
+            // Committed with the copies of the batch
+            cursor = batch.get(batch.size() - 1);
+            target.setPropertyValue(CURSOR, cursor);
+            target.putContextData(BoxAggregates.UPDATING, Boolean.TRUE);
+            target.putContextData(BoxAggregates.DISABLE_DUBLINCORE_LISTENER, Boolean.TRUE);
+            target = session.saveDocument(target);
+            session.save();
+            TransactionHelper.commitOrRollbackTransaction();
+            TransactionHelper.startTransaction();
+            done += refs.length;
+            setProgress(new Progress(done, Math.max(total, done)));
+        }
+    }
+
+    /**
+     * @return the ids of the next children of a folder after the given one, by increasing id
+     */
+    protected List<String> getChildIds(String folderId, String after) {
+        List<String> ids = new ArrayList<>();
+        String query = "SELECT " + NXQL.ECM_UUID + " FROM Document WHERE " + NXQL.ECM_PARENTID + " = "
+                + NXQL.escapeString(folderId) + " AND " + NXQL.ECM_ISVERSION + " = 0"
+                + (after != null ? " AND " + NXQL.ECM_UUID + " > " + NXQL.escapeString(after) : "") + " ORDER BY "
+                + NXQL.ECM_UUID + " LIMIT " + BATCH_SIZE;
+        IterableQueryResult rows = session.queryAndFetch(query, NXQL.NXQL);
+        try {
+            for (Map<String, Serializable> row : rows) {
+                ids.add((String) row.get(NXQL.ECM_UUID));
+            }
+        } finally {
+            rows.close();
+        }
+        return ids;
+    }
+
+    /**
+     * @return the ids of the folder copies already in a folder, by the id of their source
+     */
+    protected Map<String, String> getFolderCopyIds(String folderId) {
+        Map<String, String> ids = new HashMap<>();
+        String query = "SELECT " + NXQL.ECM_UUID + ", " + SOURCE + " FROM Document WHERE " + NXQL.ECM_PARENTID
+                + " = " + NXQL.escapeString(folderId) + " AND " + NXQL.ECM_MIXINTYPE + " = "
+                + NXQL.escapeString(FACET) + " AND " + NXQL.ECM_ISVERSION + " = 0";
+        IterableQueryResult rows = session.queryAndFetch(query, NXQL.NXQL);
+        try {
+            for (Map<String, Serializable> row : rows) {
+                ids.put((String) row.get(SOURCE), (String) row.get(NXQL.ECM_UUID));
+            }
+        } finally {
+            rows.close();
+        }
+        return ids;
+    }
+}
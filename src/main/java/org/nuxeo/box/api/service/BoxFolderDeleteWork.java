@@ -0,0 +1,182 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.service;
+
+import org.nuxeo.box.api.marshalling.dao.BoxJob;
+import org.nuxeo.ecm.core.api.DocumentRef;
+import org.nuxeo.ecm.core.api.IdRef;
+import org.nuxeo.ecm.core.api.IterableQueryResult;
+import org.nuxeo.ecm.core.query.sql.NXQL;
+import org.nuxeo.ecm.core.schema.FacetNames;
+import org.nuxeo.ecm.core.work.AbstractWork;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remove a folder and all its descendants by batches, each in its own transaction, so that no transaction lasts with
+ * the size of the tree.
+ * <p>
+ * The documents which are not folders are removed first, then the folders from the deepest ones, each being empty when
+ * removed, and the folder itself last. The progress counts the removed documents. As the state is the tree itself, a
+ * suspended or failed work continues with what remains when run again.
+ *
+ * @since 9.1
+ */
+public class BoxFolderDeleteWork extends AbstractWork {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String CATEGORY = "boxFolderDelete";
+
+    protected static final String TITLE = "Box Folder Delete";
+
+    protected static final int BATCH_SIZE = 500;
+
+    protected long done;
+
+    public BoxFolderDeleteWork(String repositoryName, String folderId) {
+        super(getWorkId(repositoryName, folderId));
+        setDocument(repositoryName, folderId);
+    }
+
+    public static String getWorkId(String repositoryName, String folderId) {
+        return repositoryName + ":" + folderId + ":boxFolderDelete";
+    }
+
+    @Override
+    public String getCategory() {
+        return CATEGORY;
+    }
+
+    @Override
+    public String getTitle() {
+        return TITLE;
+    }
+
+    @Override
+    public void work() {
+        setStatus("Deleting");
+        openSystemSession();
+        DocumentRef folderRef = new IdRef(docId);
+        if (!session.exists(folderRef)) {
+            setStatus("Done");
+            return;
+        }
+        // From the aggregates, only a hint of the progress
+        long total = BoxAggregates.getDescendantCount(session.getDocument(folderRef)) + 1;
+        String leaves = "SELECT " + NXQL.ECM_UUID + " FROM Document WHERE " + NXQL.ECM_ANCESTORID + " = "
+                + NXQL.escapeString(docId) + " AND " + NXQL.ECM_ISVERSION + " = 0 AND " + NXQL.ECM_MIXINTYPE + " <> "
+                + NXQL.escapeString(FacetNames.FOLDERISH);
+        List<String> ids;
+        while (!(ids = fetchIds(leaves, BATCH_SIZE)).isEmpty()) {
+            if (isSuspending()) {
+                suspended();
+                return;
+            }
+            remove(ids, total);
+        }
+        List<String> folders = getFoldersDeepestFirst();
+        for (int from = 0; from < folders.size(); from += BATCH_SIZE) {
+            if (isSuspending()) {
+                suspended();
+                return;
+            }
+            remove(folders.subList(from, Math.min(from + BATCH_SIZE, folders.size())), total);
+        }
+        List<String> folder = new ArrayList<>();
+        folder.add(docId);
+        remove(folder, total);
+        setStatus("Done");
+    }
+
+    @Override
+    public void cleanUp(boolean ok, Exception e) {
+        super.cleanUp(ok, e);
+        if (!isSuspended()) {
+            // Record how the job ended, a suspended one is queued again
+            BoxService boxService = Framework.getService(BoxService.class);
+            if (boxService != null) {
+                boxService.setJobStatus(getId(), ok ? BoxJob.STATUS_DONE : BoxJob.STATUS_FAILED);
+            }
+        }
+    }
+
+    protected void remove(List<String> ids, long total) {
+        DocumentRef[] refs = new DocumentRef[ids.size()];
+        for (int i = 0; i < refs.length; i++) {
+            refs[i] = new IdRef(ids.get(i));
+        }
+        session.removeDocuments(refs);
+        session.save();
+        TransactionHelper.commitOrRollbackTransaction();
+        TransactionHelper.startTransaction();
+        done += refs.length;
+        setProgress(new Progress(done, Math.max(total, done)));
+    }
+
+    /**
+     * @return the folders of the tree, the folder itself excluded, the deepest first
+     */
+    protected List<String> getFoldersDeepestFirst() {
+        final Map<String, String> parents = new HashMap<>();
+        String query = "SELECT " + NXQL.ECM_UUID + ", " + NXQL.ECM_PARENTID + " FROM Document WHERE "
+                + NXQL.ECM_ANCESTORID + " = " + NXQL.escapeString(docId) + " AND " + NXQL.ECM_ISVERSION + " = 0";
+        IterableQueryResult rows = session.queryAndFetch(query, NXQL.NXQL);
+        try {
+            for (Map<String, Serializable> row : rows) {
+                parents.put((String) row.get(NXQL.ECM_UUID), (String) row.get(NXQL.ECM_PARENTID));
+            }
+        } finally {
+            rows.close();
+        }
+        final Map<String, Integer> depths = new HashMap<>();
+        for (String id : parents.keySet()) {
+            int depth = 0;
+            for (String parentId = parents.get(id); parentId != null; parentId = parents.get(parentId)) {
+                depth++;
+            }
+            depths.put(id, depth);
+        }
+        List<String> folders = new ArrayList<>(parents.keySet());
+        folders.sort((a, b) -> Integer.compare(depths.get(b), depths.get(a)));
+        return folders;
+    }
+
+    protected List<String> fetchIds(String query, int limit) {
+        List<String> ids = new ArrayList<>(limit);
+        IterableQueryResult rows = session.queryAndFetch(query + " LIMIT " + limit, NXQL.NXQL);
+        try {
+            for (Map<String, Serializable> row : rows) {
+                ids.add((String) row.get(NXQL.ECM_UUID));
+                if (ids.size() == limit) {
+                    break;
+                }
+            }
+        } finally {
+            rows.close();
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.service;
+
+import org.nuxeo.box.api.marshalling.dao.BoxCollection;
+import org.nuxeo.box.api.marshalling.dao.BoxTypedObject;
+import org.nuxeo.box.api.marshalling.exceptions.BoxRestException;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentModelList;
+import org.nuxeo.ecm.core.api.IterableQueryResult;
+import org.nuxeo.ecm.core.query.sql.NXQL;
+import org.nuxeo.runtime.api.Framework;
+
+import javax.ws.rs.core.Response;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Listing of box mini items built straight from the rows of an NXQL projection: only the needed columns are fetched,
+ * and the documents are never loaded.
+ * <p>
+ * Pages are either fetched by offset, or after a marker: the items are then ordered by name and id, and the marker is
+ * the key of the last item of the previous page, so any page costs the same as the first one.
+ *
+ * @since 9.1
+ */
+public class BoxItemQuery {
+
+    public static final String KEYSET_ORDER = NXQL.ECM_NAME + ", " + NXQL.ECM_UUID;
+
+    protected static final char MARKER_DELIM = '/';
+
+    protected final String whereClause;
+
+    /**
+     * @param whereClause the NXQL condition of the listed documents, values already escaped
+     */
+    public BoxItemQuery(String whereClause) {
+        this.whereClause = whereClause;
+    }
+
+    /**
+     * @return the query listing the children of the given folder
+     */
+    public static BoxItemQuery children(String parentId) {
+        return new BoxItemQuery(NXQL.ECM_PARENTID + " = " + NXQL.escapeString(parentId));
+    }
+
+    public String getQuery() {
+        return "SELECT " + BoxProjection.SELECT_CLAUSE + " FROM Document WHERE " + whereClause;
+    }
+
+    /**
+     * @return the query of a page, bounded in the database so that only the rows of the page are produced
+     */
+    public String getQuery(long limit, long offset) {
+        return getQuery() + " LIMIT " + limit + " OFFSET " + offset;
+    }
+
+    /**
+     * @param marker the marker of the previous page, empty for the first one
+     * @return the query of the items after the marker, in keyset order
+     */
+    public String getKeysetQuery(String select, String marker) {
+        StringBuilder query = new StringBuilder("SELECT ").append(select).append(" FROM Document WHERE (").append(
+                whereClause).append(")");
+        if (marker != null && !marker.isEmpty()) {
+            String[] key = decodeMarker(marker);
+            String name = NXQL.escapeString(key[0]);
+            String id = NXQL.escapeString(key[1]);
+            query.append(" AND (").append(NXQL.ECM_NAME).append(" > ").append(name);
+            query.append(" OR (").append(NXQL.ECM_NAME).append(" = ").append(name);
+            query.append(" AND ").append(NXQL.ECM_UUID).append(" > ").append(id).append("))");
+        }
+        return query.append(" ORDER BY ").append(KEYSET_ORDER).toString();
+    }
+
+    /**
+     * @return the page of mini items, with the fields requested by the projection
+     */
+    public List<BoxTypedObject> fetch(CoreSession session, BoxProjection projection, long limit, long offset) {
+        IterableQueryResult rows = session.queryAndFetch(getQuery(limit, offset), NXQL.NXQL);
+        try {
+            return toEntries(rows, projection, limit);
+        } finally {
+            rows.close();
+        }
+    }
+
+    protected List<BoxTypedObject> toEntries(IterableQueryResult rows, BoxProjection projection, long limit) {
+        final List<BoxTypedObject> entries = new ArrayList<>();
+        for (Iterator<Map<String, Serializable>> it = rows.iterator(); it.hasNext() && entries.size() < limit;) {
+            entries.add(projection.fromRow(it.next()));
+        }
+        return entries;
+    }
+
+    /**
+     * @return the page of mini items after the marker, with the marker of the next page if any
+     */
+    public BoxCollection fetchAfter(CoreSession session, BoxProjection projection, long limit, String marker) {
+        checkMarkerLimit(limit);
+        final List<BoxTypedObject> entries = new ArrayList<>();
+        String nextMarker = null;
+        // One more row than the page tells if there is a next one
+        IterableQueryResult rows = session.queryAndFetch(getKeysetQuery(BoxProjection.SELECT_CLAUSE, marker)
+                + " LIMIT " + (limit + 1), NXQL.NXQL);
+        try {
+            Map<String, Serializable> last = null;
+            for (Map<String, Serializable> row : rows) {
+                if (entries.size() == limit) {
+                    // One more row than the page: there is a next page
+                    nextMarker = encodeMarker((String) last.get(NXQL.ECM_NAME), (String) last.get(NXQL.ECM_UUID));
+                    break;
+                }
+                entries.add(projection.fromRow(row));
+                last = row;
+            }
+        } finally {
+            rows.close();
+        }
+        return newCollection(entries, nextMarker);
+    }
+
+    /**
+     * @return the page of documents after the marker, with the marker of the next page if any
+     */
+    public BoxCollection fetchDocumentsAfter(CoreSession session, BoxProjection projection, long limit,
+            String marker) {
+        checkMarkerLimit(limit);
+        DocumentModelList docs = session.query(getKeysetQuery("*", marker), null, limit + 1, 0, false);
+        String nextMarker = null;
+        List<DocumentModel> page = docs;
+        if (docs.size() > limit) {
+            // One more document than the page: there is a next page
+            page = docs.subList(0, (int) limit);
+            nextMarker = encodeMarker(page.get(page.size() - 1).getName(), page.get(page.size() - 1).getId());
+        }
+        // Render the whole page at once
+        return newCollection(Framework.getService(BoxService.class).getBoxItems(session, page, projection),
+                nextMarker);
+    }
+
+    /**
+     * An empty page would have the same marker as the previous one, the client would never reach the end
+     */
+    protected static void checkMarkerLimit(long limit) {
+        if (limit <= 0) {
+            throw new BoxRestException("Invalid limit " + limit + " with a marker",
+                    Response.Status.BAD_REQUEST.getStatusCode());
+        }
+    }
+
+    protected BoxCollection newCollection(List<BoxTypedObject> entries, String nextMarker) {
+        final Map<String, Object> collectionProperties = new HashMap<>();
+        collectionProperties.put(BoxCollection.FIELD_ENTRIES, entries);
+        collectionProperties.put(BoxCollection.FIELD_NEXT_MARKER, nextMarker);
+        return new BoxCollection(Collections.unmodifiableMap(collectionProperties));
+    }
+
+    public static String encodeMarker(String name, String id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                (id + MARKER_DELIM + name).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the name and the id of the last item of the previous page
+     */
+    public static String[] decodeMarker(String marker) {
+        String key;
+        try {
+            key = new String(Base64.getUrlDecoder().decode(marker), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new BoxRestException("Invalid marker " + marker, e, Response.Status.BAD_REQUEST.getStatusCode());
+        }
+        int index = key.indexOf(MARKER_DELIM);
+        if (index <= 0) {
+            throw new BoxRestException("Invalid marker " + marker, Response.Status.BAD_REQUEST.getStatusCode());
+        }
+        return new String[] { key.substring(index + 1), key.substring(0, index) };
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.service;
+
+import com.codahale.metrics.Timer;
+import org.nuxeo.box.api.marshalling.exceptions.BoxJSONException;
+import org.nuxeo.box.api.marshalling.interfaces.IBoxJSONParser;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Write a box object as JSON directly into the response stream, optionally gzipped.
+ *
+ * @since 9.1
+ */
+public class BoxJSONStreamingOutput implements StreamingOutput {
+
+    protected static final int GZIP_BUFFER_SIZE = 8192;
+
+    protected final IBoxJSONParser boxJSONParser;
+
+    protected final Object boxObject;
+
+    protected final boolean gzip;
+
+    public BoxJSONStreamingOutput(IBoxJSONParser boxJSONParser, Object boxObject, boolean gzip) {
+        this.boxJSONParser = boxJSONParser;
+        this.boxObject = boxObject;
+        this.gzip = gzip;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException, WebApplicationException {
+        try (Timer.Context timer = BoxMetrics.time(BoxMetrics.PHASE_SERIALIZATION)) {
+            if (!gzip) {
+                writeBoxObject(output);
+                output.flush();
+                return;
+            }
+            // Not closed, as the response stream belongs to the container: the deflater is released by hand
+            GzipOutputStream out = new GzipOutputStream(output);
+            try {
+                writeBoxObject(out);
+                out.finish();
+                out.flush();
+            } finally {
+                out.end();
+            }
+        }
+    }
+
+    protected void writeBoxObject(OutputStream out) {
+        try {
+            boxJSONParser.writeBoxObject(boxObject, out);
+        } catch (BoxJSONException e) {
+            throw new WebApplicationException(e, Response.Status.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Gzip stream whose deflater can be released without closing the underlying stream.
+     */
+    protected static class GzipOutputStream extends GZIPOutputStream {
+
+        protected GzipOutputStream(OutputStream out) throws IOException {
+            super(out, GZIP_BUFFER_SIZE);
+        }
+
+        protected void end() {
+            def.end();
+        }
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.service;
+
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+import org.nuxeo.ecm.webengine.WebEngine;
+import org.nuxeo.ecm.webengine.model.WebContext;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The metrics of the Box API, in the registry of the platform: a timer and a meter per status code for each endpoint,
+ * and a timer for each phase of the handling of the requests of an endpoint, so a slow endpoint tells which phase is
+ * slow.
+ * <p>
+ * The endpoints are the templates of the called paths, ids replaced by <code>{id}</code> and any segment which is not
+ * the name of a resource by <code>{other}</code>, so there is a bounded number of them whatever the paths called.
+ *
+ * @since 9.1
+ */
+public final class BoxMetrics {
+
+    public static final String PREFIX = "nuxeo.box.api";
+
+    public static final String JMX_DOMAIN = "org.nuxeo.box.api";
+
+    public static final String PHASE_FETCH = "fetch";
+
+    public static final String PHASE_PATH_COLLECTION = "path_collection";
+
+    public static final String PHASE_PRINCIPALS = "principals";
+
+    public static final String PHASE_TAGS = "tags";
+
+    public static final String PHASE_CHILDREN = "children";
+
+    public static final String PHASE_ACL = "acl";
+
+    public static final String PHASE_SERIALIZATION = "serialization";
+
+    /**
+     * The phases outside of any request, done by the works and listeners
+     */
+    public static final String NO_ENDPOINT = "none";
+
+    protected static final String API_VERSION = "/2.0";
+
+    /**
+     * The names of the resources, as in the paths of the JAX-RS objects
+     */
+    protected static final Set<String> RESOURCES = new HashSet<>(Arrays.asList("repo", "collaborations", "comments",
+            "events", "files", "folders", "jobs", "search", "content", "upload_sessions", "copy", "items", "commit",
+            "parts"));
+
+    protected static final Set<String> METHODS = new HashSet<>(Arrays.asList("GET", "HEAD", "POST", "PUT", "DELETE",
+            "OPTIONS"));
+
+    /**
+     * The depth of the deepest endpoints, like <code>/repo/{repo}/files/{id}/content</code>, the segments below being
+     * collapsed in a single <code>{other}</code>
+     */
+    protected static final int MAX_SEGMENTS = 5;
+
+    protected static final String OTHER = "{other}";
+
+    protected static final String ENDPOINT_ATTRIBUTE = BoxMetrics.class.getName() + ".endpoint";
+
+    protected static final MetricRegistry registry = SharedMetricRegistries.getOrCreate(
+            MetricsService.class.getName());
+
+    private BoxMetrics() {
+        // utility class
+    }
+
+    public static MetricRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * @return a started reporter publishing the metrics of the Box API over JMX
+     */
+    public static JmxReporter startJmxReporter() {
+        JmxReporter reporter = JmxReporter.forRegistry(registry).inDomain(JMX_DOMAIN).filter(
+                (name, metric) -> name.startsWith(PREFIX)).convertDurationsTo(TimeUnit.MILLISECONDS).build();
+        reporter.start();
+        return reporter;
+    }
+
+    /**
+     * Record a request of an endpoint
+     */
+    public static void request(String endpoint, int status, long durationNanos) {
+        registry.timer(MetricRegistry.name(PREFIX, "requests", endpoint)).update(durationNanos,
+                TimeUnit.NANOSECONDS);
+        registry.meter(MetricRegistry.name(PREFIX, "responses", endpoint, String.valueOf(status))).mark();
+    }
+
+    /**
+     * Start timing a phase of the current request, stopped by closing the returned context
+     */
+    public static Timer.Context time(String phase) {
+        return getPhaseTimer(getEndpoint(), phase).time();
+    }
+
+    public static Timer getPhaseTimer(String endpoint, String phase) {
+        return registry.timer(MetricRegistry.name(PREFIX, "phases", endpoint, phase));
+    }
+
+    /**
+     * @return the endpoint of the current request, computed once per request
+     */
+    public static String getEndpoint() {
+        WebContext ctx = WebEngine.getActiveContext();
+        HttpServletRequest request = ctx != null ? ctx.getRequest() : null;
+        if (request == null) {
+            return NO_ENDPOINT;
+        }
+        String endpoint = (String) request.getAttribute(ENDPOINT_ATTRIBUTE);
+        if (endpoint == null) {
+            endpoint = getEndpoint(request.getMethod(), request.getRequestURI());
+            request.setAttribute(ENDPOINT_ATTRIBUTE, endpoint);
+        }
+        return endpoint;
+    }
+
+    /**
+     * @param path the called path, only the part after the API version being kept
+     * @return the method and the template of the path, like <code>GET /folders/{id}/items</code>
+     */
+    public static String getEndpoint(String method, String path) {
+        StringBuilder endpoint = new StringBuilder(METHODS.contains(method) ? method : "OTHER").append(' ');
+        int version = path != null ? path.indexOf(API_VERSION) : -1;
+        String relativePath = version >= 0 ? path.substring(version + API_VERSION.length()) : path;
+        boolean repository = false;
+        int segments = 0;
+        if (relativePath != null) {
+            for (String segment : relativePath.split("/")) {
+                if (segment.isEmpty()) {
+                    continue;
+                }
+                endpoint.append('/');
+                if (++segments > MAX_SEGMENTS) {
+                    endpoint.append(OTHER);
+                    break;
+                }
+                if (repository) {
+                    endpoint.append("{repo}");
+                } else if (RESOURCES.contains(segment)) {
+                    endpoint.append(segment);
+                } else if (isId(segment)) {
+                    endpoint.append("{id}");
+                } else {
+                    endpoint.append(OTHER);
+                }
+                repository = "repo".equals(segment);
+            }
+        }
+        if (endpoint.charAt(endpoint.length() - 1) == ' ') {
+            endpoint.append('/');
+        }
+        return endpoint.toString();
+    }
+
+    /**
+     * The names of the resources have no digits, the ids always have
+     */
+    protected static boolean isId(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            if (Character.isDigit(segment.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
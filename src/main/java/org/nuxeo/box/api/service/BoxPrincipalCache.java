@@ -0,0 +1,177 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.nuxeo.box.api.marshalling.dao.BoxGroup;
+import org.nuxeo.box.api.marshalling.dao.BoxUser;
+import org.nuxeo.ecm.core.api.NuxeoGroup;
+import org.nuxeo.ecm.core.api.NuxeoPrincipal;
+import org.nuxeo.ecm.platform.usermanager.UserManager;
+import org.nuxeo.ecm.webengine.WebEngine;
+import org.nuxeo.ecm.webengine.model.WebContext;
+import org.nuxeo.runtime.api.Framework;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of the box users and groups mini representations, keyed by principal name.
+ * <p>
+ * Lookups are first memoized for the current request, then kept in a cache bounded in size and time shared by all the
+ * requests. Entries are invalidated when the related user or group is changed in the directory.
+ *
+ * @since 9.1
+ */
+public class BoxPrincipalCache {
+
+    protected static final String REQUEST_MEMO_PROPERTY = BoxPrincipalCache.class.getName();
+
+    protected static final String USER_PREFIX = "user:";
+
+    protected static final String COLLABORATOR_PREFIX = "collaborator:";
+
+    protected final BoxService boxService;
+
+    protected final Cache<String, BoxPrincipal> principals;
+
+    public BoxPrincipalCache(BoxService boxService, long maxSize, long ttlSeconds) {
+        this.boxService = boxService;
+        principals = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(ttlSeconds,
+                TimeUnit.SECONDS).recordStats().build();
+    }
+
+    /**
+     * @return the box user of the given user name, the system user if unknown
+     */
+    public BoxUser getBoxUser(String username) {
+        return getBoxPrincipal(USER_PREFIX, username).toBoxUser();
+    }
+
+    /**
+     * @return the box user, or the box group if there is no user with this name
+     */
+    public BoxUser getBoxCollaborator(String name) {
+        return getBoxPrincipal(COLLABORATOR_PREFIX, name).toBoxUser();
+    }
+
+    /**
+     * Resolve the box users of several user names, each distinct name being looked up once
+     */
+    public void prefetchUsers(Collection<String> usernames) {
+        for (String username : new HashSet<>(usernames)) {
+            getBoxPrincipal(USER_PREFIX, username);
+        }
+    }
+
+    protected BoxPrincipal getBoxPrincipal(String prefix, String name) {
+        String key = prefix + name;
+        Map<String, BoxPrincipal> memo = getRequestMemo();
+        BoxPrincipal principal = memo != null ? memo.get(key) : null;
+        if (principal == null) {
+            principal = principals.getIfPresent(key);
+            if (principal == null) {
+                principal = USER_PREFIX.equals(prefix) ? resolveUser(name) : resolveCollaborator(name);
+                principals.put(key, principal);
+            }
+            if (memo != null) {
+                memo.put(key, principal);
+            }
+        }
+        return principal;
+    }
+
+    protected BoxPrincipal resolveUser(String username) {
+        UserManager userManager = Framework.getLocalService(UserManager.class);
+        NuxeoPrincipal user = userManager.getPrincipal(username);
+        return new BoxPrincipal(false, boxService.fillUser(user));
+    }
+
+    protected BoxPrincipal resolveCollaborator(String name) {
+        UserManager userManager = Framework.getLocalService(UserManager.class);
+        NuxeoPrincipal user = userManager.getPrincipal(name);
+        if (user != null) {
+            return new BoxPrincipal(false, boxService.fillUser(user));
+        }
+        NuxeoGroup group = userManager.getGroup(name);
+        return new BoxPrincipal(true, boxService.fillGroup(group));
+    }
+
+    /**
+     * @return the lookups of the current request, null outside of a request
+     */
+    @SuppressWarnings("unchecked")
+    protected Map<String, BoxPrincipal> getRequestMemo() {
+        WebContext ctx = WebEngine.getActiveContext();
+        if (ctx == null) {
+            return null;
+        }
+        Map<String, BoxPrincipal> memo = (Map<String, BoxPrincipal>) ctx.getProperty(REQUEST_MEMO_PROPERTY);
+        if (memo == null) {
+            memo = new HashMap<>();
+            ctx.setProperty(REQUEST_MEMO_PROPERTY, memo);
+        }
+        return memo;
+    }
+
+    /**
+     * Drop the entries of a user or a group, or all of them if the name is null
+     */
+    public void invalidate(String name) {
+        if (name == null) {
+            principals.invalidateAll();
+        } else {
+            principals.invalidate(USER_PREFIX + name);
+            principals.invalidate(COLLABORATOR_PREFIX + name);
+        }
+    }
+
+    public CacheStats getStats() {
+        return principals.stats();
+    }
+
+    /**
+     * Immutable properties of a box user or group.
+     */
+    protected static class BoxPrincipal {
+
+        protected final boolean group;
+
+        protected final Map<String, Object> properties;
+
+        protected BoxPrincipal(boolean group, BoxUser boxUser) {
+            this.group = group;
+            Map<String, Object> boxUserProperties = new HashMap<>();
+            for (String field : boxUser.getKeySet()) {
+                boxUserProperties.put(field, boxUser.getValue(field));
+            }
+            properties = Collections.unmodifiableMap(boxUserProperties);
+        }
+
+        protected BoxUser toBoxUser() {
+            return group ? new BoxGroup(properties) : new BoxUser(properties);
+        }
+    }
+}
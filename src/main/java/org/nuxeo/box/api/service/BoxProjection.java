@@ -0,0 +1,187 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.service;
+
+import org.apache.commons.lang.StringUtils;
+import org.nuxeo.box.api.BoxConstants;
+import org.nuxeo.box.api.marshalling.dao.BoxFile;
+import org.nuxeo.box.api.marshalling.dao.BoxFolder;
+import org.nuxeo.box.api.marshalling.dao.BoxItem;
+import org.nuxeo.box.api.marshalling.dao.BoxTypedObject;
+import org.nuxeo.ecm.core.query.sql.NXQL;
+import org.nuxeo.ecm.core.schema.DocumentType;
+import org.nuxeo.ecm.core.schema.SchemaManager;
+import org.nuxeo.runtime.api.Framework;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The box fields requested by a call, as given by the <code>fields</code> parameter.
+ * <p>
+ * When only the fields of a mini item are requested, they can be computed from a row of an NXQL projection, so the
+ * documents don't have to be loaded at all.
+ *
+ * @since 9.1
+ */
+public class BoxProjection {
+
+    /**
+     * All the fields
+     */
+    public static final BoxProjection ALL = new BoxProjection(null);
+
+    /**
+     * The fields which can be computed from a row of {@link #SELECT_CLAUSE}
+     */
+    public static final Set<String> ROW_FIELDS = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(
+            BoxItem.FIELD_ID, BoxItem.FIELD_SEQUENCE_ID, BoxItem.FIELD_ETAG, BoxItem.FIELD_NAME, BoxFile.FIELD_SHA1)));
+
+    public static final String MAJOR_VERSION = "uid:major_version";
+
+    public static final String MINOR_VERSION = "uid:minor_version";
+
+    public static final String CONTENT_DIGEST = "file:content/digest";
+
+    public static final String CONTENT_SHA1 = BoxContentDigest.SHA1;
+
+    /**
+     * The columns of the mini items
+     */
+    public static final List<String> COLUMNS = Collections.unmodifiableList(Arrays.asList(NXQL.ECM_UUID,
+            NXQL.ECM_NAME, NXQL.ECM_PRIMARYTYPE, NXQL.ECM_ISCHECKEDIN, MAJOR_VERSION, MINOR_VERSION, CONTENT_DIGEST,
+            CONTENT_SHA1));
+
+    public static final String SELECT_CLAUSE = StringUtils.join(COLUMNS, ", ");
+
+    protected final Set<String> fields;
+
+    protected BoxProjection(Set<String> fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * @param fields the comma separated list of box fields, "*" or null for all of them
+     */
+    public static BoxProjection of(String fields) {
+        if (StringUtils.isBlank(fields) || BoxConstants.BOX_FIELDS.equals(fields.trim())) {
+            return ALL;
+        }
+        Set<String> requested = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            if (StringUtils.isNotBlank(field)) {
+                requested.add(field.trim());
+            }
+        }
+        return new BoxProjection(Collections.unmodifiableSet(requested));
+    }
+
+    public boolean isAll() {
+        return fields == null;
+    }
+
+    public boolean includes(String field) {
+        return fields == null || fields.contains(field);
+    }
+
+    /**
+     * @return the requested fields, null if all are requested
+     */
+    public Set<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * @return whether all the requested fields can be computed from a row
+     */
+    public boolean isRowProjection() {
+        return fields != null && ROW_FIELDS.containsAll(fields);
+    }
+
+    /**
+     * @return a new item with only the requested fields of the given one, or the item itself if all are requested
+     */
+    public BoxItem project(BoxItem boxItem) {
+        if (isAll()) {
+            return boxItem;
+        }
+        BoxItem projected = boxItem instanceof BoxFolder ? new BoxFolder() : new BoxFile();
+        for (String field : fields) {
+            if (boxItem.contains(field)) {
+                projected.put(field, boxItem.getValue(field));
+            }
+        }
+        return projected;
+    }
+
+    /**
+     * @return the mini item built from the row of a {@link #SELECT_CLAUSE} query
+     */
+    public BoxTypedObject fromRow(Map<String, Serializable> row) {
+        String id = (String) row.get(NXQL.ECM_UUID);
+        String name = (String) row.get(NXQL.ECM_NAME);
+        DocumentType documentType = Framework.getService(SchemaManager.class).getDocumentType(
+                (String) row.get(NXQL.ECM_PRIMARYTYPE));
+        // In case of root, sequence and etag are null and id = 0 according to the box documentation
+        boolean root = StringUtils.isEmpty(name);
+        final Map<String, Object> documentProperties = new HashMap<>();
+        documentProperties.put(BoxItem.FIELD_ID, root ? "0" : id);
+        documentProperties.put(BoxItem.FIELD_SEQUENCE_ID, root ? null : id);
+        documentProperties.put(BoxItem.FIELD_ETAG, root ? null : id + "_" + getVersionLabel(documentType, row));
+        documentProperties.put(BoxItem.FIELD_NAME, root ? "/" : name);
+        // SHA1, as stored when uploaded
+        if (row.get(CONTENT_SHA1) != null) {
+            documentProperties.put(BoxFile.FIELD_SHA1, row.get(CONTENT_SHA1));
+        }
+        // This different instantiation is related to the param type
+        // which is automatically added in json payload by Box marshaller
+        // following the box object type
+        BoxTypedObject boxChild = documentType != null && documentType.isFolder() ? new BoxFolder() : new BoxFile();
+        if (isAll()) {
+            boxChild.putAll(documentProperties);
+        } else {
+            for (String field : fields) {
+                boxChild.put(field, documentProperties.get(field));
+            }
+        }
+        return boxChild;
+    }
+
+    /**
+     * Same label as the one of the versioning service for a document model
+     */
+    protected String getVersionLabel(DocumentType documentType, Map<String, Serializable> row) {
+        if (documentType == null || !documentType.hasSchema("uid")) {
+            return "";
+        }
+        Serializable major = row.get(MAJOR_VERSION);
+        Serializable minor = row.get(MINOR_VERSION);
+        String label = (major instanceof Long ? major : 0L) + "." + (minor instanceof Long ? minor : 0L);
+        if (!Boolean.TRUE.equals(row.get(NXQL.ECM_ISCHECKEDIN)) && !"0.0".equals(label)) {
+            label += "+";
+        }
+        return label;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The long-polling clients of the realtime server, woken when a change touches the tree they watch.
+ * <p>
+ * A client first opens a channel on a folder, then polls it. A poll is parked without holding any thread until a change
+ * is made below the folder, or until it times out. The watched trees are keyed by path, so a change only wakes the
+ * clients of its ancestors, found by one lookup per level. The woken polls are answered by a few threads of the
+ * notifier, never by the thread committing the change.
+ *
+ * @since 9.1
+ */
+public class BoxRealTimeNotifier {
+
+    public static final String NEW_CHANGE = "new_change";
+
+    public static final String RECONNECT = "reconnect";
+
+    protected static final String ROOT_PATH = "/";
+
+    protected static final int WAKE_THREADS = 2;
+
+    /**
+     * The path watched by each channel
+     */
+    protected final Cache<String, String> channels;
+
+    /**
+     * The parked polls by watched path
+     */
+    protected final ConcurrentMap<String, Set<Waiter>> waiters = new ConcurrentHashMap<>();
+
+    /**
+     * Answers the woken polls
+     */
+    protected final ExecutorService wakers = Executors.newFixedThreadPool(WAKE_THREADS, new ThreadFactoryBuilder()
+            .setNameFormat("box-realtime-%d").setDaemon(true).build());
+
+    /**
+     * @param channelTtlSeconds how long an unused channel is kept
+     */
+    public BoxRealTimeNotifier(long channelTtlSeconds) {
+        channels = CacheBuilder.newBuilder().expireAfterAccess(channelTtlSeconds, TimeUnit.SECONDS).build();
+    }
+
+    /**
+     * @param path the path of the watched folder, the whole repository if null
+     * @return the id of a new channel
+     */
+    public String openChannel(String path) {
+        String channel = UUID.randomUUID().toString().replace("-", "");
+        channels.put(channel, path != null ? path : ROOT_PATH);
+        return channel;
+    }
+
+    /**
+     * @return the path watched by the channel, null if it does not exist or has expired
+     */
+    public String getWatchedPath(String channel) {
+        return channel != null ? channels.getIfPresent(channel) : null;
+    }
+
+    public void park(String path, Waiter waiter) {
+        waiters.compute(path, (key, set) -> {
+            Set<Waiter> parked = set != null ? set : ConcurrentHashMap.newKeySet();
+            parked.add(waiter);
+            return parked;
+        });
+    }
+
+    public void unpark(String path, Waiter waiter) {
+        waiters.computeIfPresent(path, (key, set) -> set.remove(waiter) && set.isEmpty() ? null : set);
+    }
+
+    /**
+     * Wake the polls watching an ancestor of the changed documents
+     *
+     * @param paths the paths of the changed documents
+     */
+    public void notify(Collection<String> paths) {
+        if (waiters.isEmpty()) {
+            return;
+        }
+        Set<String> watchedPaths = new LinkedHashSet<>();
+        for (String path : paths) {
+            watchedPaths.add(ROOT_PATH);
+            for (int slash = path.indexOf('/', 1); slash > 0; slash = path.indexOf('/', slash + 1)) {
+                watchedPaths.add(path.substring(0, slash));
+            }
+            watchedPaths.add(path);
+        }
+        List<Waiter> woken = new ArrayList<>();
+        for (String watchedPath : watchedPaths) {
+            Set<Waiter> parked = waiters.get(watchedPath);
+            if (parked == null) {
+                continue;
+            }
+            for (Waiter waiter : parked) {
+                unpark(watchedPath, waiter);
+                woken.add(waiter);
+            }
+        }
+        if (!woken.isEmpty()) {
+            wakers.execute(() -> woken.forEach(waiter -> waiter.wake(NEW_CHANGE)));
+        }
+    }
+
+    /**
+     * Stop answering the polls, the parked ones time out
+     */
+    public void shutdown() {
+        wakers.shutdownNow();
+    }
+
+    /**
+     * A parked poll, answered once.
+     */
+    public abstract static class Waiter {
+
+        protected final AtomicBoolean woken = new AtomicBoolean();
+
+        /**
+         * @return false if already answered
+         */
+        public boolean wake(String message) {
+            if (!woken.compareAndSet(false, true)) {
+                return false;
+            }
+            onWake(message);
+            return true;
+        }
+
+        protected abstract void onWake(String message);
+    }
+}
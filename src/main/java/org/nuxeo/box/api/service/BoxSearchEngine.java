@@ -0,0 +1,107 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.service;
+
+import org.apache.commons.lang.StringUtils;
+import org.nuxeo.box.api.marshalling.dao.BoxCollection;
+import org.nuxeo.box.api.marshalling.dao.BoxTypedObject;
+import org.nuxeo.box.api.marshalling.exceptions.BoxRestException;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModelList;
+import org.nuxeo.ecm.core.query.sql.NXQL;
+
+import javax.ws.rs.core.Response;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fulltext search of box items.
+ * <p>
+ * The searched term is escaped into the NXQL query, and the total count is the number of hits of the query, not the
+ * size of the page: it is bounded by default, as counting all the hits of a broad term is expensive. When only mini
+ * item fields are requested, the hits of the page are rendered from an NXQL projection without loading the
+ * documents, and counted by a query of their own.
+ *
+ * @since 9.1
+ */
+public class BoxSearchEngine {
+
+    /**
+     * The maximum number of hits counted, -1 for no limit
+     */
+    protected final long countLimit;
+
+    protected final BoxService boxService;
+
+    public BoxSearchEngine(BoxService boxService, long countLimit) {
+        this.boxService = boxService;
+        this.countLimit = countLimit;
+    }
+
+    /**
+     * @param marker the marker of the previous page, empty for the first page, null to page by offset
+     */
+    public BoxCollection search(CoreSession session, String term, long limit, long offset, BoxProjection projection,
+            String marker) {
+        BoxItemQuery itemQuery = new BoxItemQuery(getWhereClause(term));
+        if (marker != null) {
+            // Keyset pagination, ordered by name and id
+            return projection.isRowProjection() ? itemQuery.fetchAfter(session, projection, limit, marker)
+                    : itemQuery.fetchDocumentsAfter(session, projection, limit, marker);
+        }
+        List<BoxTypedObject> entries;
+        long totalCount;
+        if (projection.isRowProjection()) {
+            // Only mini item fields are requested: fetch the needed columns of the page, documents are not loaded
+            entries = itemQuery.fetch(session, projection, limit, offset);
+            // Counted apart, as for the documents
+            totalCount = getTotalCount(session.query(getDocumentQuery(itemQuery), null, 1, 0, countLimit));
+        } else {
+            DocumentModelList docs = session.query(getDocumentQuery(itemQuery), null, limit, offset, countLimit);
+            totalCount = getTotalCount(docs);
+            // Render the whole page at once, only the requested properties are computed
+            entries = boxService.getBoxItems(session, docs, projection);
+        }
+        final Map<String, Object> collectionProperties = new HashMap<>();
+        collectionProperties.put(BoxCollection.FIELD_ENTRIES, entries);
+        collectionProperties.put(BoxCollection.FIELD_TOTAL_COUNT, (int) Math.min(totalCount, Integer.MAX_VALUE));
+        return new BoxCollection(Collections.unmodifiableMap(collectionProperties));
+    }
+
+    protected String getDocumentQuery(BoxItemQuery itemQuery) {
+        return "SELECT * FROM Document WHERE " + itemQuery.whereClause;
+    }
+
+    /**
+     * @return the number of hits counted by the query, the count limit if there are more
+     */
+    protected long getTotalCount(DocumentModelList docs) {
+        return docs.totalSize() >= 0 ? docs.totalSize() : countLimit;
+    }
+
+    protected String getWhereClause(String term) {
+        if (StringUtils.isBlank(term)) {
+            throw new BoxRestException("The query parameter is mandatory",
+                    Response.Status.BAD_REQUEST.getStatusCode());
+        }
+        return NXQL.ECM_FULLTEXT + " = " + NXQL.escapeString(term);
+    }
+}
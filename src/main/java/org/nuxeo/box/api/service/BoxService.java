@@ -18,6 +18,7 @@
  */
 package org.nuxeo.box.api.service;
 
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.BiMap;
 import org.nuxeo.box.api.folder.adapter.BoxFolderAdapter;
 import org.nuxeo.box.api.marshalling.dao.BoxCollaboration;
@@ -26,10 +27,14 @@ import org.nuxeo.box.api.marshalling.dao.BoxComment;
 import org.nuxeo.box.api.marshalling.dao.BoxFile;
 import org.nuxeo.box.api.marshalling.dao.BoxFolder;
 import org.nuxeo.box.api.marshalling.dao.BoxGroup;
+import org.nuxeo.box.api.marshalling.dao.BoxJob;
 import org.nuxeo.box.api.marshalling.dao.BoxObject;
 import org.nuxeo.box.api.marshalling.dao.BoxTypedObject;
+import org.nuxeo.box.api.marshalling.dao.BoxUploadPartCollection;
+import org.nuxeo.box.api.marshalling.dao.BoxUploadSession;
 import org.nuxeo.box.api.marshalling.dao.BoxUser;
 import org.nuxeo.box.api.marshalling.exceptions.BoxJSONException;
+import org.nuxeo.box.api.marshalling.exceptions.BoxRestException;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentModelList;
@@ -37,7 +42,13 @@ import org.nuxeo.ecm.core.api.NuxeoGroup;
 import org.nuxeo.ecm.core.api.NuxeoPrincipal;
 import org.nuxeo.ecm.core.api.security.ACE;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import java.util.Date;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Box Service Utils
@@ -48,14 +59,74 @@ public interface BoxService {
 
     BiMap<String, String> getNxBoxRole();
 
-    BoxCollection searchBox(String term, CoreSession session, String limit, String offset);
+    /**
+     * @param fields the comma separated list of box fields to render, "*" or null for all of them
+     * @param marker the marker of the previous page, empty for the first page, null to page by offset
+     */
+    BoxCollection searchBox(String term, CoreSession session, String limit, String offset, String fields,
+            String marker);
 
     List<BoxTypedObject> getBoxDocumentCollection(DocumentModelList documentModels, String fields);
 
+    /**
+     * @return the box items of the documents with the requested fields, the ancestors, principals, tags and locks of
+     *         the whole batch being resolved at once
+     * @since 9.1
+     */
+    List<BoxTypedObject> getBoxItems(CoreSession session, List<DocumentModel> docs, BoxProjection projection);
+
     BoxCollaboration getBoxCollaboration(BoxFolderAdapter boxItem, ACE ace, String collaborationId);
 
     String toJSONString(BoxObject boxObject) throws BoxJSONException;
 
+    /**
+     * @return a response streaming the box object as JSON, gzipped if enabled and accepted by the request
+     * @since 9.1
+     */
+    ResponseBuilder toJSONResponse(BoxObject boxObject, HttpServletRequest request);
+
+    /**
+     * @return the entity tag of the box item, file or comment rendered for the document, computed without adapting it
+     * @since 9.1
+     */
+    EntityTag getEntityTag(DocumentModel doc);
+
+    /**
+     * @return the entity tag of the given projection of the box item rendered for the document
+     * @since 9.1
+     */
+    EntityTag getEntityTag(DocumentModel doc, BoxProjection projection);
+
+    /**
+     * @return the entity tag of the collaborations of the folder
+     * @since 9.1
+     */
+    EntityTag getCollaborationsEntityTag(DocumentModel folder);
+
+    /**
+     * @return the last modification date of the document, null for folders whose content also depends on children
+     * @since 9.1
+     */
+    Date getLastModified(DocumentModel doc);
+
+    /**
+     * Evaluate the conditional headers of a GET request, If-None-Match first then If-Modified-Since
+     *
+     * @param lastModified the last modification date, null if unknown
+     * @return the not modified response, null if the resource has to be sent
+     * @since 9.1
+     */
+    ResponseBuilder evaluatePreconditions(Request request, EntityTag entityTag, Date lastModified);
+
+    /**
+     * Check the If-Match header of the request, if any, against the current entity tag of the resource
+     *
+     * @param entityTag computed only if the header is present
+     * @throws BoxRestException with a 412 status if none of the tags match
+     * @since 9.1
+     */
+    void checkIfMatch(HttpServletRequest request, Supplier<EntityTag> entityTag);
+
     String getBoxId(DocumentModel doc);
 
     String getBoxSequenceId(DocumentModel doc);
@@ -64,10 +135,141 @@ public interface BoxService {
 
     String getBoxName(DocumentModel doc);
 
+    /**
+     * @return the ancestors of the document, from its parent up to the root
+     * @since 9.1
+     */
+    List<BoxAncestor> getAncestors(CoreSession session, DocumentModel doc);
+
+    /**
+     * Drop the cached mini representation of the given document, as an ancestor
+     *
+     * @since 9.1
+     */
+    void invalidateAncestor(String docId);
+
+    /**
+     * @return the labels of the tags set by the current user on the document, resolved through the tag cache
+     * @since 9.1
+     */
+    String[] getTags(CoreSession session, String docId);
+
+    /**
+     * Drop the cached taggings of the given document, or of all of them if null
+     *
+     * @since 9.1
+     */
+    void invalidateTags(String docId);
+
+    /**
+     * Schedule the computation of the aggregates of all the folders below the given one, itself included, after the
+     * current transaction. This is the repair of the aggregates drifting when their pending changes are lost or
+     * applied concurrently by several nodes, to be run periodically on the root of the repository. It runs in the
+     * queue of the updates of the aggregates, one at a time.
+     *
+     * @since 9.1
+     */
+    void rebuildAggregates(String repositoryName, String folderId);
+
+    /**
+     * Schedule the computation of the SHA1 of the files which have none, after the current transaction
+     *
+     * @since 9.1
+     */
+    void backfillContentDigests(String repositoryName);
+
+    /**
+     * Schedule the removal of a folder and its descendants by batches, after the current transaction, unless it is
+     * already scheduled
+     *
+     * @param username the user starting the job, the only one it is shown to with the administrators
+     * @return the job, its id being the one of the folder
+     * @since 9.1
+     */
+    BoxJob deleteFolder(String repositoryName, String folderId, String username);
+
+    /**
+     * Record the status of a background job once it is over, kept for a day. The jobs are kept in the memory of the
+     * node which started them: on a cluster, a job is only known there, and its status once over only if the work ran
+     * there too.
+     *
+     * @param workId the id of the work of the job
+     * @since 9.1
+     */
+    void setJobStatus(String workId, String status);
+
+    /**
+     * @return whether the folder has more than the given number of descendants, counted up to one more
+     * @since 9.1
+     */
+    boolean hasMoreDescendants(CoreSession session, DocumentModel folder, long max);
+
+    /**
+     * @param jobId the id of the folder being removed, or of the copy being filled
+     * @return the progress of the removal or of the copy of a folder, null if there is no such job or if it was
+     *         started by another user
+     * @since 9.1
+     */
+    BoxJob getJob(CoreSession session, String jobId);
+
+    /**
+     * Copy a file or a folder tree without transferring any content, the blobs being shared. The children of a large
+     * folder are copied in the background, after the current transaction, by a job whose id is the one of the copy.
+     *
+     * @param parentId the id of the folder receiving the copy, 0 for the root
+     * @param name the name of the copy, the one of the item if null
+     * @return the copy
+     * @since 9.1
+     */
+    DocumentModel copyItem(CoreSession session, String itemId, String parentId, String name);
+
+    /**
+     * @return the local storage of the chunked uploads
+     * @since 9.1
+     */
+    BoxUploadStore getUploadStore();
+
+    /**
+     * @return the journal of the changes of the folders and files
+     * @since 9.1
+     */
+    BoxEventJournal getEventJournal();
+
+    /**
+     * @return the long-polling clients of the events
+     * @since 9.1
+     */
+    BoxRealTimeNotifier getRealTimeNotifier();
+
     BoxUser fillUser(NuxeoPrincipal creator);
 
     BoxGroup fillGroup(NuxeoGroup group);
 
+    /**
+     * @return the box user of the given user name, resolved through the principal cache
+     * @since 9.1
+     */
+    BoxUser getBoxUser(String username);
+
+    /**
+     * @return the box user, or the box group if there is no such user, resolved through the principal cache
+     * @since 9.1
+     */
+    BoxUser getBoxCollaborator(String name);
+
+    /**
+     * Drop the cached box user and group of the given name, or all of them if null
+     *
+     * @since 9.1
+     */
+    void invalidatePrincipal(String name);
+
+    /**
+     * @return the hit and miss statistics of the principal cache
+     * @since 9.1
+     */
+    CacheStats getPrincipalCacheStats();
+
     BoxFolder getBoxFolder(String jsonBoxFolder) throws BoxJSONException;
 
     BoxFile getBoxFile(String jsonBoxFile) throws BoxJSONException;
@@ -76,6 +278,16 @@ public interface BoxService {
 
     BoxCollaboration getBoxCollaboration(String jsonBoxCollaboration) throws BoxJSONException;
 
+    /**
+     * @since 9.1
+     */
+    BoxUploadSession getBoxUploadSession(String jsonBoxUploadSession) throws BoxJSONException;
+
+    /**
+     * @since 9.1
+     */
+    BoxUploadPartCollection getBoxUploadParts(String jsonBoxUploadParts) throws BoxJSONException;
+
     String getJSONFromBox(BoxTypedObject boxTypedObject) throws BoxJSONException;
 
     String getJSONBoxException(Exception e, int status);
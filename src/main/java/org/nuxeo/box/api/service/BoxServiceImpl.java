@@ -18,12 +18,19 @@
  */
 package org.nuxeo.box.api.service;
 
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import org.nuxeo.box.api.BoxConstants;
-import org.nuxeo.box.api.adapter.BoxAdapter;
 import org.nuxeo.box.api.folder.adapter.BoxFolderAdapter;
 import org.nuxeo.box.api.marshalling.dao.BoxCollaboration;
 import org.nuxeo.box.api.marshalling.dao.BoxCollaborationRole;
@@ -33,45 +40,136 @@ import org.nuxeo.box.api.marshalling.dao.BoxFile;
 import org.nuxeo.box.api.marshalling.dao.BoxFolder;
 import org.nuxeo.box.api.marshalling.dao.BoxGroup;
 import org.nuxeo.box.api.marshalling.dao.BoxItem;
+import org.nuxeo.box.api.marshalling.dao.BoxJob;
 import org.nuxeo.box.api.marshalling.dao.BoxObject;
 import org.nuxeo.box.api.marshalling.dao.BoxTypedObject;
+import org.nuxeo.box.api.marshalling.dao.BoxUploadPartCollection;
+import org.nuxeo.box.api.marshalling.dao.BoxUploadSession;
 import org.nuxeo.box.api.marshalling.dao.BoxUser;
 import org.nuxeo.box.api.marshalling.exceptions.BoxJSONException;
 import org.nuxeo.box.api.marshalling.exceptions.BoxRestException;
 import org.nuxeo.box.api.marshalling.exceptions.NXBoxJsonException;
 import org.nuxeo.box.api.marshalling.jsonparsing.BoxJSONParser;
 import org.nuxeo.box.api.marshalling.jsonparsing.BoxResourceHub;
+import org.nuxeo.box.api.utils.Constants;
+import org.nuxeo.common.Environment;
 import org.apache.commons.lang.StringUtils;
-import org.nuxeo.ecm.core.api.Blob;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentModelList;
+import org.nuxeo.ecm.core.api.IdRef;
+import org.nuxeo.ecm.core.api.IterableQueryResult;
+import org.nuxeo.ecm.core.api.Lock;
 import org.nuxeo.ecm.core.api.NuxeoGroup;
 import org.nuxeo.ecm.core.api.NuxeoPrincipal;
 import org.nuxeo.ecm.core.api.security.ACE;
+import org.nuxeo.ecm.core.api.security.ACL;
 import org.nuxeo.ecm.core.api.security.SecurityConstants;
-import org.nuxeo.ecm.platform.usermanager.UserManager;
+import org.nuxeo.ecm.core.query.sql.NXQL;
+import org.nuxeo.ecm.core.work.api.Work;
+import org.nuxeo.ecm.core.work.api.WorkManager;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.model.ComponentContext;
+import org.nuxeo.runtime.model.DefaultComponent;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import java.io.File;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Box Service Utils
  *
  * @since 5.9.3
  */
-public class BoxServiceImpl implements BoxService {
+public class BoxServiceImpl extends DefaultComponent implements BoxService {
+
+    /**
+     * How long the status of a background job is kept
+     */
+    protected static final long JOBS_TTL_HOURS = 24;
 
     /**
      * The mapping between Nuxeo ACLs and Box Collaboration
      */
     protected final BiMap<String, String> nxBoxRole;
 
+    /**
+     * The marshaller shared by all the calls, built once when the component is activated
+     */
+    protected BoxJSONParser boxJSONParser;
+
+    /**
+     * The writer used to marshall the server exceptions
+     */
+    protected ObjectWriter exceptionWriter;
+
+    /**
+     * The ancestors mini representations used to build path collections
+     */
+    protected BoxAncestorCache ancestorCache;
+
+    /**
+     * The box users and groups used to render creators, contributors, lock owners and collaborators
+     */
+    protected BoxPrincipalCache principalCache;
+
+    /**
+     * The taggings used to render the tags
+     */
+    protected BoxTagCache tagCache;
+
+    /**
+     * The local storage of the chunked uploads
+     */
+    protected BoxUploadStore uploadStore;
+
+    /**
+     * The journal of the changes, read by the events
+     */
+    protected BoxEventJournal eventJournal;
+
+    /**
+     * The long-polling clients woken by the changes
+     */
+    protected BoxRealTimeNotifier realTimeNotifier;
+
+    /**
+     * The renderer of the box items of search results
+     */
+    protected BoxBatchRenderer batchRenderer;
+
+    /**
+     * The fulltext search of the box items
+     */
+    protected BoxSearchEngine searchEngine;
+
+    /**
+     * The background jobs by work id, from their scheduling to a day after they are over
+     */
+    protected Cache<String, JobRecord> jobs;
+
+    /**
+     * The publisher of the metrics over JMX
+     */
+    protected JmxReporter jmxReporter;
+
     @Override
     public BiMap<String, String> getNxBoxRole() {
         return nxBoxRole;
@@ -85,55 +183,103 @@ public class BoxServiceImpl implements BoxService {
     }
 
     @Override
-    public BoxCollection searchBox(String term, CoreSession session, String limit, String offset)
-            {
-        final Map<String, Object> collectionProperties = new HashMap<>();
-        StringBuilder query = new StringBuilder();
-        query.append("SELECT * FROM " + "Document where ecm:fulltext = '" + term + "'");
-        DocumentModelList documentModels = session.query(query.toString(), null, Long.parseLong(limit),
-                Long.parseLong(offset), false);
-        // Adapt all documents to box document listing to get all properties
-        List<BoxTypedObject> boxDocuments = new ArrayList<>();
-        for (DocumentModel doc : documentModels) {
-            BoxAdapter boxAdapter = doc.getAdapter(BoxAdapter.class);
-            boxDocuments.add(boxAdapter.getBoxItem());
+    public void activate(ComponentContext context) {
+        boxJSONParser = new BoxJSONParser(new BoxResourceHub());
+        exceptionWriter = new ObjectMapper().writerFor(NXBoxJsonException.class);
+        ancestorCache = new BoxAncestorCache(this, Long.parseLong(Framework.getProperty(
+                BoxConstants.BOX_ANCESTORS_CACHE_SIZE_PROPERTY, BoxConstants.BOX_ANCESTORS_CACHE_SIZE)));
+        principalCache = new BoxPrincipalCache(this, Long.parseLong(Framework.getProperty(
+                BoxConstants.BOX_PRINCIPALS_CACHE_SIZE_PROPERTY, BoxConstants.BOX_PRINCIPALS_CACHE_SIZE)),
+                Long.parseLong(Framework.getProperty(BoxConstants.BOX_PRINCIPALS_CACHE_TTL_PROPERTY,
+                        BoxConstants.BOX_PRINCIPALS_CACHE_TTL)));
+        tagCache = new BoxTagCache(new BoxTagLoader(), Long.parseLong(Framework.getProperty(
+                BoxConstants.BOX_TAGS_CACHE_SIZE_PROPERTY, BoxConstants.BOX_TAGS_CACHE_SIZE)), Long.parseLong(
+                Framework.getProperty(BoxConstants.BOX_TAGS_CACHE_TTL_PROPERTY, BoxConstants.BOX_TAGS_CACHE_TTL)));
+        batchRenderer = new BoxBatchRenderer(ancestorCache, principalCache, tagCache);
+        String uploadDir = Framework.getProperty(BoxConstants.BOX_UPLOAD_DIR_PROPERTY);
+        uploadStore = new BoxUploadStore(uploadDir != null ? Paths.get(uploadDir) : new File(
+                Environment.getDefault().getTemp(), "box-uploads").toPath());
+        String eventsDir = Framework.getProperty(BoxConstants.BOX_EVENTS_DIR_PROPERTY);
+        eventJournal = new BoxEventJournal(eventsDir != null ? Paths.get(eventsDir) : new File(
+                Environment.getDefault().getData(), "box-events").toPath(), Long.parseLong(Framework.getProperty(
+                BoxConstants.BOX_EVENTS_RETENTION_PROPERTY, BoxConstants.BOX_EVENTS_RETENTION)));
+        // A channel is kept as long as its client may poll it
+        realTimeNotifier = new BoxRealTimeNotifier(Long.parseLong(Framework.getProperty(
+                BoxConstants.BOX_REALTIME_TIMEOUT_PROPERTY, BoxConstants.BOX_REALTIME_TIMEOUT)) * Long.parseLong(
+                BoxConstants.BOX_REALTIME_MAX_RETRIES));
+        jobs = CacheBuilder.newBuilder().expireAfterWrite(JOBS_TTL_HOURS, TimeUnit.HOURS).build();
+        searchEngine = new BoxSearchEngine(this, Long.parseLong(Framework.getProperty(
+                BoxConstants.BOX_SEARCH_COUNT_LIMIT_PROPERTY, BoxConstants.BOX_SEARCH_COUNT_LIMIT)));
+        if (Boolean.parseBoolean(Framework.getProperty(BoxConstants.BOX_METRICS_JMX_PROPERTY,
+                BoxConstants.BOX_METRICS_JMX))) {
+            jmxReporter = BoxMetrics.startJmxReporter();
         }
-        collectionProperties.put(BoxCollection.FIELD_ENTRIES, boxDocuments);
-        collectionProperties.put(BoxCollection.FIELD_TOTAL_COUNT, documentModels.size());
-        return new BoxCollection(Collections.unmodifiableMap(collectionProperties));
+    }
+
+    @Override
+    public void deactivate(ComponentContext context) {
+        boxJSONParser = null;
+        exceptionWriter = null;
+        ancestorCache = null;
+        principalCache = null;
+        tagCache = null;
+        uploadStore = null;
+        eventJournal.flush();
+        eventJournal = null;
+        realTimeNotifier.shutdown();
+        realTimeNotifier = null;
+        batchRenderer = null;
+        searchEngine = null;
+        jobs = null;
+        if (jmxReporter != null) {
+            jmxReporter.stop();
+            jmxReporter = null;
+        }
+    }
+
+    @Override
+    public BoxCollection searchBox(String term, CoreSession session, String limit, String offset, String fields,
+            String marker) {
+        return searchEngine.search(session, term, Long.parseLong(limit), Long.parseLong(offset),
+                BoxProjection.of(fields), marker);
+    }
+
+    @Override
+    public List<BoxTypedObject> getBoxItems(CoreSession session, List<DocumentModel> docs, BoxProjection projection) {
+        return batchRenderer.render(session, docs, projection);
     }
 
     @Override
     public List<BoxTypedObject> getBoxDocumentCollection(DocumentModelList documentModels, String fields)
             {
-
+        // Depending of fields filter provided in the REST call:
+        // Properties setup (* -> all)
+        BoxProjection projection = BoxProjection.of(fields);
         final List<BoxTypedObject> boxObject = new ArrayList<>();
         for (DocumentModel documentModel : documentModels) {
             final Map<String, Object> documentProperties = new HashMap<>();
             documentProperties.put(BoxTypedObject.FIELD_ID, getBoxId(documentModel));
             documentProperties.put(BoxItem.FIELD_SEQUENCE_ID, getBoxSequenceId(documentModel));
-            documentProperties.put(BoxItem.FIELD_ETAG, getBoxEtag(documentModel));
+            if (projection.includes(BoxItem.FIELD_ETAG)) {
+                documentProperties.put(BoxItem.FIELD_ETAG, getBoxEtag(documentModel));
+            }
             documentProperties.put(BoxItem.FIELD_NAME, getBoxName(documentModel));
-            // NX MD5 -> Box SHA1
-            if (documentModel.hasSchema("file")) {
-                Blob blob = (Blob) documentModel.getPropertyValue("file:content");
-                if (blob != null) {
-                    documentProperties.put(BoxFile.FIELD_SHA1, blob.getDigest());
-                }
+            // SHA1, as stored when uploaded
+            String sha1 = BoxContentDigest.getSha1(documentModel);
+            if (sha1 != null) {
+                documentProperties.put(BoxFile.FIELD_SHA1, sha1);
             }
             // This different instantiation is related to the param type
             // which is automatically added in json payload by Box marshaller
             // following the box object type
             BoxTypedObject boxChild;
             boxChild = documentModel.isFolder() ? new BoxFolder() : new BoxFile();
-            // Depending of fields filter provided in the REST call:
-            // Properties setup (* -> all)
-            if (!"*".equals(fields) && fields != null) {
-                for (String field : fields.split(",")) {
+            if (projection.isAll()) {
+                boxChild.putAll(documentProperties);
+            } else {
+                for (String field : projection.getFields()) {
                     boxChild.put(field, documentProperties.get(field));
                 }
-            } else {
-                boxChild.putAll(documentProperties);
             }
             boxObject.add(boxChild);
         }
@@ -158,7 +304,6 @@ public class BoxServiceImpl implements BoxService {
         boxCollabProperties.put(BoxCollaboration.FIELD_MODIFIED_AT, null);
 
         // Creator
-        final UserManager userManager = Framework.getLocalService(UserManager.class);
         boxCollabProperties.put(BoxCollaboration.FIELD_CREATED_BY, boxFolderAdapter.getBoxItem().getCreatedBy());
 
         // Nuxeo doesn't provide expiration date yet
@@ -173,9 +318,7 @@ public class BoxServiceImpl implements BoxService {
         boxCollabProperties.put(BoxCollaboration.FIELD_FOLDER, boxFolderAdapter.getMiniItem());
 
         // User or Group whom can access to the document
-        NuxeoPrincipal user = userManager.getPrincipal(ace.getUsername());
-        NuxeoGroup group = userManager.getGroup(ace.getUsername());
-        boxCollabProperties.put(BoxCollaboration.FIELD_ACCESSIBLE_BY, user != null ? fillUser(user) : fillGroup(group));
+        boxCollabProperties.put(BoxCollaboration.FIELD_ACCESSIBLE_BY, getBoxCollaborator(ace.getUsername()));
 
         // Box Role
         boxCollabProperties.put(BoxCollaboration.FIELD_ROLE, nxBoxRole.get(ace.getPermission()));
@@ -187,14 +330,136 @@ public class BoxServiceImpl implements BoxService {
      */
     @Override
     public String toJSONString(BoxObject boxObject) throws BoxJSONException {
-        BoxJSONParser boxJSONParser = new BoxJSONParser(new BoxResourceHub());
-        try {
+        try (Timer.Context timer = BoxMetrics.time(BoxMetrics.PHASE_SERIALIZATION)) {
             return boxObject.toJSONString(boxJSONParser);
         } catch (BoxJSONException e) {
             throw new BoxRestException("Box Parser Exception", e, Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
         }
     }
 
+    /**
+     * Streaming the box object to JSON, the payload is never materialized
+     */
+    @Override
+    public ResponseBuilder toJSONResponse(BoxObject boxObject, HttpServletRequest request) {
+        boolean gzipEnabled = Framework.isBooleanPropertyTrue(BoxConstants.BOX_GZIP_PROPERTY);
+        String acceptEncoding = request != null ? request.getHeader(HttpHeaders.ACCEPT_ENCODING) : null;
+        boolean gzip = gzipEnabled && acceptEncoding != null && acceptEncoding.contains("gzip");
+        ResponseBuilder builder = Response.ok(new BoxJSONStreamingOutput(boxJSONParser, boxObject, gzip),
+                MediaType.APPLICATION_JSON_TYPE);
+        if (gzipEnabled) {
+            builder.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (gzip) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return builder;
+    }
+
+    @Override
+    public EntityTag getEntityTag(DocumentModel doc) {
+        return getEntityTag(doc, BoxProjection.ALL);
+    }
+
+    /**
+     * The tag covers what is rendered for the document: its change token and version, its ancestors for the path
+     * collection, its lock, its tags and, for folders, the aggregates and their revision, changed in the transaction
+     * of any change of a child. A projection is a representation of its own, with its own tag.
+     */
+    @Override
+    public EntityTag getEntityTag(DocumentModel doc, BoxProjection projection) {
+        final CoreSession session = doc.getCoreSession();
+        final Hasher hasher = newDocumentHasher(doc);
+        for (BoxAncestor ancestor : getAncestors(session, doc)) {
+            putValues(hasher, ancestor.getId(), ancestor.getEtag(), ancestor.getName());
+        }
+        Lock lock = doc.getLockInfo();
+        if (lock != null) {
+            Calendar created = lock.getCreated();
+            putValues(hasher, lock.getOwner(), created != null ? created.getTimeInMillis() : null);
+        }
+        String[] tags = getTags(session, doc.getId());
+        putValues(hasher, tags.length);
+        putValues(hasher, (Object[]) tags);
+        if (doc.isFolder()) {
+            putValues(hasher, BoxAggregates.getChildCount(doc), BoxAggregates.getDescendantCount(doc),
+                    BoxAggregates.getTotalSize(doc), BoxAggregates.getRevision(doc));
+        }
+        if (!projection.isAll()) {
+            // The fields in any order give the same representation
+            Set<String> fields = new TreeSet<>(projection.getFields());
+            putValues(hasher, fields.size());
+            putValues(hasher, fields.toArray());
+        }
+        return new EntityTag(hasher.hash().toString());
+    }
+
+    @Override
+    public EntityTag getCollaborationsEntityTag(DocumentModel folder) {
+        final Hasher hasher = newDocumentHasher(folder);
+        for (ACL acl : folder.getCoreSession().getACP(folder.getRef()).getACLs()) {
+            putValues(hasher, acl.getName());
+            for (ACE ace : acl.getACEs()) {
+                putValues(hasher, ace.getUsername(), ace.getPermission(), ace.isGranted());
+            }
+        }
+        return new EntityTag(hasher.hash().toString());
+    }
+
+    protected Hasher newDocumentHasher(DocumentModel doc) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        putValues(hasher, doc.getId(), doc.getName(), doc.getVersionLabel(), doc.getChangeToken());
+        return hasher;
+    }
+
+    protected void putValues(Hasher hasher, Object... values) {
+        for (Object value : values) {
+            hasher.putUnencodedChars(String.valueOf(value)).putChar('\u0000');
+        }
+    }
+
+    @Override
+    public Date getLastModified(DocumentModel doc) {
+        if (doc.isFolder()) {
+            return null;
+        }
+        Calendar modified = (Calendar) doc.getPropertyValue("dc:modified");
+        return modified != null ? modified.getTime() : null;
+    }
+
+    @Override
+    public ResponseBuilder evaluatePreconditions(Request request, EntityTag entityTag, Date lastModified) {
+        ResponseBuilder notModified = lastModified != null ? request.evaluatePreconditions(lastModified,
+                entityTag) : request.evaluatePreconditions(entityTag);
+        if (notModified != null) {
+            notModified.tag(entityTag);
+            if (lastModified != null) {
+                notModified.lastModified(lastModified);
+            }
+        }
+        return notModified;
+    }
+
+    @Override
+    public void checkIfMatch(HttpServletRequest request, Supplier<EntityTag> entityTag) {
+        String ifMatch = request != null ? request.getHeader(Constants.IF_MATCH) : null;
+        if (StringUtils.isBlank(ifMatch) || "*".equals(ifMatch.trim())) {
+            return;
+        }
+        EntityTag current = entityTag.get();
+        for (String value : ifMatch.split(",")) {
+            try {
+                if (current.equals(EntityTag.valueOf(value.trim()))) {
+                    return;
+                }
+            } catch (IllegalArgumentException e) {
+                // Not a valid tag, cannot match
+            }
+        }
+        throw new BoxRestException("The resource has been modified since " + ifMatch,
+                Response.Status.PRECONDITION_FAILED.getStatusCode());
+    }
+
     /**
      * Helpers to get Ids for sequence, etag and id itself. In case of root, sequence and etag are null and id = 0
      * according to the box documentation.
@@ -232,6 +497,157 @@ public class BoxServiceImpl implements BoxService {
         return null;
     }
 
+    @Override
+    public List<BoxAncestor> getAncestors(CoreSession session, DocumentModel doc) {
+        try (Timer.Context timer = BoxMetrics.time(BoxMetrics.PHASE_PATH_COLLECTION)) {
+            return ancestorCache.getAncestors(session, doc.getRef());
+        }
+    }
+
+    @Override
+    public void invalidateAncestor(String docId) {
+        ancestorCache.invalidate(docId);
+    }
+
+    @Override
+    public String[] getTags(CoreSession session, String docId) {
+        try (Timer.Context timer = BoxMetrics.time(BoxMetrics.PHASE_TAGS)) {
+            return tagCache.getTags(session, docId, session.getPrincipal().getName());
+        }
+    }
+
+    @Override
+    public void invalidateTags(String docId) {
+        if (docId == null) {
+            tagCache.invalidateAll();
+        } else {
+            tagCache.invalidate(docId);
+        }
+    }
+
+    @Override
+    public BoxUploadStore getUploadStore() {
+        return uploadStore;
+    }
+
+    @Override
+    public BoxEventJournal getEventJournal() {
+        return eventJournal;
+    }
+
+    @Override
+    public BoxRealTimeNotifier getRealTimeNotifier() {
+        return realTimeNotifier;
+    }
+
+    @Override
+    public void rebuildAggregates(String repositoryName, String folderId) {
+        Framework.getService(WorkManager.class).schedule(new BoxAggregatesRebuildWork(repositoryName, folderId),
+                true);
+    }
+
+    @Override
+    public void backfillContentDigests(String repositoryName) {
+        Framework.getService(WorkManager.class).schedule(new BoxContentDigestBackfillWork(repositoryName), true);
+    }
+
+    @Override
+    public BoxJob deleteFolder(String repositoryName, String folderId, String username) {
+        BoxFolderDeleteWork work = new BoxFolderDeleteWork(repositoryName, folderId);
+        jobs.put(work.getId(), new JobRecord(username, BoxJob.STATUS_QUEUED));
+        // A repeated removal follows the job already scheduled
+        Framework.getService(WorkManager.class).schedule(work, WorkManager.Scheduling.IF_NOT_SCHEDULED, true);
+        BoxJob job = new BoxJob();
+        job.put(BoxJob.FIELD_ID, folderId);
+        job.put(BoxJob.FIELD_STATUS, BoxJob.STATUS_QUEUED);
+        return job;
+    }
+
+    @Override
+    public BoxJob getJob(CoreSession session, String jobId) {
+        WorkManager workManager = Framework.getService(WorkManager.class);
+        // The id of the folder removed or of the copy filled, both being unique
+        String workId = BoxFolderDeleteWork.getWorkId(session.getRepositoryName(), jobId);
+        JobRecord record = jobs.getIfPresent(workId);
+        if (record == null) {
+            workId = BoxFolderCopyWork.getWorkId(session.getRepositoryName(), jobId);
+            record = jobs.getIfPresent(workId);
+        }
+        NuxeoPrincipal principal = (NuxeoPrincipal) session.getPrincipal();
+        // Only known by the user who started it, the folder may not be readable by others
+        if (record == null || !(principal.getName().equals(record.owner) || principal.isAdministrator())) {
+            return null;
+        }
+        Work.State state = workManager.getWorkState(workId);
+        BoxJob job = new BoxJob();
+        job.put(BoxJob.FIELD_ID, jobId);
+        if (state == Work.State.SCHEDULED) {
+            job.put(BoxJob.FIELD_STATUS, BoxJob.STATUS_QUEUED);
+        } else if (state == Work.State.RUNNING) {
+            job.put(BoxJob.FIELD_STATUS, BoxJob.STATUS_IN_PROGRESS);
+            Work work = workManager.find(workId, Work.State.RUNNING);
+            if (work != null && work.getProgress() != null) {
+                job.put(BoxJob.FIELD_TOTAL_COUNT, work.getProgress().getTotal());
+                job.put(BoxJob.FIELD_PROCESSED_COUNT, work.getProgress().getCurrent());
+            }
+        } else {
+            // Queued until the transaction scheduling it is committed, then as recorded by the work once over
+            job.put(BoxJob.FIELD_STATUS, record.status);
+        }
+        return job;
+    }
+
+    @Override
+    public void setJobStatus(String workId, String status) {
+        JobRecord record = jobs.getIfPresent(workId);
+        if (record != null) {
+            record.status = status;
+            // Kept for a day from now
+            jobs.put(workId, record);
+        }
+    }
+
+    @Override
+    public boolean hasMoreDescendants(CoreSession session, DocumentModel folder, long max) {
+        String query = "SELECT " + NXQL.ECM_UUID + " FROM Document WHERE " + NXQL.ECM_ANCESTORID + " = "
+                + NXQL.escapeString(folder.getId()) + " AND " + NXQL.ECM_ISVERSION + " = 0 LIMIT " + (max + 1);
+        IterableQueryResult rows = session.queryAndFetch(query, NXQL.NXQL);
+        try {
+            return rows.size() > max;
+        } finally {
+            rows.close();
+        }
+    }
+
+    @Override
+    public DocumentModel copyItem(CoreSession session, String itemId, String parentId, String name) {
+        DocumentModel item = session.getDocument(new IdRef(itemId));
+        DocumentModel parent = "0".equals(parentId) ? session.getRootDocument() : session.getDocument(new IdRef(
+                parentId));
+        if (item.isFolder() && (parent.getPathAsString() + "/").startsWith(item.getPathAsString() + "/")) {
+            throw new BoxRestException("Cannot copy folder " + itemId + " into itself",
+                    Response.Status.BAD_REQUEST.getStatusCode());
+        }
+        long syncMax = Long.parseLong(Framework.getProperty(BoxConstants.BOX_COPY_SYNC_MAX_PROPERTY,
+                BoxConstants.BOX_COPY_SYNC_MAX));
+        DocumentModel copy;
+        if (!item.isFolder() || !hasMoreDescendants(session, item, syncMax)) {
+            copy = session.copy(item.getRef(), parent.getRef(), name);
+            if (name != null) {
+                copy.setPropertyValue("dc:title", name);
+                copy = session.saveDocument(copy);
+            }
+        } else {
+            copy = BoxFolderCopyWork.createFolderCopy(session, item, parent.getPathAsString(), name);
+            BoxFolderCopyWork work = new BoxFolderCopyWork(session.getRepositoryName(), itemId, copy.getId(),
+                    session.getPrincipal().getName());
+            jobs.put(work.getId(), new JobRecord(session.getPrincipal().getName(), BoxJob.STATUS_QUEUED));
+            Framework.getService(WorkManager.class).schedule(work, WorkManager.Scheduling.IF_NOT_SCHEDULED, true);
+        }
+        session.save();
+        return copy;
+    }
+
     /**
      * Return a box user from a Nuxeo user metamodel
      */
@@ -257,29 +673,63 @@ public class BoxServiceImpl implements BoxService {
         return new BoxGroup(Collections.unmodifiableMap(mapGroup));
     }
 
+    @Override
+    public BoxUser getBoxUser(String username) {
+        try (Timer.Context timer = BoxMetrics.time(BoxMetrics.PHASE_PRINCIPALS)) {
+            return principalCache.getBoxUser(username);
+        }
+    }
+
+    @Override
+    public BoxUser getBoxCollaborator(String name) {
+        try (Timer.Context timer = BoxMetrics.time(BoxMetrics.PHASE_PRINCIPALS)) {
+            return principalCache.getBoxCollaborator(name);
+        }
+    }
+
+    @Override
+    public void invalidatePrincipal(String name) {
+        principalCache.invalidate(name);
+    }
+
+    @Override
+    public CacheStats getPrincipalCacheStats() {
+        return principalCache.getStats();
+    }
+
     @Override
     public BoxFolder getBoxFolder(String jsonBoxFolder) throws BoxJSONException {
-        return new BoxJSONParser(new BoxResourceHub()).parseIntoBoxObject(jsonBoxFolder, BoxFolder.class);
+        return boxJSONParser.parseIntoBoxObject(jsonBoxFolder, BoxFolder.class);
     }
 
     @Override
     public BoxFile getBoxFile(String jsonBoxFile) throws BoxJSONException {
-        return new BoxJSONParser(new BoxResourceHub()).parseIntoBoxObject(jsonBoxFile, BoxFile.class);
+        return boxJSONParser.parseIntoBoxObject(jsonBoxFile, BoxFile.class);
     }
 
     @Override
     public BoxComment getBoxComment(String jsonBoxComment) throws BoxJSONException {
-        return new BoxJSONParser(new BoxResourceHub()).parseIntoBoxObject(jsonBoxComment, BoxComment.class);
+        return boxJSONParser.parseIntoBoxObject(jsonBoxComment, BoxComment.class);
     }
 
     @Override
     public BoxCollaboration getBoxCollaboration(String jsonBoxCollaboration) throws BoxJSONException {
-        return new BoxJSONParser(new BoxResourceHub()).parseIntoBoxObject(jsonBoxCollaboration, BoxCollaboration.class);
+        return boxJSONParser.parseIntoBoxObject(jsonBoxCollaboration, BoxCollaboration.class);
+    }
+
+    @Override
+    public BoxUploadSession getBoxUploadSession(String jsonBoxUploadSession) throws BoxJSONException {
+        return boxJSONParser.parseIntoBoxObject(jsonBoxUploadSession, BoxUploadSession.class);
+    }
+
+    @Override
+    public BoxUploadPartCollection getBoxUploadParts(String jsonBoxUploadParts) throws BoxJSONException {
+        return boxJSONParser.parseIntoBoxObject(jsonBoxUploadParts, BoxUploadPartCollection.class);
     }
 
     @Override
     public String getJSONFromBox(BoxTypedObject boxTypedObject) throws BoxJSONException {
-        return boxTypedObject.toJSONString(new BoxJSONParser(new BoxResourceHub()));
+        return boxTypedObject.toJSONString(boxJSONParser);
     }
 
     /**
@@ -293,10 +743,9 @@ public class BoxServiceImpl implements BoxService {
         // Detailed Message
         boxException.setMessage(e.getCause() != null ? e.getCause().getMessage() : null);
         boxException.setStatus(status);
-        ObjectMapper mapper = new ObjectMapper();
         String jsonExceptionResponse = StringUtils.EMPTY;
         try {
-            jsonExceptionResponse = mapper.writeValueAsString(boxException);
+            jsonExceptionResponse = exceptionWriter.writeValueAsString(boxException);
         } catch (JsonProcessingException e1) {
             throw new BoxRestException("error when marshalling server " + "exception:", e1,
                     Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
@@ -319,4 +768,19 @@ public class BoxServiceImpl implements BoxService {
     public String computeCollaborationId(String folderId, String collaborationId) {
         return folderId.concat(BoxConstants.BOX_COLLAB_DELIM).concat(collaborationId);
     }
+
+    /**
+     * A background job: the user who started it and its status once over, queued until then
+     */
+    protected static class JobRecord {
+
+        protected final String owner;
+
+        protected volatile String status;
+
+        protected JobRecord(String owner, String status) {
+            this.owner = owner;
+            this.status = status;
+        }
+    }
 }
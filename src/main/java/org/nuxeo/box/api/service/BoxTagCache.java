@@ -0,0 +1,95 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.nuxeo.box.api.service.BoxTagLoader.Tagging;
+import org.nuxeo.ecm.core.api.CoreSession;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of the taggings of the documents, keyed by document id.
+ * <p>
+ * All the taggings of a document are kept, whoever their creator is, and the labels of a user are filtered on read.
+ * The taggings missing from the cache are loaded in one batch. Entries are invalidated when a tagging of the document
+ * is created or removed, and bounded in time as a safety net for the changes made on other nodes.
+ *
+ * @since 9.1
+ */
+public class BoxTagCache {
+
+    protected final BoxTagLoader tagLoader;
+
+    protected final Cache<String, List<Tagging>> taggings;
+
+    public BoxTagCache(BoxTagLoader tagLoader, long maxSize, long ttlSeconds) {
+        this.tagLoader = tagLoader;
+        taggings = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(ttlSeconds,
+                TimeUnit.SECONDS).build();
+    }
+
+    /**
+     * @return the labels of the tags set by the user on the document
+     */
+    public String[] getTags(CoreSession session, String docId, String username) {
+        return getTags(session, Collections.singletonList(docId), username).get(docId);
+    }
+
+    /**
+     * @return the labels of the tags set by the user on each given document id
+     */
+    public Map<String, String[]> getTags(CoreSession session, Collection<String> docIds, String username) {
+        final Map<String, List<Tagging>> resolved = new HashMap<>();
+        final List<String> missingIds = new ArrayList<>();
+        for (String docId : docIds) {
+            List<Tagging> docTaggings = taggings.getIfPresent(docId);
+            if (docTaggings != null) {
+                resolved.put(docId, docTaggings);
+            } else {
+                missingIds.add(docId);
+            }
+        }
+        if (!missingIds.isEmpty()) {
+            Map<String, List<Tagging>> loaded = tagLoader.getTaggings(session, missingIds);
+            taggings.putAll(loaded);
+            resolved.putAll(loaded);
+        }
+        final Map<String, String[]> tags = new HashMap<>();
+        for (Map.Entry<String, List<Tagging>> docTaggings : resolved.entrySet()) {
+            tags.put(docTaggings.getKey(), BoxTagLoader.getLabels(docTaggings.getValue(), username));
+        }
+        return tags;
+    }
+
+    public void invalidate(String docId) {
+        taggings.invalidate(docId);
+    }
+
+    public void invalidateAll() {
+        taggings.invalidateAll();
+    }
+}
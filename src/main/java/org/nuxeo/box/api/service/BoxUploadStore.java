@@ -0,0 +1,563 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.service;
+
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.joda.time.format.ISODateTimeFormat;
+import org.nuxeo.box.api.marshalling.dao.BoxUploadPart;
+import org.nuxeo.box.api.marshalling.dao.BoxUploadSession;
+import org.nuxeo.box.api.marshalling.exceptions.BoxRestException;
+import org.nuxeo.ecm.core.api.Blob;
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.api.impl.blob.AbstractBlob;
+
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local disk storage of the chunked uploads.
+ * <p>
+ * Each session is a directory holding its description and its parts, one file per part named after its offset and
+ * SHA1. A part is streamed to a temporary file and only renamed once complete and verified, so parts can be uploaded
+ * in parallel or again after a failure, and a listing never sees a partial part. Of the parts stored at an offset, the
+ * last one written wins. On commit, the parts are verified through a single direct buffer, then read in sequence by
+ * the blob manager, without being assembled into another file first.
+ *
+ * @since 9.1
+ */
+public class BoxUploadStore {
+
+    private static final Log log = LogFactory.getLog(BoxUploadStore.class);
+
+    protected static final String SESSION_FILE = "session.properties";
+
+    protected static final String PART_SUFFIX = ".part";
+
+    protected static final char PART_DELIM = '-';
+
+    protected static final Pattern SESSION_ID = Pattern.compile("[0-9A-F]{32}");
+
+    protected static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+
+    protected static final String DIGEST_SHA = "sha";
+
+    protected static final int BUFFER_SIZE = 1024 * 1024;
+
+    protected static final int STATUS_RANGE_NOT_SATISFIABLE = 416;
+
+    protected final Path root;
+
+    public BoxUploadStore(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Create a session, dropping the expired ones
+     */
+    public BoxUploadSession create(String owner, String folderId, String fileName, long fileSize, long partSize,
+            long ttlSeconds) {
+        if (fileSize <= 0 || partSize <= 0) {
+            throw new BoxRestException("The file size must be positive", Response.Status.BAD_REQUEST.getStatusCode());
+        }
+        purgeExpired();
+        Upload upload = new Upload(UUID.randomUUID().toString().replace("-", "").toUpperCase(), owner, folderId,
+                fileName, fileSize, partSize, System.currentTimeMillis() + ttlSeconds * 1000);
+        try {
+            Files.createDirectories(getDirectory(upload.id));
+            upload.write(getDirectory(upload.id).resolve(SESSION_FILE));
+        } catch (IOException e) {
+            throw new NuxeoException("Cannot create upload session", e);
+        }
+        return upload.toBoxUploadSession(0);
+    }
+
+    public BoxUploadSession getSession(String owner, String sessionId) {
+        return getUpload(owner, sessionId).toBoxUploadSession(getParts(owner, sessionId).size());
+    }
+
+    /**
+     * @return the session of the given owner, a 404 error if it does not exist or has expired
+     */
+    public Upload getUpload(String owner, String sessionId) {
+        if (sessionId == null || !SESSION_ID.matcher(sessionId).matches()) {
+            throw notFound(sessionId);
+        }
+        Upload upload;
+        try {
+            upload = Upload.read(getDirectory(sessionId).resolve(SESSION_FILE));
+        } catch (NoSuchFileException e) {
+            throw notFound(sessionId);
+        } catch (IOException e) {
+            throw new NuxeoException("Cannot read upload session " + sessionId, e);
+        }
+        if (!upload.owner.equals(owner) || upload.isExpired()) {
+            throw notFound(sessionId);
+        }
+        return upload;
+    }
+
+    /**
+     * Store a part of the file
+     *
+     * @param contentRange the range of the part in the file, as <code>bytes first-last/length</code>
+     * @param digest the base64 SHA1 of the part, as <code>sha=digest</code>
+     */
+    public BoxUploadPart putPart(String owner, String sessionId, String contentRange, String digest, InputStream in) {
+        Upload upload = getUpload(owner, sessionId);
+        byte[] expected = parseDigest(digest);
+        Matcher range = contentRange != null ? CONTENT_RANGE.matcher(contentRange.trim()) : null;
+        if (range == null || !range.matches()) {
+            throw new BoxRestException("Invalid Content-Range " + contentRange, STATUS_RANGE_NOT_SATISFIABLE);
+        }
+        long offset = Long.parseLong(range.group(1));
+        long size = Long.parseLong(range.group(2)) - offset + 1;
+        boolean last = offset + size == upload.fileSize;
+        if (Long.parseLong(range.group(3)) != upload.fileSize || offset % upload.partSize != 0 || size <= 0
+                || size > upload.partSize || (size != upload.partSize && !last) || offset + size > upload.fileSize) {
+            throw new BoxRestException("Content-Range " + contentRange + " is not a part of the session",
+                    STATUS_RANGE_NOT_SATISFIABLE);
+        }
+        Path directory = getDirectory(sessionId);
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile(directory, "upload", ".tmp");
+            MessageDigest sha1 = newDigest();
+            long written;
+            // One more byte than announced is enough to detect a longer body
+            try (InputStream digestIn = new DigestInputStream(ByteStreams.limit(in, size + 1), sha1)) {
+                written = Files.copy(digestIn, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (written != size) {
+                throw new BoxRestException("The part holds " + written + " bytes instead of " + size,
+                        STATUS_RANGE_NOT_SATISFIABLE);
+            }
+            byte[] actual = sha1.digest();
+            if (!MessageDigest.isEqual(expected, actual)) {
+                throw new BoxRestException("The digest of the part does not match",
+                        Response.Status.PRECONDITION_FAILED.getStatusCode());
+            }
+            String sha1Hex = BaseEncoding.base16().lowerCase().encode(actual);
+            Path part = directory.resolve(getPartPrefix(offset) + sha1Hex + PART_SUFFIX);
+            Files.move(tmp, part, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            tmp = null;
+            deleteOlderParts(directory, offset, part);
+            return newPart(upload, offset, size, sha1Hex);
+        } catch (IOException e) {
+            throw new NuxeoException("Cannot store part of upload session " + sessionId, e);
+        } finally {
+            if (tmp != null) {
+                FileUtils.deleteQuietly(tmp.toFile());
+            }
+        }
+    }
+
+    /**
+     * A part uploaded again with another content replaces the previous one. Only the parts written before this one are
+     * deleted, so that of two concurrent uploads of an offset, the cleanup of one never deletes the other when it is
+     * the latest: at worst both remain, and the latest is the one listed.
+     */
+    protected void deleteOlderParts(Path directory, long offset, Path part) throws IOException {
+        FileTime written;
+        try {
+            written = Files.getLastModifiedTime(part);
+        } catch (NoSuchFileException e) {
+            // Already replaced by a later upload of the offset
+            return;
+        }
+        try (DirectoryStream<Path> others = Files.newDirectoryStream(directory, getPartPrefix(offset) + "*")) {
+            for (Path other : others) {
+                try {
+                    if (Files.getLastModifiedTime(other).compareTo(written) < 0) {
+                        Files.deleteIfExists(other);
+                    }
+                } catch (NoSuchFileException e) {
+                    // Deleted by another cleanup
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the uploaded parts, ordered by offset
+     */
+    public List<BoxUploadPart> getParts(String owner, String sessionId) {
+        Upload upload = getUpload(owner, sessionId);
+        List<BoxUploadPart> parts = new ArrayList<>();
+        for (Path path : getPartPaths(sessionId).values()) {
+            String name = path.getFileName().toString();
+            int delim = name.indexOf(PART_DELIM);
+            try {
+                parts.add(newPart(upload, Long.parseLong(name.substring(0, delim)), Files.size(path),
+                        name.substring(delim + 1, name.length() - PART_SUFFIX.length())));
+            } catch (IOException e) {
+                throw new NuxeoException("Cannot list parts of upload session " + sessionId, e);
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * @return the files of the parts by offset, the latest written one of an offset if several remain
+     */
+    protected SortedMap<Long, Path> getPartPaths(String sessionId) {
+        SortedMap<Long, Path> paths = new TreeMap<>();
+        Map<Long, FileTime> times = new HashMap<>();
+        try (DirectoryStream<Path> parts = Files.newDirectoryStream(getDirectory(sessionId), "*" + PART_SUFFIX)) {
+            for (Path path : parts) {
+                String name = path.getFileName().toString();
+                long offset = Long.parseLong(name.substring(0, name.indexOf(PART_DELIM)));
+                FileTime time;
+                try {
+                    time = Files.getLastModifiedTime(path);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                Path previous = paths.get(offset);
+                int cmp = previous != null ? time.compareTo(times.get(offset)) : 1;
+                // Ties broken by name, so that all the listings agree
+                if (cmp > 0 || cmp == 0 && name.compareTo(previous.getFileName().toString()) > 0) {
+                    paths.put(offset, path);
+                    times.put(offset, time);
+                }
+            }
+        } catch (IOException e) {
+            throw new NuxeoException("Cannot list parts of upload session " + sessionId, e);
+        }
+        return paths;
+    }
+
+    /**
+     * Check the parts against the digest of the whole file
+     *
+     * @param committedParts the parts listed by the client, null to use all the uploaded ones
+     * @param digest the base64 SHA1 of the whole file, as <code>sha=digest</code>
+     * @return the file as a blob reading the parts in sequence, living until the session is deleted
+     */
+    public Blob commit(String owner, String sessionId, List<BoxUploadPart> committedParts, String digest) {
+        Upload upload = getUpload(owner, sessionId);
+        byte[] expected = parseDigest(digest);
+        List<BoxUploadPart> parts = getParts(owner, sessionId);
+        long next = 0;
+        for (BoxUploadPart part : parts) {
+            if (part.getOffset() != next) {
+                break;
+            }
+            next += part.getSize();
+        }
+        if (next != upload.fileSize) {
+            throw new BoxRestException("Parts are missing from offset " + next, STATUS_RANGE_NOT_SATISFIABLE);
+        }
+        if (committedParts != null && !sameParts(committedParts, parts)) {
+            throw new BoxRestException("The committed parts do not match the uploaded ones",
+                    Response.Status.BAD_REQUEST.getStatusCode());
+        }
+        Path directory = getDirectory(sessionId);
+        List<String> paths = new ArrayList<>(parts.size());
+        MessageDigest sha1 = newDigest();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try {
+            for (BoxUploadPart part : parts) {
+                Path path = directory.resolve(getPartPrefix(part.getOffset()) + part.getSha1() + PART_SUFFIX);
+                paths.add(path.toString());
+                try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+                    while (in.read(buffer) >= 0) {
+                        buffer.flip();
+                        sha1.update(buffer);
+                        buffer.clear();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new NuxeoException("Cannot read upload session " + sessionId, e);
+        }
+        if (!MessageDigest.isEqual(expected, sha1.digest())) {
+            throw new BoxRestException("The digest of the file does not match",
+                    Response.Status.PRECONDITION_FAILED.getStatusCode());
+        }
+        PartsBlob blob = new PartsBlob(paths, upload.fileSize);
+        blob.setFilename(upload.fileName);
+        return blob;
+    }
+
+    public void delete(String owner, String sessionId) {
+        getUpload(owner, sessionId);
+        FileUtils.deleteQuietly(getDirectory(sessionId).toFile());
+    }
+
+    /**
+     * Delete the sessions past their expiration
+     */
+    public void purgeExpired() {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try (DirectoryStream<Path> directories = Files.newDirectoryStream(root)) {
+            for (Path directory : directories) {
+                try {
+                    if (Upload.read(directory.resolve(SESSION_FILE)).isExpired()) {
+                        FileUtils.deleteQuietly(directory.toFile());
+                    }
+                } catch (IOException e) {
+                    log.debug("Skipping upload directory " + directory, e);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Cannot purge expired upload sessions", e);
+        }
+    }
+
+    protected Path getDirectory(String sessionId) {
+        return root.resolve(sessionId);
+    }
+
+    /**
+     * Parts are named after their zero padded offset, so the ones of an offset share a prefix
+     */
+    protected static String getPartPrefix(long offset) {
+        return String.format("%019d", offset) + PART_DELIM;
+    }
+
+    protected static BoxUploadPart newPart(Upload upload, long offset, long size, String sha1Hex) {
+        BoxUploadPart part = new BoxUploadPart();
+        part.put(BoxUploadPart.FIELD_PART_ID, String.format("%08X", offset / upload.partSize));
+        part.put(BoxUploadPart.FIELD_OFFSET, offset);
+        part.put(BoxUploadPart.FIELD_SIZE, size);
+        part.put(BoxUploadPart.FIELD_SHA1, sha1Hex);
+        return part;
+    }
+
+    protected static boolean sameParts(List<BoxUploadPart> committedParts, List<BoxUploadPart> parts) {
+        if (committedParts.size() != parts.size()) {
+            return false;
+        }
+        for (int i = 0; i < parts.size(); i++) {
+            BoxUploadPart committed = committedParts.get(i);
+            BoxUploadPart part = parts.get(i);
+            if (!part.getPartId().equals(committed.getPartId()) || !part.getOffset().equals(committed.getOffset())
+                    || !part.getSize().equals(committed.getSize())
+                    || !part.getSha1().equalsIgnoreCase(committed.getSha1())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the hexadecimal SHA1 given by a <code>Digest</code> header
+     */
+    public static String getSha1Hex(String digest) {
+        return BaseEncoding.base16().lowerCase().encode(parseDigest(digest));
+    }
+
+    protected static byte[] parseDigest(String digest) {
+        int delim = digest != null ? digest.indexOf('=') : -1;
+        if (delim < 0 || !DIGEST_SHA.equalsIgnoreCase(digest.substring(0, delim).trim())) {
+            throw new BoxRestException("Missing or invalid Digest header, expecting sha=<base64 sha1>",
+                    Response.Status.BAD_REQUEST.getStatusCode());
+        }
+        try {
+            return BaseEncoding.base64().decode(digest.substring(delim + 1).trim());
+        } catch (IllegalArgumentException e) {
+            throw new BoxRestException("Invalid Digest header", e, Response.Status.BAD_REQUEST.getStatusCode());
+        }
+    }
+
+    protected static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new NuxeoException(e);
+        }
+    }
+
+    protected static BoxRestException notFound(String sessionId) {
+        return new BoxRestException("Upload session " + sessionId + " not found",
+                Response.Status.NOT_FOUND.getStatusCode());
+    }
+
+    /**
+     * Description of a session, stored with its parts
+     */
+    public static class Upload {
+
+        protected final String id;
+
+        protected final String owner;
+
+        protected final String folderId;
+
+        protected final String fileName;
+
+        protected final long fileSize;
+
+        protected final long partSize;
+
+        protected final long expiresAt;
+
+        protected Upload(String id, String owner, String folderId, String fileName, long fileSize, long partSize,
+                long expiresAt) {
+            this.id = id;
+            this.owner = owner;
+            this.folderId = folderId;
+            this.fileName = fileName;
+            this.fileSize = fileSize;
+            this.partSize = partSize;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getFolderId() {
+            return folderId;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public long getFileSize() {
+            return fileSize;
+        }
+
+        public boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+
+        public BoxUploadSession toBoxUploadSession(int numPartsProcessed) {
+            BoxUploadSession session = new BoxUploadSession();
+            session.put(BoxUploadSession.FIELD_ID, id);
+            session.put(BoxUploadSession.FIELD_SESSION_EXPIRES_AT, ISODateTimeFormat.dateTimeNoMillis().print(
+                    expiresAt));
+            session.put(BoxUploadSession.FIELD_PART_SIZE, partSize);
+            session.put(BoxUploadSession.FIELD_TOTAL_PARTS, (int) ((fileSize + partSize - 1) / partSize));
+            session.put(BoxUploadSession.FIELD_NUM_PARTS_PROCESSED, numPartsProcessed);
+            return session;
+        }
+
+        protected void write(Path path) throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty("id", id);
+            properties.setProperty("owner", owner);
+            properties.setProperty("folderId", folderId);
+            properties.setProperty("fileName", fileName);
+            properties.setProperty("fileSize", String.valueOf(fileSize));
+            properties.setProperty("partSize", String.valueOf(partSize));
+            properties.setProperty("expiresAt", String.valueOf(expiresAt));
+            try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+                properties.store(writer, null);
+            }
+        }
+
+        protected static Upload read(Path path) throws IOException {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+            try {
+                return new Upload(properties.getProperty("id"), properties.getProperty("owner"),
+                        properties.getProperty("folderId"), properties.getProperty("fileName"),
+                        Long.parseLong(properties.getProperty("fileSize")),
+                        Long.parseLong(properties.getProperty("partSize")),
+                        Long.parseLong(properties.getProperty("expiresAt")));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid upload session " + path, e);
+            }
+        }
+    }
+
+    /**
+     * The parts of a session read in sequence, each file being opened once the previous one is read
+     */
+    protected static class PartsBlob extends AbstractBlob {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final List<String> paths;
+
+        protected final long length;
+
+        protected PartsBlob(List<String> paths, long length) {
+            this.paths = paths;
+            this.length = length;
+        }
+
+        @Override
+        public long getLength() {
+            return length;
+        }
+
+        @Override
+        public InputStream getStream() throws IOException {
+            Iterator<String> next = paths.iterator();
+            return new SequenceInputStream(new Enumeration<InputStream>() {
+
+                @Override
+                public boolean hasMoreElements() {
+                    return next.hasNext();
+                }
+
+                @Override
+                public InputStream nextElement() {
+                    try {
+                        return Files.newInputStream(Paths.get(next.next()));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        }
+    }
+}
@@ -23,6 +23,18 @@ public class Constants {
 
     public static final String CONTENT_MD5 = "Content-MD5";
 
+    public static final String CONTENT_RANGE = "Content-Range";
+
+    public static final String RANGE = "Range";
+
+    public static final String IF_RANGE = "If-Range";
+
+    public static final String ACCEPT_RANGES = "Accept-Ranges";
+
+    public static final String CONTENT_DISPOSITION = "Content-Disposition";
+
+    public static final String DIGEST = "Digest";
+
     public static final String FOLDER_ID = "folder_id";
 
     public static final String ID = "id";
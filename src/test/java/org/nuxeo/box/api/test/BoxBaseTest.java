@@ -47,6 +47,8 @@ import org.json.JSONTokener;
 import org.junit.Before;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.test.CoreFeature;
+import org.nuxeo.ecm.core.work.api.WorkManager;
+import org.nuxeo.runtime.api.Framework;
 
 import javax.inject.Inject;
 import javax.ws.rs.core.MediaType;
@@ -57,6 +59,9 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
 
 /**
  * @since 5.9.2
@@ -128,12 +133,20 @@ public class BoxBaseTest {
 
     @Before
     public void doBefore() throws Exception {
+        waitForAggregates();
         service = getServiceFor("Administrator", "Administrator");
         mapper = new ObjectMapper();
         // TODO NXIO-65: activate it to test with Box client and NX OAuth
         // initBoxClient();
     }
 
+    /**
+     * Wait for the aggregates of the changes committed so far, applied in the background
+     */
+    protected void waitForAggregates() throws InterruptedException {
+        assertTrue(Framework.getService(WorkManager.class).awaitCompletion(20, TimeUnit.SECONDS));
+    }
+
     protected WebResource getServiceFor(String user, String password) {
         ClientConfig config = new DefaultClientConfig();
         config.getClasses().add(MultiPartWriter.class);
@@ -0,0 +1,82 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.test.event;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nuxeo.box.api.marshalling.dao.BoxEvent;
+import org.nuxeo.box.api.service.BoxEventJournal;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * A corrupted record is the end of the journal, when read and when the journal is opened again.
+ *
+ * @since 9.1
+ */
+public class BoxEventJournalTest {
+
+    /**
+     * The offset of the length of the doc id in the second record
+     */
+    protected static final int CORRUPTED_LENGTH = 256 + 10;
+
+    protected Path root;
+
+    @Before
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("box-journal");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(root.toFile());
+    }
+
+    @Test
+    public void itStopsAtACorruptedRecord() throws Exception {
+        BoxEventJournal journal = new BoxEventJournal(root, 3600);
+        journal.append(BoxEvent.EVENT_TYPE_ITEM_CREATE, true, "doc0", "Administrator");
+        journal.append(BoxEvent.EVENT_TYPE_ITEM_CREATE, false, "doc1", "Administrator");
+        journal.flush();
+        try (FileChannel channel = FileChannel.open(root.resolve(String.format("%019d.log", 0)),
+                StandardOpenOption.WRITE)) {
+            ByteBuffer length = ByteBuffer.allocate(2);
+            length.putShort(0, (short) -1);
+            channel.write(length, CORRUPTED_LENGTH);
+        }
+        assertEquals(1, journal.read(0, 10).size());
+        assertEquals("doc0", journal.read(0, 10).get(0).getDocId());
+
+        // Written again once opened again
+        journal = new BoxEventJournal(root, 3600);
+        assertEquals(1, journal.getHeadPosition());
+        journal.append(BoxEvent.EVENT_TYPE_ITEM_CREATE, false, "doc2", "Administrator");
+        assertEquals(2, journal.read(0, 10).size());
+        assertEquals("doc2", journal.read(0, 10).get(1).getDocId());
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.test.event;
+
+import com.sun.jersey.api.client.ClientResponse;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.box.api.BoxConstants;
+import org.nuxeo.box.api.BoxRealTimeServlet;
+import org.nuxeo.box.api.test.BoxBaseTest;
+import org.nuxeo.box.api.test.BoxServerFeature;
+import org.nuxeo.box.api.test.BoxServerInit;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.test.annotations.Granularity;
+import org.nuxeo.ecm.core.test.annotations.RepositoryConfig;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.Jetty;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.Response;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @since 9.1
+ */
+@RunWith(FeaturesRunner.class)
+@Features({ BoxServerFeature.class })
+@Jetty(port = 18090)
+@RepositoryConfig(cleanup = Granularity.METHOD, init = BoxServerInit.class)
+public class BoxEventTest extends BoxBaseTest {
+
+    @Test
+    public void itCanFetchBoxEventsFromAStreamPosition() throws Exception {
+        DocumentModel folder = BoxServerInit.getFolder(1, session);
+
+        // Only the events to come
+        ClientResponse response = service.path("events").queryParam("stream_position", "now").get(
+                ClientResponse.class);
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        JSONObject finalResult = getJSONFromResponse(response);
+        assertEquals(0, finalResult.getInt("chunk_size"));
+        long streamPosition = finalResult.getLong("next_stream_position");
+
+        response = service.path("folders").post(ClientResponse.class,
+                "{\"name\":\"events_folder\", \"parent\": {\"id\": \"" + folder.getId() + "\"}}");
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        String folderId = getJSONFromResponse(response).getString("id");
+        response = service.path("folders/" + folderId).put(ClientResponse.class, "{\"name\":\"renamed_folder\"}");
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+
+        // Read one by one
+        response = service.path("events").queryParam("stream_position", String.valueOf(streamPosition)).queryParam(
+                "limit", "1").get(ClientResponse.class);
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        finalResult = getJSONFromResponse(response);
+        assertEquals(1, finalResult.getInt("chunk_size"));
+        assertEquals(streamPosition + 1, finalResult.getLong("next_stream_position"));
+        JSONObject event = finalResult.getJSONArray("entries").getJSONObject(0);
+        assertEquals("event", event.getString("type"));
+        assertEquals("ITEM_CREATE", event.getString("event_type"));
+        assertEquals(folderId, event.getJSONObject("source").getString("id"));
+
+        // Then the rest of them
+        response = service.path("events").queryParam("stream_position", finalResult.getString(
+                "next_stream_position")).get(ClientResponse.class);
+        finalResult = getJSONFromResponse(response);
+        JSONArray entries = finalResult.getJSONArray("entries");
+        assertEquals("ITEM_RENAME", entries.getJSONObject(0).getString("event_type"));
+        assertEquals("renamed_folder", entries.getJSONObject(0).getJSONObject("source").getString("name"));
+
+        // Nothing new
+        response = service.path("events").queryParam("stream_position", finalResult.getString(
+                "next_stream_position")).get(ClientResponse.class);
+        assertEquals(0, getJSONFromResponse(response).getInt("chunk_size"));
+
+        response = service.path("events").queryParam("stream_type", "unknown").get(ClientResponse.class);
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+    }
+
+    @Test
+    public void itOnlyRecordsTheUploadsOfBoxFiles() throws Exception {
+        DocumentModel file = BoxServerInit.getFile(1, session);
+        ClientResponse response = service.path("events").queryParam("stream_position", "now").get(
+                ClientResponse.class);
+        long streamPosition = getJSONFromResponse(response).getLong("next_stream_position");
+
+        // The metadata of the file change, not its content
+        response = service.path("files/" + file.getId()).put(ClientResponse.class,
+                "{\"description\":\"new description\"}");
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+
+        response = service.path("events").queryParam("stream_position", String.valueOf(streamPosition)).get(
+                ClientResponse.class);
+        assertEquals(0, getJSONFromResponse(response).getInt("chunk_size"));
+    }
+
+    @Test
+    public void itCanFetchTheBoxRealTimeServer() throws Exception {
+        DocumentModel folder = BoxServerInit.getFolder(1, session);
+        ClientResponse response = service.path("events").queryParam("folder_id", folder.getId()).method("OPTIONS",
+                ClientResponse.class);
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        JSONObject finalResult = getJSONFromResponse(response);
+        assertEquals(1, finalResult.getInt("chunk_size"));
+        JSONObject server = finalResult.getJSONArray("entries").getJSONObject(0);
+        assertEquals("realtime_server", server.getString("type"));
+        assertTrue(server.getString("url").contains("box/realtime?channel="));
+        assertEquals(610, server.getInt("retry_timeout"));
+    }
+
+    @Test
+    public void itWakesTheBoxRealTimeClientsOfAChangedFolder() throws Exception {
+        DocumentModel folder = BoxServerInit.getFolder(1, session);
+        String channel = boxService.getRealTimeNotifier().openChannel(folder.getPathAsString());
+        long position = boxService.getEventJournal().getHeadPosition();
+
+        // Parked until a note is created in the folder
+        StringWriter answer = new StringWriter();
+        Thread poll = startPoll(channel, position, answer);
+        DocumentModel note = session.createDocumentModel(folder.getPathAsString(), "realtime", "Note");
+        note = session.createDocument(note);
+        TransactionHelper.commitOrRollbackTransaction();
+        TransactionHelper.startTransaction();
+        poll.join(10000);
+        assertFalse(poll.isAlive());
+        assertEquals("new_change", new JSONObject(answer.toString()).getString("message"));
+
+        // Moved out of the watched folder
+        position = boxService.getEventJournal().getHeadPosition();
+        answer = new StringWriter();
+        poll = startPoll(channel, position, answer);
+        session.move(note.getRef(), BoxServerInit.getFolder(3, session).getRef(), null);
+        TransactionHelper.commitOrRollbackTransaction();
+        TransactionHelper.startTransaction();
+        poll.join(10000);
+        assertFalse(poll.isAlive());
+        assertEquals("new_change", new JSONObject(answer.toString()).getString("message"));
+    }
+
+    @Test
+    public void itAsksTheBoxRealTimeClientsToReconnect() throws Exception {
+        DocumentModel folder = BoxServerInit.getFolder(1, session);
+        String channel = boxService.getRealTimeNotifier().openChannel(folder.getPathAsString());
+        Framework.getProperties().setProperty(BoxConstants.BOX_REALTIME_TIMEOUT_PROPERTY, "1");
+        try {
+            StringWriter answer = new StringWriter();
+            poll(channel, boxService.getEventJournal().getHeadPosition(), answer);
+            assertEquals("reconnect", new JSONObject(answer.toString()).getString("message"));
+        } finally {
+            Framework.getProperties().remove(BoxConstants.BOX_REALTIME_TIMEOUT_PROPERTY);
+        }
+    }
+
+    protected Thread startPoll(String channel, long position, StringWriter answer) {
+        Thread poll = new Thread(() -> {
+            try {
+                poll(channel, position, answer);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }, "box-realtime-poll");
+        poll.start();
+        return poll;
+    }
+
+    /**
+     * Poll the realtime servlet in the current thread, as without asynchronous support
+     */
+    protected void poll(String channel, long position, StringWriter answer) throws Exception {
+        Map<String, Object> request = new HashMap<>();
+        request.put("getMethod", "GET");
+        request.put("isAsyncSupported", Boolean.FALSE);
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("channel", channel);
+        parameters.put("stream_position", String.valueOf(position));
+        Map<String, Object> response = new HashMap<>();
+        response.put("getWriter", new PrintWriter(answer, true));
+        new BoxRealTimeServlet().service(fake(HttpServletRequest.class, request, parameters), fake(
+                HttpServletResponse.class, response, parameters));
+    }
+
+    /**
+     * @return an implementation of the interface answering the given values by method name, and the parameters
+     */
+    protected static <T> T fake(Class<T> type, Map<String, Object> values, Map<String, String> parameters) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method,
+                args) -> {
+            if ("getParameter".equals(method.getName())) {
+                return parameters.get(args[0]);
+            } else if (values.containsKey(method.getName())) {
+                return values.get(method.getName());
+            } else if (method.getReturnType() == boolean.class) {
+                return Boolean.FALSE;
+            } else if (method.getReturnType() == int.class) {
+                return 0;
+            } else if (method.getReturnType() == long.class) {
+                return 0L;
+            }
+            return null;
+        }));
+    }
+}
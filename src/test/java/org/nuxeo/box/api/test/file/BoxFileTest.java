@@ -18,6 +18,7 @@
  */
 package org.nuxeo.box.api.test.file;
 
+import org.nuxeo.box.api.BoxConstants;
 import org.nuxeo.box.api.adapter.BoxAdapter;
 import org.nuxeo.box.api.marshalling.dao.BoxFile;
 import org.nuxeo.box.api.marshalling.exceptions.BoxJSONException;
@@ -26,7 +27,9 @@ import org.nuxeo.box.api.service.BoxService;
 import org.nuxeo.box.api.test.BoxBaseTest;
 import org.nuxeo.box.api.test.BoxServerFeature;
 import org.nuxeo.box.api.test.BoxServerInit;
+import org.nuxeo.box.api.utils.Constants;
 
+import com.google.common.io.BaseEncoding;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.multipart.FormDataBodyPart;
 import com.sun.jersey.multipart.FormDataMultiPart;
@@ -36,23 +39,41 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.api.Blob;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.IdRef;
+import org.nuxeo.ecm.core.api.PathRef;
 import org.nuxeo.ecm.core.test.annotations.Granularity;
+import org.nuxeo.ecm.core.work.api.WorkManager;
 import org.nuxeo.ecm.core.test.annotations.RepositoryConfig;
 import org.nuxeo.runtime.test.runner.Features;
 import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.test.runner.Jetty;
+import org.nuxeo.runtime.transaction.TransactionHelper;
 
 import javax.inject.Inject;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @since 5.9.2
@@ -84,6 +105,48 @@ public class BoxFileTest extends BoxBaseTest {
         assertEquals(finalResult.getString("item_status"), "project");
     }
 
+    @Test
+    public void itCanFetchAnUnchangedBoxFile() throws Exception {
+        // Fetching the file in Nuxeo way
+        DocumentModel file = BoxServerInit.getFile(1, session);
+
+        // Fetching the file through NX Box API
+        ClientResponse response = service.path("files/" + file.getId()).get(ClientResponse.class);
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        EntityTag entityTag = response.getEntityTag();
+        assertNotNull(entityTag);
+        assertNotNull(response.getLastModified());
+
+        // Same tag, nothing sent
+        response = service.path("files/" + file.getId()).header(HttpHeaders.IF_NONE_MATCH, entityTag).get(
+                ClientResponse.class);
+        assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), response.getStatus());
+
+        // A projection has its own tag, whatever the order of the fields
+        response = service.path("files/" + file.getId()).queryParam("fields", "name,id").header(
+                HttpHeaders.IF_NONE_MATCH, entityTag).get(ClientResponse.class);
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        EntityTag projectionTag = response.getEntityTag();
+        assertNotEquals(entityTag, projectionTag);
+        response = service.path("files/" + file.getId()).queryParam("fields", "id,name").header(
+                HttpHeaders.IF_NONE_MATCH, projectionTag).get(ClientResponse.class);
+        assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), response.getStatus());
+
+        // Stale tag, the update is refused
+        response = service.path("files/" + file.getId()).header(Constants.IF_MATCH, new EntityTag("stale")).put(
+                ClientResponse.class, "{\"name\":\"new name.jpg\"}");
+        assertEquals(Response.Status.PRECONDITION_FAILED.getStatusCode(), response.getStatus());
+
+        // Current tag, the update is done and the tag changes
+        response = service.path("files/" + file.getId()).header(Constants.IF_MATCH, entityTag).put(
+                ClientResponse.class, "{\"name\":\"new name.jpg\"}");
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        response = service.path("files/" + file.getId()).header(HttpHeaders.IF_NONE_MATCH, entityTag).get(
+                ClientResponse.class);
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertNotEquals(entityTag, response.getEntityTag());
+    }
+
     @Test
     public void itCanDeleteABoxFile() {
         // Fetching the file in Nuxeo way
@@ -126,7 +189,7 @@ public class BoxFileTest extends BoxBaseTest {
     }
 
     @Test
-    public void itCanCreateABoxFile() throws IOException, JSONException {
+    public void itCanCreateABoxFile() throws Exception {
         // Setting the parent
         DocumentModel folder = BoxServerInit.getFolder(1, session);
         FormDataMultiPart formDataMultiPart = new FormDataMultiPart();
@@ -144,5 +207,152 @@ public class BoxFileTest extends BoxBaseTest {
         assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
         JSONObject finalResult = getJSONFromResponse(response);
         assertEquals(finalResult.getString("name"), "blob.json");
+        // The SHA1 digested while uploading
+        assertEquals(BaseEncoding.base16().lowerCase().encode(MessageDigest.getInstance("SHA-1").digest(
+                FileUtils.readFileToByteArray(file))), finalResult.getString("sha1"));
+    }
+
+    @Test
+    public void itCannotCreateABoxFileWithAWrongContentMD5() throws Exception {
+        DocumentModel folder = BoxServerInit.getFolder(1, session);
+        FormDataMultiPart formDataMultiPart = new FormDataMultiPart();
+        formDataMultiPart.field("parent_id", folder.getId());
+        formDataMultiPart.field("filename", "corrupted.txt");
+        FormDataBodyPart bodyPart = new FormDataBodyPart("file", new ByteArrayInputStream(
+                "content".getBytes(StandardCharsets.UTF_8)), MediaType.APPLICATION_OCTET_STREAM_TYPE);
+        formDataMultiPart.bodyPart(bodyPart);
+
+        // The digest of another content
+        final ClientResponse response = service.path("files/content").type(MediaType.MULTIPART_FORM_DATA).header(
+                Constants.CONTENT_MD5, BaseEncoding.base16().lowerCase().encode(MessageDigest.getInstance(
+                        "SHA-1").digest("other".getBytes(StandardCharsets.UTF_8)))).post(ClientResponse.class,
+                formDataMultiPart);
+        assertEquals(Response.Status.PRECONDITION_FAILED.getStatusCode(), response.getStatus());
+        assertFalse(session.exists(new PathRef(folder.getPathAsString() + "/corrupted.txt")));
+    }
+
+    @Test
+    public void itCanBackfillTheSha1OfABoxFile() throws Exception {
+        DocumentModel file = BoxServerInit.getFile(1, session);
+        byte[] content = FileUtils.readFileToByteArray(org.nuxeo.common.utils.FileUtils.getResourceFileFromContext(
+                "blob.json"));
+        // Created without the Box API
+        ClientResponse response = service.path("files/" + file.getId()).get(ClientResponse.class);
+        assertFalse(getJSONFromResponse(response).has("sha1"));
+
+        Framework.getLocalService(BoxService.class).backfillContentDigests(session.getRepositoryName());
+        TransactionHelper.commitOrRollbackTransaction();
+        assertTrue(Framework.getService(WorkManager.class).awaitCompletion(20, TimeUnit.SECONDS));
+        TransactionHelper.startTransaction();
+
+        response = service.path("files/" + file.getId()).get(ClientResponse.class);
+        assertEquals(BaseEncoding.base16().lowerCase().encode(MessageDigest.getInstance("SHA-1").digest(content)),
+                getJSONFromResponse(response).getString("sha1"));
+    }
+
+    @Test
+    public void itCanCopyABoxFile() throws Exception {
+        DocumentModel file = BoxServerInit.getFile(1, session);
+        DocumentModel parent = BoxServerInit.getFolder(3, session);
+        ClientResponse response = service.path("files/" + file.getId() + "/copy").post(ClientResponse.class,
+                "{\"parent\":{\"id\":\"" + parent.getId() + "\"},\"name\":\"copy\"}");
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+        JSONObject copy = getJSONFromResponse(response);
+        assertEquals("copy", copy.getString("name"));
+        assertEquals(parent.getId(), copy.getJSONObject("parent").getString("id"));
+        // The content is shared, not written again
+        Blob content = (Blob) file.getPropertyValue("file:content");
+        Blob copyContent = (Blob) session.getDocument(new IdRef(copy.getString("id"))).getPropertyValue(
+                "file:content");
+        assertEquals(content.getDigest(), copyContent.getDigest());
+    }
+
+    @Test
+    public void itCanDownloadABoxFileByRange() throws Exception {
+        DocumentModel file = BoxServerInit.getFile(1, session);
+        byte[] content = FileUtils.readFileToByteArray(org.nuxeo.common.utils.FileUtils.getResourceFileFromContext(
+                "blob.json"));
+
+        // The whole content
+        ClientResponse response = service.path("files/" + file.getId() + "/content").get(ClientResponse.class);
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertEquals("bytes", response.getHeaders().getFirst(Constants.ACCEPT_RANGES));
+        EntityTag entityTag = response.getEntityTag();
+        assertNotNull(entityTag);
+        assertArrayEquals(content, response.getEntity(byte[].class));
+
+        // A range of the same content
+        response = service.path("files/" + file.getId() + "/content").header(Constants.RANGE, "bytes=2-5").header(
+                Constants.IF_RANGE, entityTag.toString()).get(ClientResponse.class);
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 2-5/" + content.length, response.getHeaders().getFirst(Constants.CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(content, 2, 6), response.getEntity(byte[].class));
+
+        // The content has changed, all of it is sent again
+        response = service.path("files/" + file.getId() + "/content").header(Constants.RANGE, "bytes=2-5").header(
+                Constants.IF_RANGE, "\"stale\"").get(ClientResponse.class);
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertArrayEquals(content, response.getEntity(byte[].class));
+
+        // After the end of the content
+        response = service.path("files/" + file.getId() + "/content").header(Constants.RANGE,
+                "bytes=" + content.length + "-").get(ClientResponse.class);
+        assertEquals(416, response.getStatus());
+    }
+
+    @Test
+    public void itCanUploadABoxFileInParts() throws Exception {
+        DocumentModel folder = BoxServerInit.getFolder(1, session);
+        byte[] content = "0123456789".getBytes(StandardCharsets.UTF_8);
+        Framework.getProperties().setProperty(BoxConstants.BOX_UPLOAD_PART_SIZE_PROPERTY, "4");
+        try {
+            // Creating the session
+            ClientResponse response = service.path("files/upload_sessions").post(ClientResponse.class,
+                    "{\"folder_id\":\"" + folder.getId() + "\", \"file_name\":\"parts.txt\", \"file_size\":10}");
+            assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+            JSONObject uploadSession = getJSONFromResponse(response);
+            assertEquals(3, uploadSession.getInt("total_parts"));
+            String sessionPath = "files/upload_sessions/" + uploadSession.getString("id");
+
+            // Uploading the parts in any order, a corrupted part is refused
+            response = putPart(sessionPath, content, 4, 8, "abcd".getBytes(StandardCharsets.UTF_8));
+            assertEquals(Response.Status.PRECONDITION_FAILED.getStatusCode(), response.getStatus());
+            for (int offset : new int[] { 8, 0, 4 }) {
+                response = putPart(sessionPath, content, offset, Math.min(offset + 4, content.length), null);
+                assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+            }
+            response = service.path(sessionPath + "/parts").get(ClientResponse.class);
+            JSONObject parts = getJSONFromResponse(response);
+            assertEquals(3, parts.getInt("total_count"));
+            assertEquals(0, parts.getJSONArray("entries").getJSONObject(0).getLong("offset"));
+
+            // Committing with the digest of the whole file
+            response = service.path(sessionPath + "/commit").header(Constants.DIGEST, "sha=" + sha1(content)).post(
+                    ClientResponse.class, "{\"parts\":" + parts.getJSONArray("entries") + "}");
+            assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+            JSONObject file = getJSONFromResponse(response).getJSONArray("entries").getJSONObject(0);
+            assertEquals("parts.txt", file.getString("name"));
+            assertEquals(content.length, file.getLong("size"));
+            assertEquals(BaseEncoding.base16().lowerCase().encode(MessageDigest.getInstance("SHA-1").digest(
+                    content)), file.getString("sha1"));
+
+            // The session is gone
+            response = service.path(sessionPath).get(ClientResponse.class);
+            assertEquals(Response.Status.NOT_FOUND.getStatusCode(), response.getStatus());
+        } finally {
+            Framework.getProperties().remove(BoxConstants.BOX_UPLOAD_PART_SIZE_PROPERTY);
+        }
+    }
+
+    protected ClientResponse putPart(String sessionPath, byte[] content, int from, int to, byte[] body)
+            throws Exception {
+        byte[] part = Arrays.copyOfRange(content, from, to);
+        return service.path(sessionPath).type(MediaType.APPLICATION_OCTET_STREAM).header(Constants.CONTENT_RANGE,
+                "bytes " + from + "-" + (to - 1) + "/" + content.length).header(Constants.DIGEST,
+                "sha=" + sha1(part)).put(ClientResponse.class, body != null ? body : part);
+    }
+
+    protected static String sha1(byte[] bytes) throws Exception {
+        return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-1").digest(bytes));
     }
 }
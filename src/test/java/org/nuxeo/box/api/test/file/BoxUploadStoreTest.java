@@ -0,0 +1,134 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.test.file;
+
+import com.google.common.io.BaseEncoding;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nuxeo.box.api.marshalling.dao.BoxUploadPart;
+import org.nuxeo.box.api.marshalling.dao.BoxUploadSession;
+import org.nuxeo.box.api.service.BoxUploadStore;
+import org.nuxeo.ecm.core.api.Blob;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The parts stored again at an offset, the latest written one being kept.
+ *
+ * @since 9.1
+ */
+public class BoxUploadStoreTest {
+
+    protected static final String OWNER = "Administrator";
+
+    protected Path root;
+
+    protected BoxUploadStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("box-upload");
+        store = new BoxUploadStore(root);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(root.toFile());
+    }
+
+    @Test
+    public void itKeepsTheLatestPartOfAnOffset() throws Exception {
+        BoxUploadSession session = store.create(OWNER, "0", "file.txt", 4, 4, 60);
+        String sessionId = session.getId();
+        store.putPart(OWNER, sessionId, "bytes 0-3/4", digest("aaaa"), stream("aaaa"));
+        store.putPart(OWNER, sessionId, "bytes 0-3/4", digest("bbbb"), stream("bbbb"));
+        List<BoxUploadPart> parts = store.getParts(OWNER, sessionId);
+        assertEquals(1, parts.size());
+        assertEquals(sha1Hex("bbbb"), parts.get(0).getSha1());
+
+        // A part written after this one, its cleanup not having run yet, is not deleted
+        Path part = getPartFiles(sessionId)[0];
+        Files.setLastModifiedTime(part, FileTime.fromMillis(System.currentTimeMillis() + 60000));
+        store.putPart(OWNER, sessionId, "bytes 0-3/4", digest("cccc"), stream("cccc"));
+        assertEquals(2, getPartFiles(sessionId).length);
+        parts = store.getParts(OWNER, sessionId);
+        assertEquals(1, parts.size());
+        assertEquals(sha1Hex("bbbb"), parts.get(0).getSha1());
+
+        Blob blob = store.commit(OWNER, sessionId, null, digest("bbbb"));
+        assertEquals(4, blob.getLength());
+        try (InputStream in = blob.getStream()) {
+            assertEquals("bbbb", IOUtils.toString(in, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void itReadsTheCommittedPartsInSequence() throws Exception {
+        BoxUploadSession session = store.create(OWNER, "0", "file.txt", 10, 4, 60);
+        String sessionId = session.getId();
+        store.putPart(OWNER, sessionId, "bytes 8-9/10", digest("ij"), stream("ij"));
+        store.putPart(OWNER, sessionId, "bytes 0-3/10", digest("abcd"), stream("abcd"));
+        store.putPart(OWNER, sessionId, "bytes 4-7/10", digest("efgh"), stream("efgh"));
+        Blob blob = store.commit(OWNER, sessionId, null, digest("abcdefghij"));
+        assertEquals("file.txt", blob.getFilename());
+        try (InputStream in = blob.getStream()) {
+            assertEquals("abcdefghij", IOUtils.toString(in, StandardCharsets.UTF_8));
+        }
+        // No assembled copy next to the parts
+        assertEquals(3, getPartFiles(sessionId).length);
+    }
+
+    protected Path[] getPartFiles(String sessionId) throws Exception {
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(root.resolve(sessionId), "*.part")) {
+            List<Path> files = new ArrayList<>();
+            paths.forEach(files::add);
+            return files.toArray(new Path[files.size()]);
+        }
+    }
+
+    protected static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    protected static String digest(String content) throws Exception {
+        return "sha=" + BaseEncoding.base64().encode(sha1(content));
+    }
+
+    protected static String sha1Hex(String content) throws Exception {
+        return BaseEncoding.base16().lowerCase().encode(sha1(content));
+    }
+
+    protected static byte[] sha1(String content) throws Exception {
+        return MessageDigest.getInstance("SHA-1").digest(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -18,31 +18,44 @@
  */
 package org.nuxeo.box.api.test.folder;
 
+import org.nuxeo.box.api.BoxConstants;
 import org.nuxeo.box.api.adapter.BoxAdapter;
 import org.nuxeo.box.api.folder.adapter.BoxFolderAdapter;
 import org.nuxeo.box.api.marshalling.dao.BoxFolder;
 import org.nuxeo.box.api.marshalling.exceptions.BoxJSONException;
+import org.nuxeo.box.api.service.BoxFolderCopyWork;
+import org.nuxeo.box.api.service.BoxMetrics;
 import org.nuxeo.box.api.test.BoxBaseTest;
 import org.nuxeo.box.api.test.BoxServerFeature;
 import org.nuxeo.box.api.test.BoxServerInit;
+import com.codahale.metrics.Timer;
 import com.sun.jersey.api.client.ClientResponse;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.nuxeo.common.utils.FileUtils;
 import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.IdRef;
 import org.nuxeo.ecm.core.test.annotations.Granularity;
 import org.nuxeo.ecm.core.test.annotations.RepositoryConfig;
+import org.nuxeo.ecm.core.work.api.WorkManager;
+import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.test.runner.Features;
 import org.nuxeo.runtime.test.runner.FeaturesRunner;
 import org.nuxeo.runtime.test.runner.Jetty;
+import org.nuxeo.runtime.transaction.TransactionHelper;
 
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @since 5.9.2
@@ -84,6 +97,26 @@ public class BoxFolderTest extends BoxBaseTest {
         assertEquals("0", finalResult.getString("id"));
     }
 
+    @Test
+    public void itCanFetchBoxFolderAggregates() throws Exception {
+        long fileSize = FileUtils.getResourceFileFromContext("blob.json").length();
+
+        // The folder holding the file
+        DocumentModel folder = BoxServerInit.getFolder(2, session);
+        ClientResponse response = getResponse(BoxBaseTest.RequestType.GET, "folders/" + folder.getId());
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        JSONObject finalResult = getJSONFromResponse(response);
+        assertEquals(fileSize, finalResult.getLong("size"));
+        assertEquals(1, finalResult.getJSONObject("item_collection").getInt("total_count"));
+
+        // The root sums all the descendants
+        response = getResponse(BoxBaseTest.RequestType.GET, "folders/0");
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        finalResult = getJSONFromResponse(response);
+        assertEquals(fileSize, finalResult.getLong("size"));
+        assertEquals(5, finalResult.getJSONObject("item_collection").getInt("total_count"));
+    }
+
     @Test
     public void itCanPostABoxFolder() throws BoxJSONException, IOException, JSONException {
         // Fetching the folder in Nuxeo way
@@ -141,12 +174,147 @@ public class BoxFolderTest extends BoxBaseTest {
     public void itCanDeleteABoxFolder() {
         // Fetching the folder in Nuxeo way
         final DocumentModel folder = BoxServerInit.getFolder(1, session);
-        // Call delete on this folder
+        // The folder is not empty
         ClientResponse response = service.path("folders/" + folder.getId()).delete(ClientResponse.class);
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+        // Call delete on this folder
+        response = service.path("folders/" + folder.getId()).queryParam("recursive", "true").delete(
+                ClientResponse.class);
         // Checking response consistency
         assertEquals(Response.Status.NO_CONTENT.getStatusCode(), response.getStatus());
         // Checking if folder is removed
         response = getResponse(BoxBaseTest.RequestType.GET, "folders/" + folder.getId());
         assertEquals(Response.Status.NOT_FOUND.getStatusCode(), response.getStatus());
     }
+
+    @Test
+    public void itCanDeleteABoxFolderInTheBackground() throws Exception {
+        final DocumentModel folder = BoxServerInit.getFolder(1, session);
+        Framework.getProperties().setProperty(BoxConstants.BOX_DELETE_SYNC_MAX_PROPERTY, "0");
+        try {
+            ClientResponse response = service.path("folders/" + folder.getId()).queryParam("recursive", "true")
+                    .delete(ClientResponse.class);
+            assertEquals(Response.Status.ACCEPTED.getStatusCode(), response.getStatus());
+            JSONObject job = getJSONFromResponse(response);
+            assertEquals("job", job.getString("type"));
+
+            TransactionHelper.commitOrRollbackTransaction();
+            assertTrue(Framework.getService(WorkManager.class).awaitCompletion(20, TimeUnit.SECONDS));
+            TransactionHelper.startTransaction();
+
+            response = service.path("jobs/" + job.getString("id")).get(ClientResponse.class);
+            assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+            assertEquals("done", getJSONFromResponse(response).getString("status"));
+            response = getResponse(BoxBaseTest.RequestType.GET, "folders/" + folder.getId());
+            assertEquals(Response.Status.NOT_FOUND.getStatusCode(), response.getStatus());
+            // No job was ever started for another folder
+            response = service.path("jobs/" + BoxServerInit.getFolder(2, session).getId()).get(ClientResponse.class);
+            assertEquals(Response.Status.NOT_FOUND.getStatusCode(), response.getStatus());
+        } finally {
+            Framework.getProperties().remove(BoxConstants.BOX_DELETE_SYNC_MAX_PROPERTY);
+        }
+    }
+
+    @Test
+    public void itCanCopyABoxFolder() throws Exception {
+        final DocumentModel folder = BoxServerInit.getFolder(1, session);
+        final DocumentModel parent = BoxServerInit.getFolder(3, session);
+        ClientResponse response = service.path("folders/" + folder.getId() + "/copy").post(ClientResponse.class,
+                "{\"parent\":{\"id\":\"" + parent.getId() + "\"},\"name\":\"copy\"}");
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+        JSONObject copy = getJSONFromResponse(response);
+        assertEquals("copy", copy.getString("name"));
+        assertEquals(5, session.getChildren(new IdRef(copy.getString("id"))).size());
+
+        // Not into itself
+        response = service.path("folders/" + parent.getId() + "/copy").post(ClientResponse.class,
+                "{\"parent\":{\"id\":\"" + copy.getString("id") + "\"}}");
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+    }
+
+    @Test
+    public void itCanCopyABoxFolderInTheBackground() throws Exception {
+        final DocumentModel folder = BoxServerInit.getFolder(1, session);
+        final DocumentModel parent = BoxServerInit.getFolder(3, session);
+        // Two children with the same title, both copied
+        DocumentModel note = session.getChildren(folder.getRef()).get(0);
+        DocumentModel twin = session.createDocumentModel(folder.getPathAsString(), note.getName(), note.getType());
+        twin.setPropertyValue("dc:title", note.getTitle());
+        session.createDocument(twin);
+        session.save();
+        Framework.getProperties().setProperty(BoxConstants.BOX_COPY_SYNC_MAX_PROPERTY, "0");
+        try {
+            ClientResponse response = service.path("folders/" + folder.getId() + "/copy").post(
+                    ClientResponse.class, "{\"parent\":{\"id\":\"" + parent.getId() + "\"}}");
+            assertEquals(Response.Status.ACCEPTED.getStatusCode(), response.getStatus());
+            JSONObject job = getJSONFromResponse(response);
+            assertEquals("job", job.getString("type"));
+            String copyId = job.getString("id");
+
+            TransactionHelper.commitOrRollbackTransaction();
+            assertTrue(Framework.getService(WorkManager.class).awaitCompletion(20, TimeUnit.SECONDS));
+            TransactionHelper.startTransaction();
+
+            response = service.path("jobs/" + copyId).get(ClientResponse.class);
+            assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+            assertEquals("done", getJSONFromResponse(response).getString("status"));
+            assertEquals(6, session.getChildren(new IdRef(copyId)).size());
+            assertEquals(folder.getName(), session.getDocument(new IdRef(copyId)).getName());
+            // Run again, the children already copied are skipped
+            Framework.getService(WorkManager.class).schedule(new BoxFolderCopyWork(session.getRepositoryName(),
+                    folder.getId(), copyId, session.getPrincipal().getName()));
+            TransactionHelper.commitOrRollbackTransaction();
+            assertTrue(Framework.getService(WorkManager.class).awaitCompletion(20, TimeUnit.SECONDS));
+            TransactionHelper.startTransaction();
+            assertEquals(6, session.getChildren(new IdRef(copyId)).size());
+            // The aggregates of the copy are kept up to date as its children are added
+            response = getResponse(BoxBaseTest.RequestType.GET, "folders/" + copyId);
+            assertEquals(6, getJSONFromResponse(response).getJSONObject("item_collection").getInt("total_count"));
+        } finally {
+            Framework.getProperties().remove(BoxConstants.BOX_COPY_SYNC_MAX_PROPERTY);
+        }
+    }
+
+    @Test
+    public void itRecordsTheMetricsOfABoxFolder() throws Exception {
+        final DocumentModel folder = BoxServerInit.getFolder(1, session);
+        Timer fetch = BoxMetrics.getPhaseTimer("GET /folders/{id}", BoxMetrics.PHASE_FETCH);
+        Timer children = BoxMetrics.getPhaseTimer("GET /folders/{id}", BoxMetrics.PHASE_CHILDREN);
+        Timer serialization = BoxMetrics.getPhaseTimer("GET /folders/{id}", BoxMetrics.PHASE_SERIALIZATION);
+        long fetchCount = fetch.getCount();
+        long childrenCount = children.getCount();
+        long serializationCount = serialization.getCount();
+
+        ClientResponse response = getResponse(BoxBaseTest.RequestType.GET, "folders/" + folder.getId());
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertEquals(fetchCount + 1, fetch.getCount());
+        assertTrue(children.getCount() > childrenCount);
+        assertEquals(serializationCount + 1, serialization.getCount());
+
+        assertEquals("GET /folders/{id}/items", BoxMetrics.getEndpoint("GET", "/2.0/folders/" + folder.getId()
+                + "/items"));
+        assertEquals("POST /repo/{repo}/files/content", BoxMetrics.getEndpoint("POST",
+                "/nuxeo/site/box/2.0/repo/default/files/content"));
+        // Whatever the path called, the number of endpoints is bounded
+        assertEquals("GET /{other}/{id}", BoxMetrics.getEndpoint("GET", "/2.0/unknown/" + folder.getId()));
+        assertEquals("OTHER /folders/{id}/items/{id}/{other}/{other}", BoxMetrics.getEndpoint("PATCH",
+                "/2.0/folders/1/items/2/a/b/c/d"));
+
+    @Test
+    public void itChangesTheTagOfABoxFolderWithItsChildren() throws Exception {
+        final DocumentModel folder = BoxServerInit.getFolder(1, session);
+        ClientResponse response = service.path("folders/" + folder.getId()).get(ClientResponse.class);
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        EntityTag entityTag = response.getEntityTag();
+
+        // The revision of the folder is committed with the change of its child, before the aggregates are applied
+        DocumentModel note = BoxServerInit.getNote(0, session);
+        note.setPropertyValue("dc:title", "Renamed");
+        session.saveDocument(note);
+        TransactionHelper.commitOrRollbackTransaction();
+        TransactionHelper.startTransaction();
+        response = service.path("folders/" + folder.getId()).header(HttpHeaders.IF_NONE_MATCH, entityTag).get(
+                ClientResponse.class);
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+    }
 }
@@ -22,6 +22,8 @@ import org.nuxeo.box.api.test.BoxBaseTest;
 import org.nuxeo.box.api.test.BoxServerFeature;
 import org.nuxeo.box.api.test.BoxServerInit;
 import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -33,8 +35,12 @@ import org.nuxeo.runtime.test.runner.FeaturesRunner;
 import org.nuxeo.runtime.test.runner.Jetty;
 
 import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 /**
  * @since 5.9.2
@@ -71,8 +77,45 @@ public class BoxItemTest extends BoxBaseTest {
         // Checking response consistency
         assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
         JSONObject finalResult = getJSONFromResponse(response);
-        assertEquals(finalResult.getString("total_count"), "2");
+        assertEquals(finalResult.getString("total_count"), "5");
+        assertEquals(finalResult.getJSONArray("entries").length(), 2);
         assertEquals(((JSONObject) finalResult.getJSONArray("entries").get(0)).get("etag"), null);
     }
 
+    @Test
+    public void itCanFetchAllBoxItemsWithMarker() throws Exception {
+        // Fetching the folder in Nuxeo way
+        DocumentModel folder = BoxServerInit.getFolder(1, session);
+
+        List<String> names = new ArrayList<>();
+        String marker = null;
+        do {
+            WebResource resource = service.path("folders/" + folder.getId() + "/items").queryParam("limit",
+                    "2").queryParam("usemarker", "true").queryParam("fields", "name");
+            if (marker != null) {
+                resource = resource.queryParam("marker", marker);
+            }
+            ClientResponse response = resource.get(ClientResponse.class);
+            // Checking response consistency
+            assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+            JSONObject finalResult = getJSONFromResponse(response);
+            assertFalse(finalResult.has("total_count"));
+            JSONArray entries = finalResult.getJSONArray("entries");
+            for (int i = 0; i < entries.length(); i++) {
+                names.add(entries.getJSONObject(i).getString("name"));
+            }
+            marker = finalResult.optString("next_marker", null);
+        } while (marker != null);
+
+        // All the children, once each, ordered by name
+        assertEquals(5, names.size());
+        List<String> sortedNames = new ArrayList<>(new TreeSet<>(names));
+        assertEquals(sortedNames, names);
+
+        // Empty pages would never reach the end
+        ClientResponse response = service.path("folders/" + folder.getId() + "/items").queryParam("limit", "0")
+                .queryParam("usemarker", "true").get(ClientResponse.class);
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+    }
+
 }
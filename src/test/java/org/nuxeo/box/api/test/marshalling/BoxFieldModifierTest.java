@@ -0,0 +1,155 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.test.marshalling;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.NamedType;
+import org.junit.Before;
+import org.junit.Test;
+import org.nuxeo.box.api.marshalling.dao.BoxFile;
+import org.nuxeo.box.api.marshalling.dao.BoxItem;
+import org.nuxeo.box.api.marshalling.dao.BoxObject;
+import org.nuxeo.box.api.marshalling.dao.BoxTypedObject;
+import org.nuxeo.box.api.marshalling.interfaces.IBoxType;
+import org.nuxeo.box.api.marshalling.jsonparsing.BoxJSONParser;
+import org.nuxeo.box.api.marshalling.jsonparsing.BoxResourceHub;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The box objects of every type, with all their fields, are written and read by the parser as by the same mapper
+ * calling their getters and setters.
+ *
+ * @since 9.1
+ */
+public class BoxFieldModifierTest {
+
+    /**
+     * The depth of the box objects nested in the objects under test
+     */
+    protected static final int DEPTH = 2;
+
+    protected BoxResourceHub hub;
+
+    protected BoxJSONParser parser;
+
+    protected ObjectMapper mapper;
+
+    @Before
+    public void doBefore() {
+        hub = new BoxResourceHub();
+        parser = new BoxJSONParser(hub);
+        // Configured as the parser, without the modifiers
+        mapper = new ObjectMapper();
+        mapper.setSerializationInclusion(Include.NON_NULL);
+        mapper.configure(DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES, false);
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        for (IBoxType type : hub.getAllTypes()) {
+            mapper.registerSubtypes(new NamedType(hub.getClass(type), type.toString()));
+        }
+    }
+
+    @Test
+    public void itWritesTheBoxObjectsAsTheirGetters() throws Exception {
+        for (IBoxType type : hub.getAllTypes()) {
+            BoxObject object = newObject(hub.getClass(type), DEPTH);
+            assertEquals(type.toString(), mapper.writeValueAsString(object),
+                    parser.convertBoxObjectToJSONString(object));
+        }
+    }
+
+    @Test
+    public void itReadsTheBoxObjectsAsTheirSetters() throws Exception {
+        for (IBoxType type : hub.getAllTypes()) {
+            Class<?> klass = hub.getClass(type);
+            String json = mapper.writeValueAsString(newObject(klass, DEPTH));
+            Object expected = mapper.readValue(json, klass);
+            Object actual = parser.parseIntoBoxObject(json, klass);
+            assertEquals(type.toString(), klass, actual.getClass());
+            assertEquals(type.toString(), mapper.writeValueAsString(expected), mapper.writeValueAsString(actual));
+        }
+    }
+
+    /**
+     * @return an object of the given type with a value for each of its properties, down to the given depth
+     */
+    protected static BoxObject newObject(Class<?> klass, int depth) throws ReflectiveOperationException {
+        // A file stands for the objects which may be of any type
+        Class<?> concrete = klass == BoxTypedObject.class || klass == BoxItem.class ? BoxFile.class : klass;
+        BoxObject object = (BoxObject) concrete.newInstance();
+        if (depth < 0) {
+            return object;
+        }
+        for (Method getter : concrete.getMethods()) {
+            JsonProperty property = getter.getAnnotation(JsonProperty.class);
+            // The type is set by the constructor
+            if (property == null || getter.getParameterCount() > 0 || getter.getReturnType() == void.class
+                    || BoxTypedObject.FIELD_TYPE.equals(property.value())) {
+                continue;
+            }
+            Object value = newValue(getter.getGenericReturnType(), property.value(), depth);
+            if (value != null) {
+                object.put(property.value(), value);
+            }
+        }
+        return object;
+    }
+
+    protected static Object newValue(Type type, String name, int depth) throws ReflectiveOperationException {
+        Class<?> klass = (Class<?>) (type instanceof ParameterizedType ? ((ParameterizedType) type).getRawType()
+                : type);
+        if (klass == String.class) {
+            return name + "-value";
+        } else if (klass == Boolean.class || klass == boolean.class) {
+            return Boolean.TRUE;
+        } else if (klass == Integer.class || klass == int.class) {
+            return 7;
+        } else if (klass == Long.class || klass == long.class) {
+            return 42L;
+        } else if (klass == Double.class || klass == double.class) {
+            return 1.5d;
+        } else if (klass == String[].class) {
+            return new String[] { name, "box" };
+        } else if (Map.class.isAssignableFrom(klass)) {
+            Map<String, String> map = new HashMap<>();
+            map.put(name, "value");
+            return map;
+        } else if (List.class.isAssignableFrom(klass)) {
+            ArrayList<Object> list = new ArrayList<>();
+            if (depth > 0 && type instanceof ParameterizedType) {
+                list.add(newValue(((ParameterizedType) type).getActualTypeArguments()[0], name, depth - 1));
+            }
+            return list;
+        } else if (BoxObject.class.isAssignableFrom(klass)) {
+            return newObject(klass, depth - 1);
+        }
+        return null;
+    }
+}
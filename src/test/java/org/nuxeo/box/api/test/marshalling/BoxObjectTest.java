@@ -0,0 +1,69 @@
+/*
+ * (C) Copyright 2017 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     vpasquier <vpasquier@nuxeo.com>
+ */
+package org.nuxeo.box.api.test.marshalling;
+
+import org.junit.Test;
+import org.nuxeo.box.api.marshalling.dao.BoxFile;
+import org.nuxeo.box.api.marshalling.dao.BoxItem;
+import org.nuxeo.box.api.marshalling.dao.BoxUser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The box objects built from an unmodifiable map never share a nested object or list with it.
+ *
+ * @since 9.1
+ */
+public class BoxObjectTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void itDoesNotShareTheNestedObjectsOfAnAdoptedMap() {
+        Map<String, Object> userFields = new HashMap<>();
+        userFields.put(BoxUser.FIELD_NAME, "Administrator");
+        BoxUser user = new BoxUser(Collections.unmodifiableMap(userFields));
+        List<Object> entries = new ArrayList<>();
+        entries.add("entry");
+        Map<String, Object> fields = new HashMap<>();
+        fields.put(BoxItem.FIELD_NAME, "file");
+        fields.put(BoxItem.FIELD_CREATED_BY, user);
+        fields.put("entries", entries);
+        Map<String, Object> source = Collections.unmodifiableMap(fields);
+
+        BoxFile file = new BoxFile(source);
+        file.getCreatedBy().setName("other");
+        ((List<Object>) file.getValue("entries")).add("other");
+        assertEquals("Administrator", user.getName());
+        assertEquals(1, entries.size());
+
+        // The scalar ones are shared until the object is changed
+        Map<String, Object> scalars = Collections.unmodifiableMap(Collections.singletonMap(BoxItem.FIELD_NAME,
+                "file"));
+        file = new BoxFile(scalars);
+        file.setName("other");
+        assertEquals("file", scalars.get(BoxItem.FIELD_NAME));
+        assertEquals("other", file.getName());
+    }
+}
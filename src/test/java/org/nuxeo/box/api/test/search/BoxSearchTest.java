@@ -34,6 +34,8 @@ import org.nuxeo.runtime.test.runner.Jetty;
 import javax.ws.rs.core.Response;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @since 5.9.2
@@ -65,8 +67,39 @@ public class BoxSearchTest extends BoxBaseTest {
         // Checking response consistency
         assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
         JSONObject finalResult = getJSONFromResponse(response);
+        // Checking result: the total count is the number of hits, not the page size
+        assertEquals("5", finalResult.getString("total_count"));
+        assertEquals(2, finalResult.getJSONArray("entries").length());
+    }
+
+    @Test
+    public void itCanSearchWithQuotes() throws Exception {
+        sleepForFulltext();
+        // The term is escaped into the query, a quote doesn't break it
+        ClientResponse response = service.path("search/").queryParam("query", "folder's").get(ClientResponse.class);
+        // Checking response consistency
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        JSONObject finalResult = getJSONFromResponse(response);
+        // All the hits fit in the first page
+        assertEquals(finalResult.getJSONArray("entries").length(), finalResult.getInt("total_count"));
+    }
+
+    @Test
+    public void itCanSearchWithFields() throws Exception {
+        sleepForFulltext();
+        // Searching in fulltext 'folder' term, with mini item fields only
+        ClientResponse response = service.path("search/").queryParam("query", "folder").queryParam("fields",
+                "id,name,etag").get(ClientResponse.class);
+        // Checking response consistency
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        JSONObject finalResult = getJSONFromResponse(response);
         // Checking result
-        assertEquals("2", finalResult.getString("total_count"));
+        assertEquals("5", finalResult.getString("total_count"));
+        JSONObject entry = finalResult.getJSONArray("entries").getJSONObject(0);
+        assertTrue(entry.has("name"));
+        assertTrue(entry.getString("etag").startsWith(entry.getString("id") + "_"));
+        assertFalse(entry.has("created_by"));
+        assertFalse(entry.has("path_collection"));
     }
 
 }